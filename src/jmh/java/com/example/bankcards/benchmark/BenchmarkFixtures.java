@@ -0,0 +1,97 @@
+package com.example.bankcards.benchmark;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.entity.enums.Role;
+import com.example.bankcards.entity.enums.TransactionStatus;
+import com.example.bankcards.entity.enums.TransactionType;
+import com.example.bankcards.security.JwtTokenProvider;
+import com.example.bankcards.security.UserPrincipal;
+import com.example.bankcards.util.CardMaskingUtil;
+import com.example.bankcards.util.EncryptionUtil;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Компоненты и данные для замеров с настройками из application.yml, без контекста Spring.
+ */
+final class BenchmarkFixtures {
+
+    static final String CARD_NUMBER = "4111111111111111";
+
+    private BenchmarkFixtures() {
+    }
+
+    static EncryptionUtil encryptionUtil() {
+        return new EncryptionUtil("Kk7T4vX9Y2z6B8Q1w3e5r7t9y1u3i5o7p", "AES/CBC/PKCS5Padding");
+    }
+
+    static CardMaskingUtil cardMaskingUtil() {
+        CardMaskingUtil cardMaskingUtil = new CardMaskingUtil();
+        ReflectionTestUtils.setField(cardMaskingUtil, "maskPattern", "**** **** **** %s");
+        ReflectionTestUtils.setField(cardMaskingUtil, "cardNumberLength", 16);
+        return cardMaskingUtil;
+    }
+
+    static JwtTokenProvider jwtTokenProvider(int validationCacheSize) {
+        return new JwtTokenProvider("YWJjZGVmZ2hpamtsbW5vcHFyc3R1dnd4eXowMTIzNDU2Nzg5", 86400000L, validationCacheSize);
+    }
+
+    static Authentication authentication() {
+        UserPrincipal principal = UserPrincipal.create(user());
+        return new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities());
+    }
+
+    static User user() {
+        return User.builder()
+                .id(1L)
+                .username("john_doe")
+                .password("$2a$10$hash")
+                .firstName("John")
+                .lastName("Doe")
+                .email("john.doe@bank.com")
+                .role(Role.USER)
+                .enabled(true)
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+
+    static Card card(User owner) {
+        return Card.builder()
+                .id(1L)
+                .cardNumber("encrypted")
+                .cardNumberHash("hash")
+                .maskedNumber("**** **** **** 1111")
+                .ownerName("JOHN DOE")
+                .expiryDate(LocalDate.now().plusYears(3))
+                .cvv("encrypted")
+                .balance(new BigDecimal("1000.00"))
+                .status(CardStatus.ACTIVE)
+                .createdAt(LocalDateTime.now())
+                .owner(owner)
+                .build();
+    }
+
+    static Transaction transaction(Card fromCard, Card toCard) {
+        return Transaction.builder()
+                .id(1L)
+                .transactionId("0b6f3c5e-6d0a-4c47-9a36-3f9f7a0d2c11")
+                .amount(new BigDecimal("150.00"))
+                .currency("RUB")
+                .type(TransactionType.TRANSFER)
+                .status(TransactionStatus.COMPLETED)
+                .description("benchmark")
+                .fromCard(fromCard)
+                .toCard(toCard)
+                .transactionDate(LocalDateTime.now())
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+}
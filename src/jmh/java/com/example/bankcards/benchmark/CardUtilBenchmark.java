@@ -0,0 +1,61 @@
+package com.example.bankcards.benchmark;
+
+import com.example.bankcards.util.CardMaskingUtil;
+import com.example.bankcards.util.CardNumberGenerator;
+import com.example.bankcards.util.ValidationUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Маскирование, генерация и проверка номеров карт, валидация входных данных.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CardUtilBenchmark {
+
+    private CardMaskingUtil cardMaskingUtil;
+    private CardNumberGenerator cardNumberGenerator;
+    private ValidationUtil validationUtil;
+    private String generatedNumber;
+
+    @Setup
+    public void setUp() {
+        cardMaskingUtil = BenchmarkFixtures.cardMaskingUtil();
+        cardNumberGenerator = new CardNumberGenerator();
+        validationUtil = new ValidationUtil();
+        generatedNumber = cardNumberGenerator.generateCardNumber("414947");
+    }
+
+    @Benchmark
+    public String validateAndMask() {
+        return cardMaskingUtil.validateAndMask("4111 1111 1111 1111");
+    }
+
+    @Benchmark
+    public String generateCardNumber() {
+        return cardNumberGenerator.generateCardNumber("414947");
+    }
+
+    @Benchmark
+    public boolean validateLuhn() {
+        return cardNumberGenerator.validateLuhn(generatedNumber);
+    }
+
+    @Benchmark
+    public void validation(Blackhole blackhole) {
+        blackhole.consume(validationUtil.isValidEmail("john.doe@bank.com"));
+        blackhole.consume(validationUtil.isValidUsername("john_doe"));
+        blackhole.consume(validationUtil.isValidAmount(new BigDecimal("150.00")));
+        blackhole.consume(validationUtil.isValidCardNumber(BenchmarkFixtures.CARD_NUMBER));
+    }
+}
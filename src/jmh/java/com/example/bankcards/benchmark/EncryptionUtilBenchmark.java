@@ -0,0 +1,45 @@
+package com.example.bankcards.benchmark;
+
+import com.example.bankcards.util.EncryptionUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Шифрование CVV/номера карты и хэш номера - выполняются на каждом переводе и создании карты.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class EncryptionUtilBenchmark {
+
+    private EncryptionUtil encryptionUtil;
+    private String encryptedCvv;
+
+    @Setup
+    public void setUp() {
+        encryptionUtil = BenchmarkFixtures.encryptionUtil();
+        encryptedCvv = encryptionUtil.encrypt("123");
+    }
+
+    @Benchmark
+    public String encrypt() {
+        return encryptionUtil.encrypt(BenchmarkFixtures.CARD_NUMBER);
+    }
+
+    @Benchmark
+    public String decrypt() {
+        return encryptionUtil.decrypt(encryptedCvv);
+    }
+
+    @Benchmark
+    public String hash() {
+        return encryptionUtil.hash(BenchmarkFixtures.CARD_NUMBER);
+    }
+}
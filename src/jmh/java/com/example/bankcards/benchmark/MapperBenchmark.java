@@ -0,0 +1,59 @@
+package com.example.bankcards.benchmark;
+
+import com.example.bankcards.dto.CardDTO;
+import com.example.bankcards.dto.TransactionDTO;
+import com.example.bankcards.dto.UserDTO;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.mapper.CardMapper;
+import com.example.bankcards.mapper.TransactionMapper;
+import com.example.bankcards.mapper.UserMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Преобразование сущностей в ответы API - выполняется для каждого элемента страницы.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MapperBenchmark {
+
+    private final CardMapper cardMapper = new CardMapper();
+    private final TransactionMapper transactionMapper = new TransactionMapper();
+    private final UserMapper userMapper = new UserMapper();
+
+    private User user;
+    private Card card;
+    private Transaction transaction;
+
+    @Setup
+    public void setUp() {
+        user = BenchmarkFixtures.user();
+        card = BenchmarkFixtures.card(user);
+        transaction = BenchmarkFixtures.transaction(card, BenchmarkFixtures.card(user));
+    }
+
+    @Benchmark
+    public CardDTO.Response cardToResponse() {
+        return cardMapper.toResponse(card);
+    }
+
+    @Benchmark
+    public TransactionDTO.Response transactionToResponse() {
+        return transactionMapper.toResponse(transaction);
+    }
+
+    @Benchmark
+    public UserDTO userToResponse() {
+        return userMapper.toResponse(user);
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.bankcards.aspect;
+
+import com.example.bankcards.entity.Card;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.OptimisticLockException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+@Slf4j
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@RequiredArgsConstructor
+public class ConcurrencyRetryAspect {
+
+    static final String RETRIES_METRIC = "bank.concurrency.retries";
+    static final String EXHAUSTED_METRIC = "bank.concurrency.retries.exhausted";
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.concurrency.retry.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${app.concurrency.retry.backoff-ms:50}")
+    private long backoffMs;
+
+    @Value("${app.concurrency.retry.max-backoff-ms:1000}")
+    private long maxBackoffMs;
+
+    @Around("@annotation(com.example.bankcards.aspect.RetryOnConcurrencyFailure)")
+    public Object retry(ProceedingJoinPoint joinPoint) throws Throwable {
+        // Внутри чужой транзакции повтор бессмысленен: она уже помечена на откат
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return joinPoint.proceed();
+        }
+
+        String method = joinPoint.getSignature().toShortString();
+        int attempt = 1;
+        while (true) {
+            try {
+                return joinPoint.proceed();
+            } catch (RuntimeException e) {
+                String failureType = failureType(e);
+                if (failureType == null) {
+                    throw e;
+                }
+                // id карты - только в лог: тег метрики по карте давал бы неограниченное число счетчиков
+                Object cardId = cardId(e);
+                if (cardId != null) {
+                    log.debug("Concurrency failure in {} on card {}", method, cardId);
+                }
+                if (attempt >= maxAttempts) {
+                    counter(EXHAUSTED_METRIC, method, failureType).increment();
+                    throw e;
+                }
+                counter(RETRIES_METRIC, method, failureType).increment();
+                log.warn("Concurrency failure in {} (attempt {}/{}): {}",
+                        method, attempt, maxAttempts, e.getMessage());
+                Thread.sleep(backoff(attempt));
+                attempt++;
+            }
+        }
+    }
+
+    // Экспоненциальная задержка с "равным" джиттером: половина фиксирована, половина случайна
+    private long backoff(int attempt) {
+        long ceiling = Math.min(maxBackoffMs, backoffMs * (1L << (attempt - 1)));
+        long half = ceiling / 2;
+        return half + ThreadLocalRandom.current().nextLong(ceiling - half + 1);
+    }
+
+    private Counter counter(String name, String method, String failureType) {
+        return Counter.builder(name)
+                .tag("method", method)
+                .tag("type", failureType)
+                .register(meterRegistry);
+    }
+
+    private String failureType(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof OptimisticLockingFailureException || cause instanceof OptimisticLockException) {
+                return "optimistic";
+            }
+            if (cause instanceof PessimisticLockingFailureException) {
+                return "pessimistic";
+            }
+        }
+        return null;
+    }
+
+    private Object cardId(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ObjectOptimisticLockingFailureException failure
+                    && Card.class.getName().equals(failure.getPersistentClassName())
+                    && failure.getIdentifier() != null) {
+                return failure.getIdentifier();
+            }
+        }
+        return null;
+    }
+}
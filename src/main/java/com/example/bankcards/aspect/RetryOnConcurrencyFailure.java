@@ -0,0 +1,15 @@
+package com.example.bankcards.aspect;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Повторяет транзакционный метод при блокировках/дедлоках в БД и конфликтах версий (@Version).
+ * Аспект работает снаружи @Transactional, поэтому каждая попытка идет в новой транзакции.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RetryOnConcurrencyFailure {
+}
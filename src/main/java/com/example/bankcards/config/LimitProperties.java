@@ -0,0 +1,40 @@
+package com.example.bankcards.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Лимиты переводов (app.limits). velocity - правила скользящих окон по карте или пользователю,
+ * пустой список отключает проверку частоты; velocity-max-keys - сколько карт и пользователей держать в памяти.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "app.limits")
+public class LimitProperties {
+
+    private BigDecimal maxPerTransaction = new BigDecimal("10000");
+    private BigDecimal dailyAmount = new BigDecimal("5000");
+    private List<VelocityRule> velocity = new ArrayList<>();
+    private long velocityMaxKeys = 100_000;
+
+    @Getter
+    @Setter
+    public static class VelocityRule {
+        private Scope scope = Scope.CARD;
+        private Duration window = Duration.ofMinutes(1);
+        private int buckets = 60;
+        private Long maxCount;
+        private BigDecimal maxAmount;
+    }
+
+    public enum Scope {
+        CARD,
+        USER
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.bankcards.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@Configuration
+@EnableConfigurationProperties(LimitProperties.class)
+public class TransferConfig {
+
+    /**
+     * Транзакция перевода. Таймаут становится statement timeout в JDBC и ограничивает ожидание блокировок.
+     */
+    @Bean
+    public TransactionTemplate transferTransactionTemplate(PlatformTransactionManager transactionManager) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setTimeout(10);
+        return template;
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.bankcards.config;
+
+import com.example.bankcards.security.InProcessUserEventBus;
+import com.example.bankcards.security.UserEventBus;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class UserEventBusConfig {
+
+    @Bean
+    @ConditionalOnMissingBean(UserEventBus.class)
+    public UserEventBus userEventBus() {
+        return new InProcessUserEventBus();
+    }
+}
@@ -3,22 +3,30 @@ package com.example.bankcards.controller;
 import com.example.bankcards.dto.CardDTO;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.mapper.CardMapper;
+import com.example.bankcards.repository.CardRepository.CardView;
+import com.example.bankcards.service.CardImportFormat;
+import com.example.bankcards.service.CardImportService;
 import com.example.bankcards.service.CardService;
 import com.example.bankcards.util.ResponseUtil;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 @RestController
@@ -33,6 +41,7 @@ public class AdminCardController {
     private final CardService cardService;
     private final ResponseUtil responseUtil;
     private final CardMapper cardMapper;
+    private final CardImportService cardImportService;
 
     @PostMapping
     @Operation(summary = "Создать карту", description = "Создать новую карту для пользователя (только для администратора)")
@@ -42,6 +51,19 @@ public class AdminCardController {
         return responseUtil.createdResponse("Card created successfully", response);
     }
 
+    @PostMapping(value = "/import", consumes = {MediaType.APPLICATION_NDJSON_VALUE, "text/csv"},
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Массовый импорт карт",
+            description = "Импорт карт из потока NDJSON или CSV с полями запроса создания карты. "
+                    + "Ответ - NDJSON с результатом по каждой строке, последняя строка - итог импорта")
+    public void importCards(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        CardImportFormat format = CardImportFormat.fromContentType(request.getContentType());
+
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        cardImportService.importCards(request.getInputStream(), format, response.getOutputStream());
+    }
+
     @GetMapping
     @Operation(summary = "Получить все карты", description = "Получить список всех карт в системе (с пагинацией)")
     public ResponseEntity<?> getAllCards(
@@ -53,7 +75,7 @@ public class AdminCardController {
         Pageable pageable = PageRequest.of(page, size,
                 Sort.Direction.fromString(sortDirection), sortBy);
 
-        Page<Card> cards = cardService.getAllCards(pageable);
+        Page<CardView> cards = cardService.getAllCards(pageable);
 
         Page<CardDTO.Response> responses = cards.map(cardMapper::toResponse);
         return responseUtil.successResponse(
@@ -97,7 +119,7 @@ public class AdminCardController {
     @GetMapping("/user/{userId}")
     @Operation(summary = "Получить карты пользователя", description = "Получить все карты конкретного пользователя")
     public ResponseEntity<?> getUserCards(@PathVariable Long userId) {
-        List<Card> cards = cardService.getUserCards(userId);
+        List<CardView> cards = cardService.getUserCards(userId);
         List<CardDTO.Response> response = cards.stream().map(cardMapper::toResponse).toList();
         return responseUtil.successResponse("User cards retrieved successfully", response);
     }
@@ -116,7 +138,7 @@ public class AdminCardController {
     @PostMapping("/check-expired")
     @Operation(summary = "Проверить истекшие карты", description = "Запустить проверку истекших карт")
     public ResponseEntity<?> checkExpiredCards() {
-        cardService.updateExpiredCardsStatus();
-        return responseUtil.successResponse("Expired cards check completed", null);
+        CardDTO.ExpirationResult result = cardService.updateExpiredCardsStatus();
+        return responseUtil.successResponse("Expired cards check completed", result);
     }
 }
\ No newline at end of file
@@ -10,6 +10,7 @@ import com.example.bankcards.util.ResponseUtil;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
@@ -34,8 +35,9 @@ public class AuthController {
 
     @PostMapping("/login")
     @Operation(summary = "Вход в систему", description = "Аутентификация пользователя и получение JWT токена")
-    public ResponseEntity<?> authenticateUser(@Valid @RequestBody AuthDTO.LoginRequest loginRequest) {
-        AuthDTO.JwtResponse jwtResponse = authService.authenticateUser(loginRequest);
+    public ResponseEntity<?> authenticateUser(@Valid @RequestBody AuthDTO.LoginRequest loginRequest,
+                                              HttpServletRequest request) {
+        AuthDTO.JwtResponse jwtResponse = authService.authenticateUser(loginRequest, request.getRemoteAddr());
         return responseUtil.successResponse("User authenticated successfully", jwtResponse);
     }
 
@@ -46,6 +48,26 @@ public class AuthController {
         return responseUtil.createdResponse("User registered successfully", jwtResponse);
     }
 
+    @PostMapping("/refresh")
+    @Operation(summary = "Обновление токена", description = "Получить новый JWT токен по refresh-токену без ввода пароля")
+    public ResponseEntity<?> refresh(@Valid @RequestBody AuthDTO.RefreshRequest refreshRequest) {
+        AuthDTO.JwtResponse jwtResponse = authService.refresh(refreshRequest.getRefreshToken());
+        return responseUtil.successResponse("Token refreshed successfully", jwtResponse);
+    }
+
+    @PostMapping("/logout")
+    @Operation(summary = "Выход", description = "Отозвать текущий JWT токен и переданный refresh-токен")
+    public ResponseEntity<?> logout(@RequestHeader(value = "Authorization", required = false) String authorization,
+                                    @RequestBody(required = false) AuthDTO.RefreshRequest refreshRequest) {
+        if (authorization == null || !authorization.startsWith("Bearer ")) {
+            return responseUtil.errorResponse(HttpStatus.UNAUTHORIZED, "User not authenticated", "Please login first");
+        }
+
+        authService.logout(authorization.substring(7),
+                refreshRequest != null ? refreshRequest.getRefreshToken() : null);
+        return responseUtil.successResponse("Logged out successfully", null);
+    }
+
     @GetMapping("/me")
     @Operation(summary = "Текущий пользователь", description = "Получить информацию о текущем аутентифицированном пользователе")
     public ResponseEntity<?> getCurrentUser() {
@@ -4,6 +4,7 @@ import com.example.bankcards.dto.CardDTO;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.enums.CardStatus;
 import com.example.bankcards.mapper.CardMapper;
+import com.example.bankcards.repository.CardRepository.CardView;
 import com.example.bankcards.service.AuthService;
 import com.example.bankcards.service.CardService;
 import com.example.bankcards.util.ResponseUtil;
@@ -36,7 +37,7 @@ public class CardController {
     @Operation(summary = "Получить карты пользователя", description = "Получить список карт текущего пользователя с пагинацией и фильтрацией")
     public ResponseEntity<?> getUserCards(@Valid CardDTO.FilterRequest filterRequest) {
         Long userId = authService.getCurrentUserId();
-        Page<Card> cards = cardService.getUserCards(userId, filterRequest);
+        Page<CardView> cards = cardService.getUserCards(userId, filterRequest);
 
         Page<CardDTO.Response> responsePage = cards.map(cardMapper::toResponse);
 
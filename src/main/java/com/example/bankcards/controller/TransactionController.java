@@ -1,25 +1,39 @@
 package com.example.bankcards.controller;
 
 
+import com.example.bankcards.config.LimitProperties;
+import com.example.bankcards.dto.CursorPage;
 import com.example.bankcards.dto.TransactionDTO;
 import com.example.bankcards.entity.Transaction;
 import com.example.bankcards.mapper.TransactionMapper;
+import com.example.bankcards.repository.TransactionRepository.TransactionView;
 import com.example.bankcards.service.AuthService;
 import com.example.bankcards.service.CardService;
+import com.example.bankcards.service.IdempotencyService;
+import com.example.bankcards.service.TransactionExportFormat;
+import com.example.bankcards.service.TransactionExportService;
 import com.example.bankcards.service.TransactionService;
 import com.example.bankcards.util.ResponseUtil;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -31,20 +45,36 @@ import java.util.Map;
 @SecurityRequirement(name = "bearerAuth")
 public class TransactionController {
 
+    private static final String CURSOR_DESCRIPTION = "Курсор постраничного чтения без OFFSET: пустое значение - "
+            + "первая страница, далее nextCursor из предыдущего ответа. Если задан, page не используется";
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final String INCLUDE_TOTAL_DESCRIPTION = "Вернуть общее число транзакций (только вместе с cursor)";
+
     private final TransactionService transactionService;
     private final AuthService authService;
     private final ResponseUtil responseUtil;
     private final CardService cardService;
     private final TransactionMapper transactionMapper;
+    private final LimitProperties limitProperties;
+    private final IdempotencyService idempotencyService;
+    private final TransactionExportService transactionExportService;
 
     @PostMapping("/transfer")
     @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
     @Operation(summary = "Перевод между картами", description = "Перевод средств между своими картами")
-    public ResponseEntity<?> transferBetweenCards(@Valid @RequestBody TransactionDTO.TransferRequest request) {
+    public ResponseEntity<?> transferBetweenCards(
+            @Valid @RequestBody TransactionDTO.TransferRequest request,
+            @Parameter(description = "Ключ идемпотентности: повтор с тем же ключом вернет исходный результат")
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
         Long userId = authService.getCurrentUserId();
-        Transaction transaction = transactionService.transferBetweenOwnCards(request, userId);
 
-        TransactionDTO.Response response = transactionMapper.toResponse(transaction);
+        TransactionDTO.Response response;
+        if (idempotencyKey != null) {
+            response = idempotencyService.transfer(userId, idempotencyKey, request);
+        } else {
+            Transaction transaction = transactionService.transferBetweenOwnCards(request, userId);
+            response = transactionMapper.toResponse(transaction);
+        }
         return responseUtil.createdResponse("Transfer completed successfully", response);
     }
 
@@ -52,11 +82,22 @@ public class TransactionController {
     @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
     @Operation(summary = "Получить транзакции пользователя", description = "Получить историю транзакций текущего пользователя")
     public ResponseEntity<?> getUserTransactions(
-            @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "20") int size) {
+            @RequestParam(defaultValue = "0") @Min(0) int page,
+            @RequestParam(defaultValue = "20") @Min(1) @Max(MAX_PAGE_SIZE) int size,
+            @Parameter(description = CURSOR_DESCRIPTION)
+            @RequestParam(required = false) String cursor,
+            @Parameter(description = INCLUDE_TOTAL_DESCRIPTION)
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
 
         Long userId = authService.getCurrentUserId();
-        Page<Transaction> transactions = transactionService.getUserTransactions(userId, page, size);
+        if (cursor != null) {
+            CursorPage<TransactionView> transactions =
+                    transactionService.getUserTransactions(userId, cursor, size, includeTotal);
+            return responseUtil.successResponse("Transactions retrieved successfully",
+                    toCursorResponse(transactions, size));
+        }
+
+        Page<TransactionView> transactions = transactionService.getUserTransactions(userId, page, size);
 
         Page<TransactionDTO.Response> responsePage = transactions.map(transactionMapper::toResponse);
         return responseUtil.successResponse(
@@ -71,18 +112,49 @@ public class TransactionController {
         );
     }
 
+    @GetMapping("/export")
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    @Operation(summary = "Выгрузить историю транзакций",
+            description = "Потоковая выгрузка всей истории текущего пользователя в NDJSON или CSV")
+    public void exportUserTransactions(
+            @RequestParam(defaultValue = "NDJSON") TransactionExportFormat format,
+            HttpServletResponse response) throws IOException {
+        Long userId = authService.getCurrentUserId();
+
+        transactionExportService.exportUserTransactions(userId, format, () -> {
+            response.setContentType(format.getContentType());
+            response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                    .filename("transactions." + format.getExtension())
+                    .build()
+                    .toString());
+            return response.getOutputStream();
+        });
+    }
+
     @GetMapping("/card/{cardId}")
     @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
     @Operation(summary = "Получить транзакции карты", description = "Получить историю транзакций конкретной карты")
     public ResponseEntity<?> getCardTransactions(
             @PathVariable Long cardId,
-            @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "20") int size) {
+            @RequestParam(defaultValue = "0") @Min(0) int page,
+            @RequestParam(defaultValue = "20") @Min(1) @Max(MAX_PAGE_SIZE) int size,
+            @Parameter(description = CURSOR_DESCRIPTION)
+            @RequestParam(required = false) String cursor,
+            @Parameter(description = INCLUDE_TOTAL_DESCRIPTION)
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
 
         Long userId = authService.getCurrentUserId();
         cardService.getCardByIdAndOwnerId(cardId, userId);
 
-        Page<Transaction> transactions = transactionService.getCardTransactions(cardId, page, size);
+        if (cursor != null) {
+            CursorPage<TransactionView> transactions =
+                    transactionService.getCardTransactions(cardId, cursor, size, includeTotal);
+            return responseUtil.successResponse("Card transactions retrieved successfully",
+                    toCursorResponse(transactions, size));
+        }
+
+        Page<TransactionView> transactions = transactionService.getCardTransactions(cardId, page, size);
 
         Page<TransactionDTO.Response> responsePage = transactions.map(transactionMapper::toResponse);
         return responseUtil.successResponse(
@@ -114,8 +186,8 @@ public class TransactionController {
         Long userId = authService.getCurrentUserId();
         cardService.getCardByIdAndOwnerId(cardId, userId);
 
-        BigDecimal dailyTotal = transactionService.getTotalTransferredAmount(cardId, 1);
-        BigDecimal dailyLimit = new BigDecimal("5000");
+        BigDecimal dailyTotal = transactionService.getTodayTransferredAmount(cardId);
+        BigDecimal dailyLimit = limitProperties.getDailyAmount();
         BigDecimal remaining = dailyLimit.subtract(dailyTotal);
 
         Map<String, Object> response = new HashMap<>();
@@ -126,4 +198,14 @@ public class TransactionController {
 
         return responseUtil.successResponse("Daily limit checked successfully", response);
     }
-}
\ No newline at end of file
+
+    private Map<String, Object> toCursorResponse(CursorPage<TransactionView> transactions, int size) {
+        CursorPage<TransactionDTO.Response> responsePage = transactions.map(transactionMapper::toResponse);
+        return responseUtil.cursorPaginatedResponse(
+                responsePage.content(),
+                size,
+                responsePage.nextCursor(),
+                responsePage.totalElements()
+        );
+    }
+}
@@ -60,10 +60,18 @@ public class AuthDTO {
         private String email;
     }
 
+    @Data
+    public static class RefreshRequest {
+        @Schema(description = "Refresh-токен, выданный при входе или предыдущем обновлении")
+        @NotBlank(message = "Refresh token is required")
+        private String refreshToken;
+    }
+
     @Data
     public static class JwtResponse {
         private String token;
         private String type = "Bearer";
+        private String refreshToken;
         private Long id;
         private String username;
         private String email;
@@ -2,6 +2,7 @@ package com.example.bankcards.dto;
 
 import com.example.bankcards.entity.enums.CardStatus;
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.validation.constraints.*;
 import lombok.AllArgsConstructor;
@@ -74,10 +75,50 @@ public class CardDTO {
         private String username;
     }
 
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ExpirationResult {
+        private int expiredCards;
+        private int chunks;
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class ImportRowResult {
+        private long row;
+        private ImportRowStatus status;
+        private Long cardId;
+        private String maskedNumber;
+        private String error;
+    }
+
+    public enum ImportRowStatus {
+        CREATED,
+        FAILED
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ImportSummary {
+        private long total;
+        private long created;
+        private long failed;
+    }
+
     @Data
     public static class FilterRequest {
         private CardStatus status;
+
+        @Pattern(regexp = "(\\d{4})?", message = "Last four digits must be 4 digits")
         private String cardNumberLastFour;
+
         private String ownerName;
         private Integer page = 0;
         private Integer size = 10;
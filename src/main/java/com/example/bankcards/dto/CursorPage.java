@@ -0,0 +1,15 @@
+package com.example.bankcards.dto;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Страница keyset-пагинации: строки, курсор следующей страницы (null на последней)
+ * и общее число строк, если его запрашивали.
+ */
+public record CursorPage<T>(List<T> content, String nextCursor, Long totalElements) {
+
+    public <R> CursorPage<R> map(Function<? super T, ? extends R> mapper) {
+        return new CursorPage<>(content.stream().<R>map(mapper).toList(), nextCursor, totalElements);
+    }
+}
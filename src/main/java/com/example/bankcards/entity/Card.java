@@ -18,7 +18,8 @@ import java.time.LocalDateTime;
 public class Card {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "cards_seq")
+    @SequenceGenerator(name = "cards_seq", sequenceName = "cards_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "card_number", nullable = false, unique = true)
@@ -30,6 +31,12 @@ public class Card {
     @Column(name = "masked_number", nullable = false)
     private String maskedNumber;
 
+    /**
+     * Последние четыре цифры номера для точного фильтра по индексу (user_id, status, last_four).
+     */
+    @Column(name = "last_four", nullable = false, length = 4)
+    private String lastFour;
+
     @Column(nullable = false)
     private String ownerName;
 
@@ -52,6 +59,10 @@ public class Card {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
 
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
     private User owner;
@@ -62,6 +73,9 @@ public class Card {
         if (balance == null) {
             balance = BigDecimal.ZERO;
         }
+        if (lastFour == null && maskedNumber != null && maskedNumber.length() >= 4) {
+            lastFour = maskedNumber.substring(maskedNumber.length() - 4);
+        }
     }
 
     @PreUpdate
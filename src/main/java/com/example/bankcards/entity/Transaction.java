@@ -17,7 +17,8 @@ import java.util.UUID;
 public class Transaction {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transactions_seq")
+    @SequenceGenerator(name = "transactions_seq", sequenceName = "transactions_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false, unique = true)
@@ -51,6 +52,13 @@ public class Transaction {
     @JoinColumn(name = "to_card_id", nullable = false)
     private Card toCard;
 
+    /**
+     * Владелец карт перевода (переводы только между своими картами), копия cards.user_id для чтения истории
+     * пользователя без соединения с cards.
+     */
+    @Column(name = "owner_id", nullable = false, updatable = false)
+    private Long ownerId;
+
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
@@ -66,5 +74,8 @@ public class Transaction {
         if (currency == null) {
             currency = "USD";
         }
+        if (ownerId == null && toCard != null && toCard.getOwner() != null) {
+            ownerId = toCard.getOwner().getId();
+        }
     }
 }
\ No newline at end of file
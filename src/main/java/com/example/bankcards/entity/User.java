@@ -52,6 +52,12 @@ public class User implements UserDetails {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
 
+    /**
+     * Токены, выданные раньше этого момента, недействительны (смена роли, повторное включение).
+     */
+    @Column(name = "tokens_revoked_before")
+    private LocalDateTime tokensRevokedBefore;
+
     @OneToMany(mappedBy = "owner", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<Card> cards;
 
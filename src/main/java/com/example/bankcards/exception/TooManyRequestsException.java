@@ -0,0 +1,19 @@
+package com.example.bankcards.exception;
+
+import lombok.Getter;
+
+/**
+ * Запрос отклонен из-за перегрузки или ограничения частоты; клиенту возвращается 429 с заголовком Retry-After.
+ */
+@Getter
+public class TooManyRequestsException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+    private final String details;
+
+    public TooManyRequestsException(String message, String details, long retryAfterSeconds) {
+        super(message);
+        this.details = details;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
@@ -2,6 +2,7 @@ package com.example.bankcards.mapper;
 
 import com.example.bankcards.dto.CardDTO;
 import com.example.bankcards.entity.Card;
+import com.example.bankcards.repository.CardRepository.CardView;
 import org.springframework.stereotype.Component;
 
 @Component
@@ -23,4 +24,21 @@ public class CardMapper {
                 .username(card.getOwner().getUsername())
                 .build();
     }
+
+    public CardDTO.Response toResponse(CardView card) {
+        if (card == null) return null;
+
+        return CardDTO.Response.builder()
+                .id(card.getId())
+                .maskedNumber(card.getMaskedNumber())
+                .ownerName(card.getOwnerName())
+                .expiryDate(card.getExpiryDate().toString())
+                .status(card.getStatus())
+                .balance(card.getBalance())
+                .expired(card.isExpired())
+                .createdAt(card.getCreatedAt())
+                .userId(card.getUserId())
+                .username(card.getUsername())
+                .build();
+    }
 }
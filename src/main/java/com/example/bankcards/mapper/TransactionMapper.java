@@ -2,6 +2,7 @@ package com.example.bankcards.mapper;
 
 import com.example.bankcards.dto.TransactionDTO;
 import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.repository.TransactionRepository.TransactionView;
 import org.springframework.stereotype.Component;
 
 @Component
@@ -24,4 +25,21 @@ public class TransactionMapper {
                 .createdAt(transaction.getCreatedAt())
                 .build();
     }
+
+    public TransactionDTO.Response toResponse(TransactionView transaction) {
+        if (transaction == null) return null;
+
+        return TransactionDTO.Response.builder()
+                .transactionId(transaction.getTransactionId())
+                .amount(transaction.getAmount())
+                .currency(transaction.getCurrency())
+                .type(transaction.getType().name())
+                .status(transaction.getStatus().name())
+                .description(transaction.getDescription())
+                .fromCardMasked(transaction.getFromCardMasked())
+                .toCardMasked(transaction.getToCardMasked())
+                .transactionDate(transaction.getTransactionDate())
+                .createdAt(transaction.getCreatedAt())
+                .build();
+    }
 }
@@ -0,0 +1,80 @@
+package com.example.bankcards.migration;
+
+import liquibase.change.custom.CustomTaskChange;
+import liquibase.database.Database;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.CustomChangeException;
+import liquibase.exception.DatabaseException;
+import liquibase.exception.SetupException;
+import liquibase.exception.ValidationErrors;
+import liquibase.resource.ResourceAccessor;
+import lombok.Setter;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Заполняет cards.last_four из masked_number диапазонами id по chunkSize строк с фиксацией после каждого диапазона,
+ * чтобы на большой таблице не держать одну длинную транзакцию и блокировки всех строк.
+ * Уже заполненные строки пропускаются, поэтому прерванный прогон можно повторить.
+ */
+@Setter
+public class CardLastFourBackfill implements CustomTaskChange {
+
+    private static final String UPDATE_CHUNK = "UPDATE cards SET last_four = RIGHT(masked_number, 4) "
+            + "WHERE id >= ? AND id < ? AND last_four IS NULL";
+
+    private Integer chunkSize = 1000;
+
+    private long updated;
+
+    @Override
+    public void execute(Database database) throws CustomChangeException {
+        JdbcConnection connection = (JdbcConnection) database.getConnection();
+        try (PreparedStatement bounds = connection.prepareStatement("SELECT MIN(id), MAX(id) FROM cards");
+             PreparedStatement update = connection.prepareStatement(UPDATE_CHUNK)) {
+            long minId;
+            long maxId;
+            try (ResultSet range = bounds.executeQuery()) {
+                range.next();
+                minId = range.getLong(1);
+                maxId = range.getLong(2);
+                if (range.wasNull()) {
+                    return;
+                }
+            }
+
+            for (long from = minId; from <= maxId; from += chunkSize) {
+                update.setLong(1, from);
+                update.setLong(2, from + chunkSize);
+                updated += update.executeUpdate();
+                connection.commit();
+            }
+        } catch (SQLException | DatabaseException e) {
+            throw new CustomChangeException("Failed to backfill cards.last_four", e);
+        }
+    }
+
+    @Override
+    public String getConfirmationMessage() {
+        return "Backfilled last_four for " + updated + " cards";
+    }
+
+    @Override
+    public void setUp() throws SetupException {
+    }
+
+    @Override
+    public void setFileOpener(ResourceAccessor resourceAccessor) {
+    }
+
+    @Override
+    public ValidationErrors validate(Database database) {
+        ValidationErrors errors = new ValidationErrors();
+        if (chunkSize == null || chunkSize <= 0) {
+            errors.addError("chunkSize must be positive");
+        }
+        return errors;
+    }
+}
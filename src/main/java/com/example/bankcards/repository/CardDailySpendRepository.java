@@ -0,0 +1,32 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.CardDailySpend;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Optional;
+
+@Repository
+public interface CardDailySpendRepository extends JpaRepository<CardDailySpend, CardDailySpend.Key> {
+
+    @Query("SELECT s.amount FROM CardDailySpend s WHERE s.cardId = :cardId AND s.spendDate = :day")
+    Optional<BigDecimal> findAmount(@Param("cardId") Long cardId, @Param("day") LocalDate day);
+
+    @Modifying
+    @Query("UPDATE CardDailySpend s SET s.amount = s.amount + :amount " +
+            "WHERE s.cardId = :cardId AND s.spendDate = :day AND s.amount + :amount <= :limit")
+    int addWithinLimit(@Param("cardId") Long cardId,
+                       @Param("day") LocalDate day,
+                       @Param("amount") BigDecimal amount,
+                       @Param("limit") BigDecimal limit);
+
+    @Modifying
+    @Query(value = "INSERT INTO card_daily_spend (card_id, spend_date, amount) VALUES (:cardId, :day, :amount)",
+            nativeQuery = true)
+    void insert(@Param("cardId") Long cardId, @Param("day") LocalDate day, @Param("amount") BigDecimal amount);
+}
@@ -2,36 +2,166 @@ package com.example.bankcards.repository;
 
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.enums.CardStatus;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface CardRepository extends JpaRepository<Card, Long> {
 
+    /**
+     * Колонки для CardDTO.Response без зашифрованных номера и CVV. Строки читаются в {@link CardView}
+     * и не попадают в persistence context.
+     */
+    String CARD_VIEW = "SELECT c.id AS id, c.maskedNumber AS maskedNumber, c.ownerName AS ownerName, " +
+            "c.expiryDate AS expiryDate, c.status AS status, c.balance AS balance, c.createdAt AS createdAt, " +
+            "o.id AS userId, o.username AS username FROM Card c JOIN c.owner o";
+
+    String BY_OWNER = " WHERE c.owner.id = :userId";
+
+    String AND_STATUS = " AND c.status = :status";
+
+    String AND_LAST_FOUR = " AND c.lastFour = :lastFour";
+
+    String COUNT_CARDS = "SELECT COUNT(c) FROM Card c";
+
     Optional<Card> findByCardNumberHash(String cardNumberHash);
 
-    List<Card> findByOwnerId(Long ownerId);
+    @Query("SELECT c.id FROM Card c WHERE c.cardNumberHash = :cardNumberHash")
+    Optional<Long> findIdByCardNumberHash(@Param("cardNumberHash") String cardNumberHash);
+
+    @Query("SELECT c.id AS id, c.owner.id AS ownerId FROM Card c WHERE c.cardNumberHash = :cardNumberHash")
+    Optional<CardOwnership> findOwnershipByCardNumberHash(@Param("cardNumberHash") String cardNumberHash);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "3000"))
+    @Query("SELECT c FROM Card c WHERE c.id = :id")
+    Optional<Card> findByIdForUpdate(@Param("id") Long id);
 
-    Page<Card> findByOwnerId(Long ownerId, Pageable pageable);
+    @Query(CARD_VIEW + BY_OWNER)
+    List<CardView> findViewsByOwnerId(@Param("userId") Long userId);
 
-    @Query("SELECT c FROM Card c WHERE c.expiryDate < :date")
-    List<Card> findExpiredCards(@Param("date") LocalDate date);
+    @Query(value = CARD_VIEW + BY_OWNER, countQuery = COUNT_CARDS + BY_OWNER)
+    Page<CardView> findViewsByOwnerId(@Param("userId") Long userId, Pageable pageable);
 
-    @Query("SELECT c FROM Card c WHERE c.owner.id = :userId AND " +
-            "(:status IS NULL OR c.status = :status) AND " +
-            "(:lastFour IS NULL OR c.maskedNumber LIKE %:lastFour%)")
-    Page<Card> findCardsWithFilters(@Param("userId") Long userId,
-                                    @Param("status") CardStatus status,
-                                    @Param("lastFour") String lastFour,
-                                    Pageable pageable);
+    @Query(value = CARD_VIEW + BY_OWNER + AND_STATUS, countQuery = COUNT_CARDS + BY_OWNER + AND_STATUS)
+    Page<CardView> findViewsByOwnerIdAndStatus(@Param("userId") Long userId,
+                                               @Param("status") CardStatus status,
+                                               Pageable pageable);
+
+    @Query(value = CARD_VIEW + BY_OWNER + AND_LAST_FOUR, countQuery = COUNT_CARDS + BY_OWNER + AND_LAST_FOUR)
+    Page<CardView> findViewsByOwnerIdAndLastFour(@Param("userId") Long userId,
+                                                 @Param("lastFour") String lastFour,
+                                                 Pageable pageable);
+
+    @Query(value = CARD_VIEW + BY_OWNER + AND_STATUS + AND_LAST_FOUR,
+            countQuery = COUNT_CARDS + BY_OWNER + AND_STATUS + AND_LAST_FOUR)
+    Page<CardView> findViewsByOwnerIdAndStatusAndLastFour(@Param("userId") Long userId,
+                                                          @Param("status") CardStatus status,
+                                                          @Param("lastFour") String lastFour,
+                                                          Pageable pageable);
+
+    @Query(value = CARD_VIEW, countQuery = COUNT_CARDS)
+    Page<CardView> findAllViews(Pageable pageable);
+
+    @Query("SELECT c.id FROM Card c WHERE c.owner.id = :userId")
+    List<Long> findIdsByOwnerId(@Param("userId") Long userId);
+
+    @Query("SELECT c.id FROM Card c WHERE c.expiryDate < :date AND c.id > :afterId " +
+            "AND c.status <> com.example.bankcards.entity.enums.CardStatus.EXPIRED ORDER BY c.id")
+    List<Long> findExpirableIdsAfter(@Param("date") LocalDate date,
+                                     @Param("afterId") Long afterId,
+                                     Pageable pageable);
+
+    /**
+     * Помечает EXPIRED истекшие карты в диапазоне (fromId, toId] отдельной транзакцией,
+     * чтобы каждая порция фиксировалась сразу и не держала блокировки до конца всей проверки.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE Card c SET c.status = com.example.bankcards.entity.enums.CardStatus.EXPIRED, " +
+            "c.updatedAt = :now, c.version = c.version + 1 " +
+            "WHERE c.id > :fromId AND c.id <= :toId AND c.expiryDate < :date " +
+            "AND c.status <> com.example.bankcards.entity.enums.CardStatus.EXPIRED")
+    int expireCardsInRange(@Param("fromId") Long fromId,
+                           @Param("toId") Long toId,
+                           @Param("date") LocalDate date,
+                           @Param("now") LocalDateTime now);
 
     boolean existsByCardNumberHash(String cardNumberHash);
+
+    /**
+     * Какие из хэшей номеров уже есть в базе: одна проверка на порцию импорта вместо запроса на карту.
+     */
+    @Query("SELECT c.cardNumberHash FROM Card c WHERE c.cardNumberHash IN :hashes")
+    List<String> findExistingHashes(@Param("hashes") Collection<String> hashes);
+
+    @Modifying
+    @Query("UPDATE Card c SET c.balance = c.balance - :amount, c.updatedAt = :now, " +
+            "c.version = c.version + 1 " +
+            "WHERE c.id = :id AND c.balance >= :amount " +
+            "AND c.status = com.example.bankcards.entity.enums.CardStatus.ACTIVE")
+    int debitBalance(@Param("id") Long id,
+                     @Param("amount") BigDecimal amount,
+                     @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE Card c SET c.balance = c.balance + :amount, c.updatedAt = :now, " +
+            "c.version = c.version + 1 " +
+            "WHERE c.id = :id AND c.status = com.example.bankcards.entity.enums.CardStatus.ACTIVE")
+    int creditBalance(@Param("id") Long id,
+                      @Param("amount") BigDecimal amount,
+                      @Param("now") LocalDateTime now);
+
+    /**
+     * Владелец карты - для проверки прав до начала перевода, без загрузки сущности.
+     */
+    interface CardOwnership {
+        Long getId();
+
+        Long getOwnerId();
+    }
+
+    /**
+     * Карта для списков: только поля ответа API.
+     */
+    interface CardView {
+        Long getId();
+
+        String getMaskedNumber();
+
+        String getOwnerName();
+
+        LocalDate getExpiryDate();
+
+        CardStatus getStatus();
+
+        BigDecimal getBalance();
+
+        LocalDateTime getCreatedAt();
+
+        Long getUserId();
+
+        String getUsername();
+
+        default boolean isExpired() {
+            return LocalDate.now().isAfter(getExpiryDate());
+        }
+    }
 }
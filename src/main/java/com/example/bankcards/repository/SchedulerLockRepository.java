@@ -0,0 +1,68 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.SchedulerLock;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Время аренды считается в SQL по часам БД (LOCALTIMESTAMP, столбцы TIMESTAMP без зоны), а не по часам узла:
+ * при расхождении часов узлов один из них иначе мог бы счесть чужую аренду истекшей и запустить задачу повторно.
+ */
+@Repository
+public interface SchedulerLockRepository extends JpaRepository<SchedulerLock, String> {
+
+    /**
+     * Захватывает существующую аренду, если она истекла или уже принадлежит этому узлу.
+     * Условие проверяется в самом UPDATE, поэтому из нескольких узлов строку получает только один.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE scheduler_locks SET locked_by = :nodeId, locked_at = LOCALTIMESTAMP, " +
+            "locked_until = LOCALTIMESTAMP + CAST(:leaseSeconds AS INTEGER) * INTERVAL '1' SECOND " +
+            "WHERE job_name = :jobName AND (locked_until <= LOCALTIMESTAMP OR locked_by = :nodeId)",
+            nativeQuery = true)
+    int acquire(@Param("jobName") String jobName,
+                @Param("nodeId") String nodeId,
+                @Param("leaseSeconds") long leaseSeconds);
+
+    /**
+     * Первый захват задачи. Параллельная вставка другого узла завершится нарушением первичного ключа.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO scheduler_locks (job_name, locked_by, locked_at, locked_until) " +
+            "VALUES (:jobName, :nodeId, LOCALTIMESTAMP, " +
+            "LOCALTIMESTAMP + CAST(:leaseSeconds AS INTEGER) * INTERVAL '1' SECOND)",
+            nativeQuery = true)
+    int insert(@Param("jobName") String jobName,
+               @Param("nodeId") String nodeId,
+               @Param("leaseSeconds") long leaseSeconds);
+
+    /**
+     * Продлевает аренду на leaseSeconds от текущего момента. Возвращает 0, если аренда уже перешла к другому узлу.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE scheduler_locks " +
+            "SET locked_until = LOCALTIMESTAMP + CAST(:leaseSeconds AS INTEGER) * INTERVAL '1' SECOND " +
+            "WHERE job_name = :jobName AND locked_by = :nodeId", nativeQuery = true)
+    int extend(@Param("jobName") String jobName,
+               @Param("nodeId") String nodeId,
+               @Param("leaseSeconds") long leaseSeconds);
+
+    /**
+     * Освобождает аренду после запуска, оставляя ее занятой до locked_at + minHoldSeconds.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE scheduler_locks " +
+            "SET locked_until = GREATEST(locked_at + CAST(:minHoldSeconds AS INTEGER) * INTERVAL '1' SECOND, LOCALTIMESTAMP) " +
+            "WHERE job_name = :jobName AND locked_by = :nodeId", nativeQuery = true)
+    int release(@Param("jobName") String jobName,
+                @Param("nodeId") String nodeId,
+                @Param("minHoldSeconds") long minHoldSeconds);
+}
@@ -0,0 +1,28 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.SchedulerRun;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface SchedulerRunRepository extends JpaRepository<SchedulerRun, Long> {
+
+    List<SchedulerRun> findByJobNameOrderByStartedAtDesc(String jobName);
+
+    /**
+     * Закрывает запуски, которые остались RUNNING после падения узла, потерявшего аренду.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE SchedulerRun r SET r.status = com.example.bankcards.entity.enums.SchedulerRunStatus.ABANDONED, " +
+            "r.finishedAt = :now WHERE r.jobName = :jobName " +
+            "AND r.status = com.example.bankcards.entity.enums.SchedulerRunStatus.RUNNING")
+    int abandonRunning(@Param("jobName") String jobName, @Param("now") LocalDateTime now);
+}
@@ -1,31 +1,167 @@
 package com.example.bankcards.repository;
 
 import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.entity.enums.TransactionStatus;
+import com.example.bankcards.entity.enums.TransactionType;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface TransactionRepository extends JpaRepository<Transaction, Long> {
 
+    /**
+     * Колонки для TransactionDTO.Response: маскированные номера карт берутся соединением,
+     * строки читаются в {@link TransactionView} и не попадают в persistence context.
+     */
+    String TRANSACTION_VIEW = "SELECT t.id AS id, t.transactionId AS transactionId, t.amount AS amount, " +
+            "t.currency AS currency, t.type AS type, t.status AS status, t.description AS description, " +
+            "fc.maskedNumber AS fromCardMasked, tc.maskedNumber AS toCardMasked, " +
+            "t.transactionDate AS transactionDate, t.createdAt AS createdAt " +
+            "FROM Transaction t LEFT JOIN t.fromCard fc JOIN t.toCard tc";
+
+    /**
+     * Условие keyset-пагинации "строго раньше (date, id)" в порядке transaction_date DESC, id DESC.
+     * Избыточное t.transactionDate <= :date дает диапазонный поиск по индексу (card_id, transaction_date, id).
+     */
+    String BEFORE_CURSOR = " AND t.transactionDate <= :date AND (t.transactionDate < :date OR t.id < :id)" +
+            " ORDER BY t.transactionDate DESC, t.id DESC";
+
+    String CARD_UNION_HISTORY = "SELECT h.id FROM ("
+            + "(SELECT t.* FROM transactions t WHERE t.from_card_id IN (:cardIds)"
+            + " AND t.transaction_date <= :date AND (t.transaction_date < :date OR t.id < :id)"
+            + " ORDER BY t.transaction_date DESC, t.id DESC LIMIT :limit)"
+            + " UNION ALL "
+            + "(SELECT t.* FROM transactions t WHERE t.to_card_id IN (:cardIds)"
+            + " AND (t.from_card_id IS NULL OR t.from_card_id NOT IN (:cardIds))"
+            + " AND t.transaction_date <= :date AND (t.transaction_date < :date OR t.id < :id)"
+            + " ORDER BY t.transaction_date DESC, t.id DESC LIMIT :limit)"
+            + ") h ORDER BY h.transaction_date DESC, h.id DESC LIMIT :limit";
+
+    @EntityGraph(attributePaths = {"fromCard", "toCard"})
     Optional<Transaction> findByTransactionId(String transactionId);
 
-    @Query("SELECT t FROM Transaction t WHERE t.fromCard.id = :cardId OR t.toCard.id = :cardId " +
-            "ORDER BY t.transactionDate DESC")
-    Page<Transaction> findByCardId(@Param("cardId") Long cardId, Pageable pageable);
+    @Query(value = TRANSACTION_VIEW + " WHERE t.fromCard.id = :cardId OR t.toCard.id = :cardId " +
+            "ORDER BY t.transactionDate DESC",
+            countQuery = "SELECT COUNT(t) FROM Transaction t WHERE t.fromCard.id = :cardId OR t.toCard.id = :cardId")
+    Page<TransactionView> findByCardId(@Param("cardId") Long cardId, Pageable pageable);
+
+    @Query(value = TRANSACTION_VIEW + " WHERE t.ownerId = :userId ORDER BY t.transactionDate DESC",
+            countQuery = "SELECT COUNT(t) FROM Transaction t WHERE t.ownerId = :userId")
+    Page<TransactionView> findByUserId(@Param("userId") Long userId, Pageable pageable);
+
+    @Query(TRANSACTION_VIEW + " WHERE t.fromCard.id = :cardId" + BEFORE_CURSOR)
+    List<TransactionView> findOutgoingBefore(@Param("cardId") Long cardId,
+                                             @Param("date") LocalDateTime date,
+                                             @Param("id") Long id,
+                                             Pageable limit);
+
+    @Query(TRANSACTION_VIEW + " WHERE t.toCard.id = :cardId" + BEFORE_CURSOR)
+    List<TransactionView> findIncomingBefore(@Param("cardId") Long cardId,
+                                             @Param("date") LocalDateTime date,
+                                             @Param("id") Long id,
+                                             Pageable limit);
+
+    @Query(TRANSACTION_VIEW + " WHERE t.ownerId = :userId" + BEFORE_CURSOR)
+    List<TransactionView> findByUserIdBefore(@Param("userId") Long userId,
+                                             @Param("date") LocalDateTime date,
+                                             @Param("id") Long id,
+                                             Pageable limit);
 
-    @Query("SELECT t FROM Transaction t WHERE t.fromCard.owner.id = :userId OR t.toCard.owner.id = :userId " +
-            "ORDER BY t.transactionDate DESC")
-    Page<Transaction> findByUserId(@Param("userId") Long userId, Pageable pageable);
+    /**
+     * История по набору карт без соединений с cards: две ветки UNION ALL, каждая - диапазон своего индекса
+     * (card_id, transaction_date, id) не более :limit строк, внешняя сортировка сливает их по дате.
+     * Переводы между картами набора попадают только в ветку списаний.
+     * Возвращает id страницы; сами строки читаются {@link #findViewsByIdIn}.
+     */
+    @Query(value = CARD_UNION_HISTORY, nativeQuery = true)
+    List<Long> findIdsByCardIdsBefore(@Param("cardIds") Collection<Long> cardIds,
+                                          @Param("date") LocalDateTime date,
+                                          @Param("id") Long id,
+                                          @Param("limit") int limit);
+
+    @Query(TRANSACTION_VIEW + " WHERE t.id IN :ids ORDER BY t.transactionDate DESC, t.id DESC")
+    List<TransactionView> findViewsByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Вся история пользователя для выгрузки. Строки читаются курсором порциями по fetchSize
+     * (на PostgreSQL - только внутри транзакции), поток нужно закрыть.
+     */
+    @QueryHints({
+            @QueryHint(name = "org.hibernate.fetchSize", value = "500"),
+            @QueryHint(name = "org.hibernate.readOnly", value = "true"),
+            @QueryHint(name = "org.hibernate.cacheable", value = "false")
+    })
+    @Query(TRANSACTION_VIEW + " WHERE t.ownerId = :userId ORDER BY t.transactionDate DESC, t.id DESC")
+    Stream<TransactionView> streamByUserId(@Param("userId") Long userId);
+
+    @Query("SELECT COUNT(t) FROM Transaction t WHERE t.fromCard.id = :cardId OR t.toCard.id = :cardId")
+    long countByCardId(@Param("cardId") Long cardId);
+
+    @Query("SELECT COUNT(t) FROM Transaction t WHERE t.ownerId = :userId")
+    long countByUserId(@Param("userId") Long userId);
 
     @Query("SELECT SUM(t.amount) FROM Transaction t WHERE " +
             "t.fromCard.id = :cardId AND t.status = 'COMPLETED' AND t.transactionDate >= :date")
-    Double findTotalWithdrawnAmount(@Param("cardId") Long cardId,
-                                    @Param("date") LocalDateTime date);
-}
\ No newline at end of file
+    BigDecimal findTotalWithdrawnAmount(@Param("cardId") Long cardId,
+                                        @Param("date") LocalDateTime date);
+
+    @Query("SELECT t.transactionDate AS transactionDate, t.amount AS amount FROM Transaction t WHERE " +
+            "t.fromCard.id = :cardId AND t.status = 'COMPLETED' AND t.transactionDate >= :since")
+    List<SpendEntry> findSpendByCardSince(@Param("cardId") Long cardId,
+                                          @Param("since") LocalDateTime since);
+
+    @Query("SELECT t.transactionDate AS transactionDate, t.amount AS amount FROM Transaction t WHERE " +
+            "t.fromCard.owner.id = :userId AND t.status = 'COMPLETED' AND t.transactionDate >= :since")
+    List<SpendEntry> findSpendByUserSince(@Param("userId") Long userId,
+                                          @Param("since") LocalDateTime since);
+
+    /**
+     * Транзакция для списков истории: поля ответа API и ключ keyset-пагинации (transactionDate, id).
+     */
+    interface TransactionView {
+        Long getId();
+
+        String getTransactionId();
+
+        BigDecimal getAmount();
+
+        String getCurrency();
+
+        TransactionType getType();
+
+        TransactionStatus getStatus();
+
+        String getDescription();
+
+        String getFromCardMasked();
+
+        String getToCardMasked();
+
+        LocalDateTime getTransactionDate();
+
+        LocalDateTime getCreatedAt();
+    }
+
+    /**
+     * Списание для восстановления скользящих окон лимитов.
+     */
+    interface SpendEntry {
+        LocalDateTime getTransactionDate();
+
+        BigDecimal getAmount();
+    }
+}
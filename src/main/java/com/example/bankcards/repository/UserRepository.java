@@ -5,6 +5,9 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -19,4 +22,22 @@ public interface UserRepository extends JpaRepository<User, Long> {
     @Query("SELECT u FROM User u WHERE u.enabled = true AND u.id = :id")
     Optional<User> findActiveById(Long id);
 
+    @Query("SELECT u.id FROM User u WHERE u.enabled = false")
+    List<Long> findDisabledUserIds();
+
+    @Query("SELECT u.id FROM User u WHERE u.id IN :ids")
+    List<Long> findExistingIds(Collection<Long> ids);
+
+    @Query("SELECT u.id AS userId, u.tokensRevokedBefore AS revokedBefore FROM User u " +
+            "WHERE u.tokensRevokedBefore > :since")
+    List<TokenCutoff> findTokenCutoffsAfter(LocalDateTime since);
+
+    /**
+     * Момент, раньше которого выданные пользователю токены недействительны.
+     */
+    interface TokenCutoff {
+        Long getUserId();
+
+        LocalDateTime getRevokedBefore();
+    }
 }
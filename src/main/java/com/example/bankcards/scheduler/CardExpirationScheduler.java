@@ -1,5 +1,6 @@
 package com.example.bankcards.scheduler;
 
+import com.example.bankcards.dto.CardDTO;
 import com.example.bankcards.service.CardService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -11,17 +12,23 @@ import org.springframework.stereotype.Component;
 @RequiredArgsConstructor
 public class CardExpirationScheduler {
 
+    static final String JOB_NAME = "card-expiration";
+
     private final CardService cardService;
+    private final ClusterJobRunner clusterJobRunner;
 
 
     @Scheduled(cron = "0 0 3 * * ?")
     public void checkAndUpdateExpiredCards() {
-        log.info("Starting expired cards check...");
         try {
-            cardService.updateExpiredCardsStatus();
-            log.info("Expired cards check completed successfully");
+            clusterJobRunner.runExclusively(JOB_NAME, lease -> {
+                log.info("Starting expired cards check...");
+                CardDTO.ExpirationResult result = cardService.updateExpiredCardsStatus(lease::isLost);
+                log.info("Expired cards check completed successfully: {} cards expired", result.getExpiredCards());
+                return "expired=" + result.getExpiredCards() + ", chunks=" + result.getChunks();
+            });
         } catch (Exception e) {
             log.error("Error during expired cards check: {}", e.getMessage(), e);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,186 @@
+package com.example.bankcards.scheduler;
+
+import com.example.bankcards.entity.SchedulerRun;
+import com.example.bankcards.entity.enums.SchedulerRunStatus;
+import com.example.bankcards.repository.SchedulerLockRepository;
+import com.example.bankcards.repository.SchedulerRunRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Запускает задачу планировщика только на одном узле кластера через аренду в таблице scheduler_locks.
+ * Пока задача выполняется, аренда продлевается каждую треть lease-seconds. Если узел умер посреди запуска,
+ * аренда истекает без продления, и следующий запуск на другом узле захватывает ее и закрывает брошенную
+ * запись истории как ABANDONED. Сроки аренды считаются в SQL по часам БД (LOCALTIMESTAMP), а не по часам узла,
+ * поэтому расхождение часов между узлами не приводит к повторному запуску. Если аренда все же перешла к другому
+ * узлу (узел долго не мог ее продлить), {@link JobLease} помечается потерянной, и задача должна остановиться
+ * при ближайшей проверке.
+ */
+@Slf4j
+@Component
+public class ClusterJobRunner {
+
+    private static final int MAX_DETAILS_LENGTH = 1000;
+
+    private final SchedulerLockRepository schedulerLockRepository;
+    private final SchedulerRunRepository schedulerRunRepository;
+    private final String nodeId;
+    private final Duration leaseDuration;
+    private final long minHoldSeconds;
+    private final ScheduledExecutorService renewalExecutor;
+
+    public ClusterJobRunner(SchedulerLockRepository schedulerLockRepository,
+                            SchedulerRunRepository schedulerRunRepository,
+                            @Value("${app.scheduler.node-id:}") String nodeId,
+                            @Value("${app.scheduler.lease-seconds:600}") long leaseSeconds,
+                            @Value("${app.scheduler.min-hold-seconds:60}") long minHoldSeconds) {
+        this.schedulerLockRepository = schedulerLockRepository;
+        this.schedulerRunRepository = schedulerRunRepository;
+        this.nodeId = StringUtils.hasText(nodeId) ? nodeId : defaultNodeId();
+        this.leaseDuration = Duration.ofSeconds(leaseSeconds);
+        this.minHoldSeconds = minHoldSeconds;
+        this.renewalExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "scheduler-lease-renewal");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Выполняет задачу, которой не нужно следить за потерей аренды.
+     *
+     * @see #runExclusively(String, Function)
+     */
+    public boolean runExclusively(String jobName, Supplier<String> job) {
+        return runExclusively(jobName, lease -> job.get());
+    }
+
+    /**
+     * Выполняет задачу, если этому узлу удалось захватить аренду jobName, и пишет запуск в scheduler_runs.
+     * После завершения аренда удерживается не меньше min-hold-seconds от захвата, чтобы узлы,
+     * у которых тот же cron сработал чуть позже, не повторили задачу.
+     * Задача получает {@link JobLease} и должна проверять {@link JobLease#isLost()} между порциями работы.
+     * Запуск, потерявший аренду, записывается как ABANDONED.
+     *
+     * @param job задача, возвращает краткий итог для истории запусков
+     * @return false, если задачу в этот раз выполняет другой узел или аренда была потеряна во время запуска
+     */
+    public boolean runExclusively(String jobName, Function<JobLease, String> job) {
+        LocalDateTime startedAt = LocalDateTime.now();
+        if (!tryAcquire(jobName)) {
+            log.debug("Job {} skipped: lease is held by another node", jobName);
+            return false;
+        }
+
+        int abandoned = schedulerRunRepository.abandonRunning(jobName, startedAt);
+        if (abandoned > 0) {
+            log.warn("Job {}: {} runs of a node that lost its lease marked as abandoned", jobName, abandoned);
+        }
+
+        SchedulerRun run = schedulerRunRepository.save(SchedulerRun.builder()
+                .jobName(jobName)
+                .nodeId(nodeId)
+                .status(SchedulerRunStatus.RUNNING)
+                .startedAt(startedAt)
+                .build());
+
+        JobLease lease = new JobLease(leaseDuration);
+        long renewalMs = Math.max(leaseDuration.toMillis() / 3, 1);
+        ScheduledFuture<?> renewal = renewalExecutor.scheduleAtFixedRate(
+                () -> renew(jobName, lease), renewalMs, renewalMs, TimeUnit.MILLISECONDS);
+        try {
+            String details = job.apply(lease);
+            if (lease.isLost()) {
+                finish(run, SchedulerRunStatus.ABANDONED, details);
+                return false;
+            }
+            finish(run, SchedulerRunStatus.SUCCEEDED, details);
+            return true;
+        } catch (RuntimeException e) {
+            finish(run, SchedulerRunStatus.FAILED, e.getMessage());
+            throw e;
+        } finally {
+            renewal.cancel(false);
+            schedulerLockRepository.release(jobName, nodeId, minHoldSeconds);
+        }
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        renewalExecutor.shutdownNow();
+    }
+
+    private boolean tryAcquire(String jobName) {
+        long leaseSeconds = leaseDuration.toSeconds();
+        if (schedulerLockRepository.acquire(jobName, nodeId, leaseSeconds) == 1) {
+            return true;
+        }
+        if (schedulerLockRepository.existsById(jobName)) {
+            return false;
+        }
+        try {
+            return schedulerLockRepository.insert(jobName, nodeId, leaseSeconds) == 1;
+        } catch (DataIntegrityViolationException e) {
+            return false;
+        }
+    }
+
+    private void renew(String jobName, JobLease lease) {
+        if (lease.isLost()) {
+            return;
+        }
+        try {
+            if (schedulerLockRepository.extend(jobName, nodeId, leaseDuration.toSeconds()) == 0) {
+                lease.markLost();
+                log.error("Job {}: lease was taken over by another node, stopping the job", jobName);
+                return;
+            }
+            lease.renewed();
+        } catch (RuntimeException e) {
+            log.error("Job {}: failed to renew lease: {}", jobName, e.getMessage());
+            if (lease.isExpired()) {
+                lease.markLost();
+                log.error("Job {}: lease was not renewed for {}, stopping the job", jobName, leaseDuration);
+            }
+        }
+    }
+
+    private void finish(SchedulerRun run, SchedulerRunStatus status, String details) {
+        run.setStatus(status);
+        run.setFinishedAt(LocalDateTime.now());
+        if (details != null && details.length() > MAX_DETAILS_LENGTH) {
+            details = details.substring(0, MAX_DETAILS_LENGTH);
+        }
+        run.setDetails(details);
+        schedulerRunRepository.save(run);
+    }
+
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "unknown-host";
+        }
+        return host + ":" + ProcessHandle.current().pid();
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.bankcards.scheduler;
+
+import java.time.Duration;
+
+/**
+ * Аренда текущего запуска задачи. Поток продления помечает ее потерянной, если аренду захватил другой узел
+ * или продлить ее не удавалось дольше срока аренды. Задача проверяет {@link #isLost()} между порциями работы
+ * и прекращает выполнение.
+ */
+public class JobLease {
+
+    private final long durationNanos;
+    private volatile long renewedAt = System.nanoTime();
+    private volatile boolean lost;
+
+    JobLease(Duration duration) {
+        this.durationNanos = duration.toNanos();
+    }
+
+    public boolean isLost() {
+        return lost;
+    }
+
+    void renewed() {
+        renewedAt = System.nanoTime();
+    }
+
+    void markLost() {
+        lost = true;
+    }
+
+    /**
+     * Срок с последнего успешного продления измеряется монотонными часами узла, поэтому не зависит от их сдвига.
+     */
+    boolean isExpired() {
+        return System.nanoTime() - renewedAt >= durationNanos;
+    }
+}
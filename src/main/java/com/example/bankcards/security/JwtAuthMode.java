@@ -0,0 +1,12 @@
+package com.example.bankcards.security;
+
+/**
+ * Источник пользователя для запроса с JWT (app.jwt.auth-mode).
+ * STATELESS - UserPrincipal собирается из claims токена, БД не читается, отозванные и отключенные
+ * пользователи отсекаются по {@link UserRevocationRegistry}.
+ * DATABASE - пользователь загружается из таблицы users на каждый запрос.
+ */
+public enum JwtAuthMode {
+    STATELESS,
+    DATABASE
+}
@@ -1,11 +1,14 @@
 package com.example.bankcards.security;
+import com.example.bankcards.service.TokenRevocationService;
 import com.example.bankcards.service.UserDetailsServiceImpl;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -23,6 +26,11 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtTokenProvider tokenProvider;
     private final UserDetailsServiceImpl customUserDetailsService;
+    private final UserRevocationRegistry revocationRegistry;
+    private final TokenRevocationService tokenRevocationService;
+
+    @Value("${app.jwt.auth-mode:STATELESS}")
+    private JwtAuthMode authMode;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request,
@@ -31,10 +39,10 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         try {
             String jwt = getJwtFromRequest(request);
 
-            if (StringUtils.hasText(jwt) && tokenProvider.validateToken(jwt)) {
-                String username = tokenProvider.getUsernameFromToken(jwt);
+            Claims claims = StringUtils.hasText(jwt) ? tokenProvider.parseClaims(jwt) : null;
+            UserDetails userDetails = claims != null ? resolveUser(claims) : null;
 
-                UserDetails userDetails = customUserDetailsService.loadUserByUsername(username);
+            if (userDetails != null) {
                 UsernamePasswordAuthenticationToken authentication =
                         new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
 
@@ -48,6 +56,24 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    private UserDetails resolveUser(Claims claims) {
+        if (tokenRevocationService.isRevoked(claims.getId())) {
+            log.debug("Rejected revoked token {}", claims.getId());
+            return null;
+        }
+
+        if (authMode == JwtAuthMode.DATABASE) {
+            return customUserDetailsService.loadUserByUsername(claims.getSubject());
+        }
+
+        UserPrincipal principal = UserPrincipal.fromClaims(claims);
+        if (revocationRegistry.isRevoked(principal.getId(), claims.getIssuedAt())) {
+            log.debug("Rejected revoked token of user {}", principal.getId());
+            return null;
+        }
+        return principal;
+    }
+
     private String getJwtFromRequest(HttpServletRequest request) {
         String bearerToken = request.getHeader("Authorization");
         if (StringUtils.hasText(bearerToken) && bearerToken.startsWith("Bearer ")) {
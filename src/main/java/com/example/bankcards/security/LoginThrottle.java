@@ -0,0 +1,96 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.exception.TooManyRequestsException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ограничение неудачных входов по имени пользователя и по IP (app.auth.login-throttle).
+ * Неудачи считаются в фиксированном окне от первой неудачи; после превышения порога вход отклоняется
+ * с 429 до конца окна, без обращения к пулу BCrypt. Успешный вход сбрасывает счетчик имени.
+ * Счетчики хранятся в памяти узла, число отслеживаемых ключей ограничено max-tracked.
+ */
+@Component
+public class LoginThrottle {
+
+    private final int maxFailuresPerUsername;
+    private final int maxFailuresPerIp;
+    private final long windowMillis;
+    private final Cache<String, Failures> usernames;
+    private final Cache<String, Failures> addresses;
+
+    public LoginThrottle(@Value("${app.auth.login-throttle.max-failures-per-username:5}") int maxFailuresPerUsername,
+                         @Value("${app.auth.login-throttle.max-failures-per-ip:50}") int maxFailuresPerIp,
+                         @Value("${app.auth.login-throttle.window-seconds:900}") long windowSeconds,
+                         @Value("${app.auth.login-throttle.max-tracked:100000}") long maxTracked) {
+        this.maxFailuresPerUsername = maxFailuresPerUsername;
+        this.maxFailuresPerIp = maxFailuresPerIp;
+        this.windowMillis = Duration.ofSeconds(windowSeconds).toMillis();
+        this.usernames = newCache(windowSeconds, maxTracked);
+        this.addresses = newCache(windowSeconds, maxTracked);
+    }
+
+    /**
+     * Отклоняет вход, если для имени или адреса исчерпан лимит неудач в текущем окне.
+     */
+    public void checkAllowed(String username, String clientIp) {
+        long now = System.currentTimeMillis();
+        check(usernames, username, maxFailuresPerUsername, now, "Too many failed logins for this user");
+        check(addresses, clientIp, maxFailuresPerIp, now, "Too many failed logins from this address");
+    }
+
+    public void recordFailure(String username, String clientIp) {
+        long now = System.currentTimeMillis();
+        increment(usernames, username, now);
+        increment(addresses, clientIp, now);
+    }
+
+    public void recordSuccess(String username) {
+        if (username != null) {
+            usernames.invalidate(username);
+        }
+    }
+
+    private void check(Cache<String, Failures> cache, String key, int maxFailures, long now, String details) {
+        if (key == null) {
+            return;
+        }
+        Failures failures = cache.getIfPresent(key);
+        if (failures == null || failures.count.get() < maxFailures) {
+            return;
+        }
+        long remaining = failures.windowStart + windowMillis - now;
+        if (remaining > 0) {
+            throw new TooManyRequestsException("Too many login attempts", details,
+                    Math.max(1, (remaining + 999) / 1000));
+        }
+    }
+
+    private void increment(Cache<String, Failures> cache, String key, long now) {
+        if (key != null) {
+            cache.get(key, k -> new Failures(now)).count.incrementAndGet();
+        }
+    }
+
+    private static Cache<String, Failures> newCache(long windowSeconds, long maxTracked) {
+        return Caffeine.newBuilder()
+                .maximumSize(maxTracked)
+                .expireAfterWrite(Duration.ofSeconds(windowSeconds))
+                .build();
+    }
+
+    private static final class Failures {
+
+        private final long windowStart;
+        private final AtomicInteger count = new AtomicInteger();
+
+        private Failures(long windowStart) {
+            this.windowStart = windowStart;
+        }
+    }
+}
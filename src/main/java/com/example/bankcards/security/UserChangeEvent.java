@@ -0,0 +1,14 @@
+package com.example.bankcards.security;
+
+/**
+ * Изменение пользователя, после которого кэши и выданные токены должны быть пересмотрены.
+ */
+public record UserChangeEvent(Long userId, String username, Type type) {
+
+    public enum Type {
+        UPDATED,
+        ROLE_CHANGED,
+        DISABLED,
+        ENABLED
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.bankcards.security;
+
+import java.util.function.Consumer;
+
+/**
+ * Шина изменений пользователей. Реализация по умолчанию ({@link InProcessUserEventBus}) доставляет
+ * события только внутри процесса; для нескольких узлов достаточно объявить свой бин, который
+ * рассылает события через брокер и передает входящие подписчикам.
+ */
+public interface UserEventBus {
+
+    void publish(UserChangeEvent event);
+
+    void subscribe(Consumer<UserChangeEvent> listener);
+}
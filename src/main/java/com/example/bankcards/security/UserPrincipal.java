@@ -2,8 +2,10 @@ package com.example.bankcards.security;
 
 
 import com.example.bankcards.entity.User;
+import io.jsonwebtoken.Claims;
 import lombok.Getter;
 import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
 import java.util.ArrayList;
@@ -43,6 +45,29 @@ public class UserPrincipal implements UserDetails {
         );
     }
 
+    /**
+     * Пользователь из claims access-токена (id, roles, subject) без обращения к БД.
+     * Пароль и email в токене не передаются.
+     */
+    public static UserPrincipal fromClaims(Claims claims) {
+        List<GrantedAuthority> authorities = new ArrayList<>();
+        List<?> roles = claims.get("roles", List.class);
+        if (roles != null) {
+            for (Object role : roles) {
+                authorities.add(new SimpleGrantedAuthority(role.toString()));
+            }
+        }
+
+        return new UserPrincipal(
+                claims.get("id", Number.class).longValue(),
+                claims.getSubject(),
+                null,
+                null,
+                authorities,
+                true
+        );
+    }
+
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
         return authorities;
@@ -0,0 +1,125 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Отключенные пользователи и отзыв ранее выданных токенов для stateless-аутентификации.
+ * Источник истины - БД: флаг enabled и users.tokens_revoked_before (смена роли и повторное включение отзывают
+ * токены, выданные до них, - в них записаны старые роли). Реестр перечитывает их периодически, поэтому отзыв
+ * доходит до всех узлов и переживает рестарт; события {@link UserEventBus} применяются сразу на своем узле.
+ * Событие, пришедшее во время перечитывания, не затирается результатом запроса, начатого до него.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UserRevocationRegistry {
+
+    private final UserRepository userRepository;
+    private final UserEventBus userEventBus;
+
+    @Value("${app.jwt.expiration}")
+    private long jwtExpirationMs;
+
+    private volatile Set<Long> disabledUsers = Set.of();
+    private final Map<Long, Long> revokedBefore = new ConcurrentHashMap<>();
+    // Изменения enabled по событиям с номером события; нужны, чтобы refresh не откатил их устаревшим чтением
+    private final Map<Long, DisabledChange> recentChanges = new HashMap<>();
+    private long eventSequence;
+
+    public boolean isRevoked(Long userId, Date issuedAt) {
+        if (disabledUsers.contains(userId)) {
+            return true;
+        }
+        Long cutoff = revokedBefore.get(userId);
+        return cutoff != null && (issuedAt == null || issuedAt.toInstant().getEpochSecond() < cutoff);
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        userEventBus.subscribe(this::onUserChange);
+    }
+
+    private void onUserChange(UserChangeEvent event) {
+        switch (event.type()) {
+            case DISABLED -> updateDisabled(event.userId(), true);
+            case ENABLED -> {
+                updateDisabled(event.userId(), false);
+                // Токены, выданные до отключения, остаются недействительными
+                revokeTokensIssuedBefore(event.userId(), Instant.now().getEpochSecond());
+            }
+            case ROLE_CHANGED -> revokeTokensIssuedBefore(event.userId(), Instant.now().getEpochSecond());
+            default -> {
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.jwt.revocation-refresh-ms:30000}")
+    public void refresh() {
+        long startedAt;
+        synchronized (this) {
+            startedAt = eventSequence;
+        }
+
+        Set<Long> loaded = ConcurrentHashMap.newKeySet();
+        loaded.addAll(userRepository.findDisabledUserIds());
+        Instant expiredBefore = Instant.now().minusMillis(jwtExpirationMs);
+        for (UserRepository.TokenCutoff cutoff : userRepository.findTokenCutoffsAfter(
+                LocalDateTime.ofInstant(expiredBefore, ZoneId.systemDefault()))) {
+            revokeTokensIssuedBefore(cutoff.getUserId(),
+                    cutoff.getRevokedBefore().atZone(ZoneId.systemDefault()).toEpochSecond());
+        }
+
+        synchronized (this) {
+            recentChanges.values().removeIf(change -> change.sequence() <= startedAt);
+            recentChanges.forEach((userId, change) -> {
+                if (change.disabled()) {
+                    loaded.add(userId);
+                } else {
+                    loaded.remove(userId);
+                }
+            });
+            disabledUsers = loaded;
+        }
+
+        // Отметки старше срока жизни токена больше ничего не отсекают
+        long expired = expiredBefore.getEpochSecond();
+        revokedBefore.values().removeIf(cutoff -> cutoff < expired);
+        log.debug("Revocation registry refreshed: {} disabled users, {} revoked token sets",
+                loaded.size(), revokedBefore.size());
+    }
+
+    private synchronized void updateDisabled(Long userId, boolean disabled) {
+        recentChanges.put(userId, new DisabledChange(++eventSequence, disabled));
+        Set<Long> updated = ConcurrentHashMap.newKeySet();
+        updated.addAll(disabledUsers);
+        if (disabled) {
+            updated.add(userId);
+        } else {
+            updated.remove(userId);
+        }
+        disabledUsers = updated;
+    }
+
+    // Отметка только растет, поэтому чтение из БД и событие можно применять в любом порядке
+    private void revokeTokensIssuedBefore(Long userId, long epochSecond) {
+        revokedBefore.merge(userId, epochSecond, Math::max);
+    }
+
+    private record DisabledChange(long sequence, boolean disabled) {
+    }
+}
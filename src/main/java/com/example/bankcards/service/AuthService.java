@@ -2,11 +2,16 @@ package com.example.bankcards.service;
 
 import com.example.bankcards.dto.AuthDTO;
 import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.UserOperationException;
 import com.example.bankcards.security.JwtTokenProvider;
+import com.example.bankcards.security.LoginThrottle;
 
 import com.example.bankcards.security.UserPrincipal;
+import io.jsonwebtoken.Claims;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -20,9 +25,31 @@ public class AuthService {
     private final AuthenticationManager authenticationManager;
     private final JwtTokenProvider tokenProvider;
     private final UserService userService;
+    private final TokenRevocationService tokenRevocationService;
+    private final RefreshTokenService refreshTokenService;
+    private final LoginThrottle loginThrottle;
 
-    @Transactional
-    public AuthDTO.JwtResponse authenticateUser(AuthDTO.LoginRequest loginRequest) {
+    /**
+     * Вход по паролю. Неудачные попытки учитываются по имени и адресу клиента,
+     * после превышения лимита вход отклоняется с 429 до проверки пароля.
+     * Метод выполняется без транзакции: пользователь читается и refresh-токен выдается в собственных коротких
+     * транзакциях, а ожидание очереди BCrypt и само хэширование не удерживают соединение из пула.
+     */
+    public AuthDTO.JwtResponse authenticateUser(AuthDTO.LoginRequest loginRequest, String clientIp) {
+        loginThrottle.checkAllowed(loginRequest.getUsername(), clientIp);
+
+        AuthDTO.JwtResponse response;
+        try {
+            response = authenticate(loginRequest);
+        } catch (BadCredentialsException e) {
+            loginThrottle.recordFailure(loginRequest.getUsername(), clientIp);
+            throw e;
+        }
+        loginThrottle.recordSuccess(loginRequest.getUsername());
+        return response;
+    }
+
+    private AuthDTO.JwtResponse authenticate(AuthDTO.LoginRequest loginRequest) {
         Authentication authentication = authenticationManager.authenticate(
                 new UsernamePasswordAuthenticationToken(
                         loginRequest.getUsername(),
@@ -35,16 +62,36 @@ public class AuthService {
 
         UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
 
-        return new AuthDTO.JwtResponse(
-                jwt,
-                userPrincipal.getId(),
-                userPrincipal.getUsername(),
-                userPrincipal.getEmail(),
-                userPrincipal.getAuthorities().iterator().next().getAuthority()
-        );
+        return toResponse(jwt, userPrincipal, refreshTokenService.issue(userPrincipal.getId()));
     }
 
-    @Transactional
+    /**
+     * Выдает новый access-токен по refresh-токену без проверки пароля.
+     * Refresh-токен ротируется; пользователь должен существовать и быть активным.
+     */
+    public AuthDTO.JwtResponse refresh(String refreshToken) {
+        RefreshTokenService.Rotation rotation = refreshTokenService.rotate(refreshToken);
+
+        User user = userService.findUserById(rotation.userId())
+                .filter(User::isEnabled)
+                .orElse(null);
+        if (user == null) {
+            // Удаленный или отключенный пользователь не продлевает сессию, цепочка отзывается
+            refreshTokenService.revoke(rotation.refreshToken());
+            throw new UserOperationException("Invalid refresh token", HttpStatus.UNAUTHORIZED);
+        }
+
+        UserPrincipal userPrincipal = UserPrincipal.create(user);
+        String jwt = tokenProvider.generateToken(
+                new UsernamePasswordAuthenticationToken(userPrincipal, null, userPrincipal.getAuthorities()));
+
+        return toResponse(jwt, userPrincipal, rotation.refreshToken());
+    }
+
+    /**
+     * Регистрация фиксируется сама по себе, вход выполняется уже вне транзакции: ни хэширование, ни проверка
+     * пароля не держат соединение из пула.
+     */
     public AuthDTO.JwtResponse registerUser(AuthDTO.RegisterRequest registerRequest) {
         User user = userService.registerUser(registerRequest);
 
@@ -52,7 +99,34 @@ public class AuthService {
         loginRequest.setUsername(registerRequest.getUsername());
         loginRequest.setPassword(registerRequest.getPassword());
 
-        return authenticateUser(loginRequest);
+        return authenticate(loginRequest);
+    }
+
+    /**
+     * Отзывает предъявленный access-токен до истечения его срока и, если передан, цепочку refresh-токена.
+     */
+    public void logout(String token, String refreshToken) {
+        if (refreshToken != null) {
+            refreshTokenService.revoke(refreshToken);
+        }
+
+        Claims claims = tokenProvider.parseClaims(token);
+        if (claims == null || claims.getId() == null) {
+            return;
+        }
+        tokenRevocationService.revoke(claims.getId(), claims.get("id", Number.class).longValue(), claims.getExpiration());
+    }
+
+    private AuthDTO.JwtResponse toResponse(String jwt, UserPrincipal userPrincipal, String refreshToken) {
+        AuthDTO.JwtResponse response = new AuthDTO.JwtResponse(
+                jwt,
+                userPrincipal.getId(),
+                userPrincipal.getUsername(),
+                userPrincipal.getEmail(),
+                userPrincipal.getAuthorities().iterator().next().getAuthority()
+        );
+        response.setRefreshToken(refreshToken);
+        return response;
     }
 
     @Transactional(readOnly = true)
@@ -0,0 +1,23 @@
+package com.example.bankcards.service;
+
+import org.springframework.http.MediaType;
+
+/**
+ * Формат входного потока массового импорта карт: NDJSON - по JSON-объекту CardDTO.CreateRequest на строку,
+ * CSV - заголовок с именами полей CreateRequest и по карте на строку.
+ */
+public enum CardImportFormat {
+    NDJSON,
+    CSV;
+
+    public static CardImportFormat fromContentType(String contentType) {
+        MediaType mediaType = MediaType.parseMediaType(contentType);
+        if (mediaType.isCompatibleWith(MediaType.APPLICATION_NDJSON)) {
+            return NDJSON;
+        }
+        if (mediaType.isCompatibleWith(MediaType.parseMediaType("text/csv"))) {
+            return CSV;
+        }
+        throw new IllegalArgumentException("Unsupported import content type: " + contentType);
+    }
+}
@@ -0,0 +1,353 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardDTO;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.exception.CardOperationException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.util.EncryptionUtil;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.stream.Collectors;
+
+/**
+ * Массовый импорт карт из потока NDJSON или CSV порциями по chunk-size строк.
+ * Проверка, хэш и шифрование номера и CVV - самая дорогая часть - идут параллельно в ограниченном ForkJoinPool,
+ * чтобы импорт портфеля не отнимал все ядра у переводов. Дубликаты номеров и отсутствующие владельцы
+ * отсеиваются одним запросом на порцию, карты вставляются пакетами JDBC (hibernate.jdbc.batch_size)
+ * в отдельной транзакции на порцию. Результат по каждой строке пишется в выходной поток NDJSON сразу после
+ * своей порции, последней строкой - CardDTO.ImportSummary. Ошибка строки не останавливает импорт.
+ */
+@Slf4j
+@Service
+public class CardImportService {
+
+    private final CardService cardService;
+    private final CardRepository cardRepository;
+    private final UserRepository userRepository;
+    private final EncryptionUtil encryptionUtil;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+
+    public CardImportService(CardService cardService,
+                             CardRepository cardRepository,
+                             UserRepository userRepository,
+                             EncryptionUtil encryptionUtil,
+                             ObjectMapper objectMapper,
+                             Validator validator,
+                             EntityManager entityManager,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${app.card.import.parallelism:0}") int parallelism,
+                             @Value("${app.card.import.chunk-size:1000}") int chunkSize) {
+        this.cardService = cardService;
+        this.cardRepository = cardRepository;
+        this.userRepository = userRepository;
+        this.encryptionUtil = encryptionUtil;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+
+        int threads = parallelism > 0 ? parallelism : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        this.pool = new ForkJoinPool(threads, forkJoinPool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("card-import-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+    }
+
+    public CardDTO.ImportSummary importCards(InputStream in, CardImportFormat format, OutputStream out)
+            throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+
+        List<String> header = null;
+        long lineNumber = 0;
+        long total = 0;
+        long created = 0;
+        List<ImportRow> chunk = new ArrayList<>(chunkSize);
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            if (format == CardImportFormat.CSV && header == null) {
+                header = parseCsvLine(line);
+                continue;
+            }
+            chunk.add(parse(lineNumber, line, format, header));
+            if (chunk.size() == chunkSize) {
+                total += chunk.size();
+                created += importChunk(chunk, writer);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            total += chunk.size();
+            created += importChunk(chunk, writer);
+        }
+
+        CardDTO.ImportSummary summary = CardDTO.ImportSummary.builder()
+                .total(total)
+                .created(created)
+                .failed(total - created)
+                .build();
+        writer.write(objectMapper.writeValueAsString(summary));
+        writer.write('\n');
+        writer.flush();
+
+        log.info("Card import finished: {} created, {} failed", created, total - created);
+        return summary;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Импортирует порцию, пишет результат по каждой ее строке и возвращает число созданных карт.
+     */
+    private int importChunk(List<ImportRow> rows, Writer writer) throws IOException {
+        pool.submit(() -> rows.parallelStream().forEach(this::prepare)).join();
+
+        rejectMissingOwners(ready(rows));
+        rejectDuplicates(ready(rows));
+        insert(ready(rows));
+
+        int created = 0;
+        for (ImportRow row : rows) {
+            if (row.card != null) {
+                created++;
+            }
+            writer.write(objectMapper.writeValueAsString(row.toResult()));
+            writer.write('\n');
+        }
+        writer.flush();
+        return created;
+    }
+
+    private static List<ImportRow> ready(List<ImportRow> rows) {
+        return rows.stream().filter(row -> row.card != null).toList();
+    }
+
+    private void prepare(ImportRow row) {
+        if (row.request == null) {
+            return;
+        }
+
+        Set<ConstraintViolation<CardDTO.CreateRequest>> violations = validator.validate(row.request);
+        if (!violations.isEmpty()) {
+            row.fail(violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining("; ")));
+            return;
+        }
+
+        try {
+            cardService.validateCreateRequest(row.request);
+            String cardNumberHash = encryptionUtil.hash(row.request.getCardNumber());
+            row.card = cardService.buildCard(row.request, cardNumberHash);
+        } catch (CardOperationException | IllegalArgumentException e) {
+            row.fail(e.getMessage());
+        }
+    }
+
+    private void rejectMissingOwners(List<ImportRow> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        Set<Long> userIds = rows.stream().map(row -> row.request.getUserId()).collect(Collectors.toSet());
+        Set<Long> existing = new HashSet<>(userRepository.findExistingIds(userIds));
+        for (ImportRow row : rows) {
+            if (!existing.contains(row.request.getUserId())) {
+                row.fail("User not found with id: " + row.request.getUserId());
+            }
+        }
+    }
+
+    private void rejectDuplicates(List<ImportRow> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        Set<String> existing = new HashSet<>(cardRepository.findExistingHashes(
+                rows.stream().map(row -> row.card.getCardNumberHash()).toList()));
+        Set<String> seen = new HashSet<>();
+        for (ImportRow row : rows) {
+            String hash = row.card.getCardNumberHash();
+            if (existing.contains(hash)) {
+                row.fail("Card with this number already exists");
+            } else if (!seen.add(hash)) {
+                row.fail("Duplicate card number in import");
+            }
+        }
+    }
+
+    private void insert(List<ImportRow> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                for (ImportRow row : rows) {
+                    row.card.setOwner(userRepository.getReferenceById(row.request.getUserId()));
+                }
+                cardRepository.saveAll(rows.stream().map(row -> row.card).toList());
+                cardRepository.flush();
+            });
+        } catch (DataIntegrityViolationException e) {
+            // между проверкой и вставкой тот же номер успел добавить параллельный запрос - порция по одной карте
+            log.warn("Card import chunk hit a concurrent duplicate, inserting {} cards one by one", rows.size());
+            entityManager.clear();
+            rows.forEach(this::insertSingle);
+        } finally {
+            entityManager.clear();
+        }
+    }
+
+    private void insertSingle(ImportRow row) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                row.card.setId(null);
+                row.card.setVersion(null);
+                row.card.setOwner(userRepository.getReferenceById(row.request.getUserId()));
+                cardRepository.saveAndFlush(row.card);
+            });
+        } catch (DataIntegrityViolationException e) {
+            row.fail("Card with this number already exists");
+        }
+    }
+
+    private ImportRow parse(long lineNumber, String line, CardImportFormat format, List<String> header) {
+        try {
+            if (format == CardImportFormat.NDJSON) {
+                return new ImportRow(lineNumber, objectMapper.readValue(line, CardDTO.CreateRequest.class));
+            }
+            List<String> values = parseCsvLine(line);
+            if (values.size() != header.size()) {
+                return ImportRow.failed(lineNumber, "Expected " + header.size() + " columns but was " + values.size());
+            }
+            Map<String, String> fields = new LinkedHashMap<>();
+            for (int i = 0; i < header.size(); i++) {
+                String value = values.get(i).trim();
+                fields.put(header.get(i).trim(), value.isEmpty() ? null : value);
+            }
+            return new ImportRow(lineNumber, objectMapper.convertValue(fields, CardDTO.CreateRequest.class));
+        } catch (IOException | IllegalArgumentException e) {
+            return ImportRow.failed(lineNumber, "Malformed row: " + malformedMessage(e));
+        }
+    }
+
+    private static String malformedMessage(Exception e) {
+        return e instanceof JsonProcessingException json ? json.getOriginalMessage() : e.getMessage();
+    }
+
+    /**
+     * Значения CSV через запятую; значение в кавычках может содержать запятые и удвоенные кавычки.
+     * Переводы строк внутри значения не поддерживаются - у полей карты их не бывает.
+     */
+    static List<String> parseCsvLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    value.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        values.add(value.toString());
+        return values;
+    }
+
+    /**
+     * Строка импорта: запрос, затем готовая карта или причина отказа.
+     */
+    private static final class ImportRow {
+        private final long line;
+        private final CardDTO.CreateRequest request;
+        private Card card;
+        private String error;
+
+        private ImportRow(long line, CardDTO.CreateRequest request) {
+            this.line = line;
+            this.request = request;
+        }
+
+        static ImportRow failed(long line, String error) {
+            ImportRow row = new ImportRow(line, null);
+            row.error = error;
+            return row;
+        }
+
+        void fail(String error) {
+            this.card = null;
+            this.error = error;
+        }
+
+        CardDTO.ImportRowResult toResult() {
+            if (card == null) {
+                return CardDTO.ImportRowResult.builder()
+                        .row(line)
+                        .status(CardDTO.ImportRowStatus.FAILED)
+                        .error(error)
+                        .build();
+            }
+            return CardDTO.ImportRowResult.builder()
+                    .row(line)
+                    .status(CardDTO.ImportRowStatus.CREATED)
+                    .cardId(card.getId())
+                    .maskedNumber(card.getMaskedNumber())
+                    .build();
+        }
+    }
+}
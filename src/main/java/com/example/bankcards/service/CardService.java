@@ -1,5 +1,6 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.aspect.RetryOnConcurrencyFailure;
 import com.example.bankcards.dto.CardDTO;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.User;
@@ -7,6 +8,7 @@ import com.example.bankcards.entity.enums.CardStatus;
 import com.example.bankcards.exception.CardOperationException;
 import com.example.bankcards.exception.UserOperationException;
 import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.CardRepository.CardView;
 import com.example.bankcards.repository.UserRepository;
 import com.example.bankcards.util.CardMaskingUtil;
 import com.example.bankcards.util.CardNumberGenerator;
@@ -14,6 +16,7 @@ import com.example.bankcards.util.EncryptionUtil;
 import com.example.bankcards.util.ValidationUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -21,11 +24,13 @@ import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.BooleanSupplier;
 
 @Slf4j
 @Service
@@ -39,11 +44,30 @@ public class CardService {
     private final CardNumberGenerator cardNumberGenerator;
     private final ValidationUtil validationUtil;
 
+    @Value("${app.card.expiration-chunk-size:1000}")
+    private int expirationChunkSize;
+
     @Transactional
     public Card createCard(CardDTO.CreateRequest request) {
         User owner = userRepository.findById(request.getUserId())
                 .orElseThrow(() -> new UserOperationException("User not found with id: " + request.getUserId(), HttpStatus.NOT_FOUND));
 
+        validateCreateRequest(request);
+
+        String cardNumberHash = encryptionUtil.hash(request.getCardNumber());
+        if (cardRepository.existsByCardNumberHash(cardNumberHash)) {
+            throw new CardOperationException("Card with this number already exists");
+        }
+
+        Card card = buildCard(request, cardNumberHash);
+        card.setOwner(owner);
+        return cardRepository.save(card);
+    }
+
+    /**
+     * Проверки номера и срока действия новой карты. Не обращается к БД и потокобезопасна.
+     */
+    public void validateCreateRequest(CardDTO.CreateRequest request) {
         if (!cardNumberGenerator.validateLuhn(request.getCardNumber())){
             throw new CardOperationException("Invalid card number", HttpStatus.BAD_REQUEST);
         }
@@ -60,32 +84,27 @@ public class CardService {
         if (!validationUtil.isValidCardNumber(request.getCardNumber())) {
             throw new CardOperationException("Invalid card number", HttpStatus.BAD_REQUEST);
         }
+    }
 
-        String encryptedCardNumber = encryptionUtil.encrypt(request.getCardNumber());
-        String cardNumberHash = encryptionUtil.hash(request.getCardNumber());
-
-        if (cardRepository.existsByCardNumberHash(cardNumberHash)) {
-            throw new CardOperationException("Card with this number already exists");
-        }
-
+    /**
+     * Новая карта без владельца: шифрует номер и CVV, маскирует номер. Не обращается к БД и потокобезопасна.
+     */
+    public Card buildCard(CardDTO.CreateRequest request, String cardNumberHash) {
         String maskedNumber = cardMaskingUtil.validateAndMask(request.getCardNumber());
-        String encryptedCVV = encryptionUtil.encrypt(request.getCvv());
 
-        Card card = Card.builder()
-                .cardNumber(encryptedCardNumber)
+        return Card.builder()
+                .cardNumber(encryptionUtil.encrypt(request.getCardNumber()))
                 .cardNumberHash(cardNumberHash)
                 .maskedNumber(maskedNumber)
+                .lastFour(cardMaskingUtil.getLastFourDigits(maskedNumber))
                 .ownerName(request.getOwnerName())
                 .expiryDate(request.getExpiryDate())
-                .cvv(encryptedCVV)
+                .cvv(encryptionUtil.encrypt(request.getCvv()))
                 .balance(request.getInitialBalance() != null ?
                         request.getInitialBalance() : BigDecimal.ZERO)
                 .status(CardStatus.ACTIVE)
-                .owner(owner)
                 .createdAt(LocalDateTime.now())
                 .build();
-
-        return cardRepository.save(card);
     }
 
     @Transactional
@@ -126,12 +145,12 @@ public class CardService {
 
 
     @Transactional(readOnly = true)
-    public List<Card> getUserCards(Long userId) {
-        return cardRepository.findByOwnerId(userId);
+    public List<CardView> getUserCards(Long userId) {
+        return cardRepository.findViewsByOwnerId(userId);
     }
 
     @Transactional(readOnly = true)
-    public Page<Card> getUserCards(Long userId, CardDTO.FilterRequest filter) {
+    public Page<CardView> getUserCards(Long userId, CardDTO.FilterRequest filter) {
         Pageable pageable = PageRequest.of(
                 filter.getPage(),
                 filter.getSize(),
@@ -139,23 +158,29 @@ public class CardService {
                 filter.getSortBy()
         );
 
-        if (filter.getStatus() != null || filter.getCardNumberLastFour() != null) {
-            return cardRepository.findCardsWithFilters(
-                    userId,
-                    filter.getStatus(),
-                    filter.getCardNumberLastFour(),
-                    pageable
-            );
+        // Отдельный запрос на каждое сочетание фильтров: только равенства, без "IS NULL OR",
+        // чтобы план шел по префиксу индекса (user_id, status, last_four)
+        CardStatus status = filter.getStatus();
+        String lastFour = StringUtils.hasText(filter.getCardNumberLastFour()) ? filter.getCardNumberLastFour() : null;
+        if (status != null && lastFour != null) {
+            return cardRepository.findViewsByOwnerIdAndStatusAndLastFour(userId, status, lastFour, pageable);
+        }
+        if (status != null) {
+            return cardRepository.findViewsByOwnerIdAndStatus(userId, status, pageable);
+        }
+        if (lastFour != null) {
+            return cardRepository.findViewsByOwnerIdAndLastFour(userId, lastFour, pageable);
         }
 
-        return cardRepository.findByOwnerId(userId, pageable);
+        return cardRepository.findViewsByOwnerId(userId, pageable);
     }
 
     @Transactional(readOnly = true)
-    public Page<Card> getAllCards(Pageable pageable) {
-        return cardRepository.findAll(pageable);
+    public Page<CardView> getAllCards(Pageable pageable) {
+        return cardRepository.findAllViews(pageable);
     }
 
+    @RetryOnConcurrencyFailure
     @Transactional
     public Card updateCardStatus(Long cardId, CardDTO.UpdateStatusRequest request) {
         Card card = getCardById(cardId);
@@ -171,6 +196,7 @@ public class CardService {
         return cardRepository.save(card);
     }
 
+    @RetryOnConcurrencyFailure
     @Transactional
     public Card blockCard(Long cardId, String reason) {
         CardDTO.UpdateStatusRequest request =
@@ -181,6 +207,7 @@ public class CardService {
         return updateCardStatus(cardId, request);
     }
 
+    @RetryOnConcurrencyFailure
     @Transactional
     public Card activateCard(Long cardId) {
         Card card = getCardById(cardId);
@@ -196,6 +223,7 @@ public class CardService {
         return updateCardStatus(cardId, request);
     }
 
+    @RetryOnConcurrencyFailure
     @Transactional
     public void deleteCard(Long cardId) {
         Card card = getCardById(cardId);
@@ -208,18 +236,47 @@ public class CardService {
         log.info("Card deleted: {}", cardId);
     }
 
-    @Transactional
-    public void updateExpiredCardsStatus() {
-        List<Card> expiredCards = cardRepository.findExpiredCards(LocalDate.now());
-
-        for (Card card : expiredCards) {
-            if (card.getStatus() != CardStatus.EXPIRED) {
-                card.setStatus(CardStatus.EXPIRED);
-                card.setUpdatedAt(LocalDateTime.now());
-                cardRepository.save(card);
-                log.info("Card {} marked as expired", card.getId());
+    /**
+     * Помечает истекшие карты одним UPDATE на порцию id вместо загрузки и сохранения каждой карты.
+     * Метод намеренно без общей транзакции: каждая порция фиксируется в expireCardsInRange,
+     * а уже помеченные EXPIRED карты не выбираются повторно.
+     */
+    public CardDTO.ExpirationResult updateExpiredCardsStatus() {
+        return updateExpiredCardsStatus(() -> false);
+    }
+
+    /**
+     * То же с остановкой между порциями: stopRequested проверяется перед каждой порцией (задача планировщика
+     * потеряла аренду). Зафиксированные порции остаются, следующий запуск продолжит с оставшихся карт.
+     */
+    public CardDTO.ExpirationResult updateExpiredCardsStatus(BooleanSupplier stopRequested) {
+        LocalDate today = LocalDate.now();
+        Pageable chunk = PageRequest.of(0, expirationChunkSize);
+        long lastId = 0L;
+        int expired = 0;
+        int chunks = 0;
+
+        List<Long> ids;
+        do {
+            if (stopRequested.getAsBoolean()) {
+                log.warn("Expired cards update stopped after {} chunks", chunks);
+                break;
             }
-        }
+            ids = cardRepository.findExpirableIdsAfter(today, lastId, chunk);
+            if (ids.isEmpty()) {
+                break;
+            }
+            long toId = ids.get(ids.size() - 1);
+            expired += cardRepository.expireCardsInRange(lastId, toId, today, LocalDateTime.now());
+            chunks++;
+            lastId = toId;
+        } while (ids.size() == expirationChunkSize);
+
+        log.info("Marked {} cards as expired in {} chunks", expired, chunks);
+        return CardDTO.ExpirationResult.builder()
+                .expiredCards(expired)
+                .chunks(chunks)
+                .build();
     }
 
     @Transactional(readOnly = true)
@@ -228,6 +285,7 @@ public class CardService {
         return card.getBalance();
     }
 
+    @RetryOnConcurrencyFailure
     @Transactional
     public void updateBalance(Long cardId, BigDecimal newBalance) {
         Card card = getCardById(cardId);
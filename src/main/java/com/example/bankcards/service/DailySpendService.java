@@ -0,0 +1,87 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.exception.TransactionException;
+import com.example.bankcards.repository.CardDailySpendRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Дневной объем списаний по карте из агрегата card_daily_spend.
+ * Агрегат обновляется в транзакции перевода условным UPDATE, который и является окончательной проверкой лимита.
+ * Перед таблицей стоит кэш на текущий день: запись сбрасывается после коммита перевода по карте,
+ * живет не дольше cache-ttl-seconds (переводы с других узлов) и весь кэш очищается при смене даты.
+ * Устаревшее значение в кэше может только пропустить предварительную проверку, но не условный UPDATE.
+ */
+@Slf4j
+@Service
+public class DailySpendService {
+
+    private final CardDailySpendRepository cardDailySpendRepository;
+    private final long cacheTtlMillis;
+    private final Map<Long, CachedSpend> todaySpend = new ConcurrentHashMap<>();
+    private volatile LocalDate cacheDate = LocalDate.now();
+
+    public DailySpendService(CardDailySpendRepository cardDailySpendRepository,
+                             @Value("${app.limits.spend-cache-ttl-seconds:30}") long cacheTtlSeconds) {
+        this.cardDailySpendRepository = cardDailySpendRepository;
+        this.cacheTtlMillis = cacheTtlSeconds * 1000;
+    }
+
+    public BigDecimal getTodaySpend(Long cardId) {
+        LocalDate today = currentDay();
+        CachedSpend cached = todaySpend.get(cardId);
+        if (cached != null && System.currentTimeMillis() - cached.loadedAt() < cacheTtlMillis) {
+            return cached.amount();
+        }
+
+        BigDecimal amount = cardDailySpendRepository.findAmount(cardId, today).orElse(BigDecimal.ZERO);
+        todaySpend.put(cardId, new CachedSpend(amount, System.currentTimeMillis()));
+        return amount;
+    }
+
+    /**
+     * Учитывает списание в агрегате в рамках текущей транзакции перевода.
+     * Вызывается после списания баланса: строка карты уже заблокирована, поэтому вставка новой строки дня не гонится.
+     */
+    public void recordSpend(Long cardId, BigDecimal amount, BigDecimal dailyLimit) {
+        LocalDate today = currentDay();
+        if (cardDailySpendRepository.addWithinLimit(cardId, today, amount, dailyLimit) == 0) {
+            if (cardDailySpendRepository.findAmount(cardId, today).isPresent() || amount.compareTo(dailyLimit) > 0) {
+                throw new TransactionException("Daily transfer limit exceeded");
+            }
+            cardDailySpendRepository.insert(cardId, today, amount);
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    todaySpend.remove(cardId);
+                }
+            });
+        } else {
+            todaySpend.remove(cardId);
+        }
+    }
+
+    private LocalDate currentDay() {
+        LocalDate today = LocalDate.now();
+        if (!today.equals(cacheDate)) {
+            todaySpend.clear();
+            cacheDate = today;
+            log.debug("Daily spend cache reset for {}", today);
+        }
+        return today;
+    }
+
+    private record CachedSpend(BigDecimal amount, long loadedAt) {
+    }
+}
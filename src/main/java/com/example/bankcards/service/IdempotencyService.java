@@ -0,0 +1,172 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.TransactionDTO;
+import com.example.bankcards.entity.IdempotencyRecord;
+import com.example.bankcards.exception.TransactionException;
+import com.example.bankcards.mapper.TransactionMapper;
+import com.example.bankcards.repository.IdempotencyRecordRepository;
+import com.example.bankcards.util.EncryptionUtil;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Идемпотентность переводов по заголовку Idempotency-Key.
+ * Запись ключа с ответом вставляется в транзакции самого перевода, поэтому ключ зафиксирован тогда и только тогда,
+ * когда зафиксирован перевод: после любой ошибки, в том числе неоднозначной ошибки коммита, повтор клиента
+ * либо воспроизведет ответ, либо выполнит перевод, которого не было. Параллельный запрос с тем же ключом
+ * упирается в уникальный индекс (user_id, idempotency_key), его перевод откатывается, и он получает ответ первого.
+ * Повтор отдается из LRU-кэша или из таблицы, без обращения к TransactionService и таблице cards.
+ */
+@Slf4j
+@Service
+public class IdempotencyService {
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final TransactionService transactionService;
+    private final TransactionMapper transactionMapper;
+    private final EncryptionUtil encryptionUtil;
+    private final ObjectMapper objectMapper;
+    private final long ttlHours;
+    private final Map<String, StoredResponse> recentResponses;
+
+    public IdempotencyService(IdempotencyRecordRepository idempotencyRecordRepository,
+                              TransactionService transactionService,
+                              TransactionMapper transactionMapper,
+                              EncryptionUtil encryptionUtil,
+                              ObjectMapper objectMapper,
+                              @Value("${app.idempotency.cache-size:10000}") int cacheSize,
+                              @Value("${app.idempotency.ttl-hours:24}") long ttlHours) {
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.transactionService = transactionService;
+        this.transactionMapper = transactionMapper;
+        this.encryptionUtil = encryptionUtil;
+        this.objectMapper = objectMapper;
+        this.ttlHours = ttlHours;
+        this.recentResponses = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, StoredResponse> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    public TransactionDTO.Response transfer(Long userId, String idempotencyKey,
+                                            TransactionDTO.TransferRequest request) {
+        validateKey(idempotencyKey);
+        String requestHash = fingerprint(request);
+        String cacheKey = userId + ":" + idempotencyKey;
+
+        StoredResponse cached = recentResponses.get(cacheKey);
+        if (cached != null && !cached.isExpired(ttlHours)) {
+            log.debug("Idempotent replay from cache for user {} key {}", userId, idempotencyKey);
+            return checkRequest(cached, requestHash).response();
+        }
+
+        IdempotencyRecord existing = idempotencyRecordRepository.findByUserIdAndIdempotencyKey(userId, idempotencyKey)
+                .orElse(null);
+        if (existing != null) {
+            return replay(existing, requestHash, cacheKey);
+        }
+
+        AtomicReference<StoredResponse> stored = new AtomicReference<>();
+        try {
+            transactionService.transferBetweenOwnCards(request, userId, transaction -> {
+                TransactionDTO.Response response = transactionMapper.toResponse(transaction);
+                IdempotencyRecord record = idempotencyRecordRepository.saveAndFlush(IdempotencyRecord.builder()
+                        .userId(userId)
+                        .idempotencyKey(idempotencyKey)
+                        .requestHash(requestHash)
+                        .transactionId(response.getTransactionId())
+                        .responseBody(toJson(response))
+                        .build());
+                stored.set(new StoredResponse(requestHash, response, record.getCreatedAt()));
+            });
+        } catch (DataIntegrityViolationException e) {
+            // Параллельный запрос с тем же ключом зафиксировал перевод раньше - наш откатился целиком
+            return idempotencyRecordRepository.findByUserIdAndIdempotencyKey(userId, idempotencyKey)
+                    .map(winner -> replay(winner, requestHash, cacheKey))
+                    .orElseThrow(() -> e);
+        }
+
+        // Кэшируем только после коммита: откаченная попытка не должна воспроизводиться
+        recentResponses.put(cacheKey, stored.get());
+        return stored.get().response();
+    }
+
+    @Scheduled(cron = "${app.idempotency.cleanup-cron:0 30 * * * ?}")
+    public void purgeExpiredKeys() {
+        int removed = idempotencyRecordRepository.deleteCreatedBefore(LocalDateTime.now().minusHours(ttlHours));
+        if (removed > 0) {
+            log.info("Removed {} expired idempotency keys", removed);
+        }
+    }
+
+    private TransactionDTO.Response replay(IdempotencyRecord record, String requestHash, String cacheKey) {
+        StoredResponse stored = new StoredResponse(record.getRequestHash(),
+                fromJson(record.getResponseBody()), record.getCreatedAt());
+        recentResponses.put(cacheKey, stored);
+        log.debug("Idempotent replay from database for user {} key {}", record.getUserId(), record.getIdempotencyKey());
+        return checkRequest(stored, requestHash).response();
+    }
+
+    private StoredResponse checkRequest(StoredResponse stored, String requestHash) {
+        if (!stored.requestHash().equals(requestHash)) {
+            throw keyReused();
+        }
+        return stored;
+    }
+
+    private TransactionException keyReused() {
+        return new TransactionException("Idempotency-Key was already used for a different request",
+                HttpStatus.UNPROCESSABLE_ENTITY);
+    }
+
+    private void validateKey(String idempotencyKey) {
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > 100) {
+            throw new TransactionException("Idempotency-Key must be 1-100 characters", HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    private String fingerprint(TransactionDTO.TransferRequest request) {
+        return encryptionUtil.hash(String.join("|",
+                request.getFromCardNumber(),
+                request.getToCardNumber(),
+                request.getAmount().stripTrailingZeros().toPlainString(),
+                String.valueOf(request.getDescription())));
+    }
+
+    private String toJson(TransactionDTO.Response response) {
+        try {
+            return objectMapper.writeValueAsString(response);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize transfer response", e);
+        }
+    }
+
+    private TransactionDTO.Response fromJson(String json) {
+        try {
+            return objectMapper.readValue(json, TransactionDTO.Response.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot deserialize stored transfer response", e);
+        }
+    }
+
+    private record StoredResponse(String requestHash, TransactionDTO.Response response, LocalDateTime createdAt) {
+
+        boolean isExpired(long ttlHours) {
+            return createdAt.isBefore(LocalDateTime.now().minusHours(ttlHours));
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.RefreshToken;
+import com.example.bankcards.exception.UserOperationException;
+import com.example.bankcards.repository.RefreshTokenRepository;
+import com.example.bankcards.util.EncryptionUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Refresh-токены с ротацией. Клиент получает случайный токен, в таблице refresh_tokens хранится только его SHA-256.
+ * Каждый обмен помечает токен использованным и выдает следующий токен той же цепочки (family_id).
+ * Повторное предъявление использованного токена означает, что токен утек: отзывается вся цепочка.
+ */
+@Slf4j
+@Service
+public class RefreshTokenService {
+
+    private static final int TOKEN_BYTES = 32;
+
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final EncryptionUtil encryptionUtil;
+    private final Duration ttl;
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    public RefreshTokenService(RefreshTokenRepository refreshTokenRepository,
+                               EncryptionUtil encryptionUtil,
+                               @Value("${app.jwt.refresh.ttl-days:30}") long ttlDays) {
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.encryptionUtil = encryptionUtil;
+        this.ttl = Duration.ofDays(ttlDays);
+    }
+
+    /**
+     * Выдает первый токен новой цепочки (вход в систему).
+     */
+    @Transactional
+    public String issue(Long userId) {
+        return create(userId, UUID.randomUUID().toString());
+    }
+
+    /**
+     * Обменивает токен на следующий в цепочке. Отзыв цепочки при повторном использовании
+     * фиксируется несмотря на ошибку 401.
+     */
+    @Transactional(noRollbackFor = UserOperationException.class)
+    public Rotation rotate(String refreshToken) {
+        RefreshToken current = refreshTokenRepository.findByTokenHash(encryptionUtil.hash(refreshToken))
+                .orElseThrow(this::invalidToken);
+
+        LocalDateTime now = LocalDateTime.now();
+        if (current.isRevoked() || current.getExpiresAt().isBefore(now)) {
+            throw invalidToken();
+        }
+        // Условный UPDATE: из двух параллельных обменов одного токена проходит только один
+        if (current.getUsedAt() != null || refreshTokenRepository.markUsed(current.getId(), now) == 0) {
+            int revoked = refreshTokenRepository.revokeFamily(current.getFamilyId());
+            log.warn("Refresh token reuse detected for user {}: family {} revoked ({} tokens)",
+                    current.getUserId(), current.getFamilyId(), revoked);
+            throw invalidToken();
+        }
+
+        return new Rotation(current.getUserId(), create(current.getUserId(), current.getFamilyId()));
+    }
+
+    /**
+     * Отзывает цепочку предъявленного токена (выход из системы). Неизвестный токен игнорируется.
+     */
+    @Transactional
+    public void revoke(String refreshToken) {
+        refreshTokenRepository.findByTokenHash(encryptionUtil.hash(refreshToken))
+                .ifPresent(token -> refreshTokenRepository.revokeFamily(token.getFamilyId()));
+    }
+
+    /**
+     * Отзывает все цепочки пользователя (отключение учетной записи).
+     */
+    @Transactional
+    public int revokeAllForUser(Long userId) {
+        int revoked = refreshTokenRepository.revokeAllByUserId(userId);
+        log.info("Revoked {} refresh tokens of user {}", revoked, userId);
+        return revoked;
+    }
+
+    @Scheduled(cron = "${app.jwt.refresh.cleanup-cron:0 45 * * * ?}")
+    public void purgeExpiredTokens() {
+        int removed = refreshTokenRepository.deleteExpired(LocalDateTime.now());
+        if (removed > 0) {
+            log.info("Removed {} expired refresh tokens", removed);
+        }
+    }
+
+    private String create(Long userId, String familyId) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        secureRandom.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        refreshTokenRepository.save(RefreshToken.builder()
+                .tokenHash(encryptionUtil.hash(token))
+                .familyId(familyId)
+                .userId(userId)
+                .expiresAt(LocalDateTime.now().plus(ttl))
+                .build());
+        return token;
+    }
+
+    private UserOperationException invalidToken() {
+        return new UserOperationException("Invalid refresh token", HttpStatus.UNAUTHORIZED);
+    }
+
+    public record Rotation(Long userId, String refreshToken) {
+    }
+}
@@ -0,0 +1,340 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.TransactionDTO;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.exception.CardOperationException;
+import com.example.bankcards.exception.TransactionException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.TransactionRepository;
+import com.example.bankcards.util.EncryptionUtil;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * Движок переводов для "горячих" карт (режим SHARDED).
+ * Переводы раскладываются по однопоточным полосам по карте зачисления, поэтому все зачисления на одну карту
+ * выполняет один поток и строку "горячего" получателя не блокируют несколько полос сразу. Списания с одной карты
+ * могут идти из разных полос: зачисления коммутируют, а UPDATE списания сам проверяет остаток, так что при гонке
+ * пачка откатывается и переводы проводятся по одному без ухода в минус. Полоса собирает переводы в течение
+ * linger-ms (group commit) и проводит пачку одной транзакцией: один UPDATE баланса на карту по возрастанию id
+ * и одна пакетная вставка транзакций. Вызывающий поток ждет коммита пачки не дольше result-timeout-ms;
+ * остановившаяся полоса завершает ошибкой все принятые ею переводы.
+ */
+@Slf4j
+@Lazy
+@Component
+public class ShardedTransferEngine {
+
+    private static final long POLL_INTERVAL_MS = 100;
+
+    private final TransactionService transactionService;
+    private final CardRepository cardRepository;
+    private final TransactionRepository transactionRepository;
+    private final EncryptionUtil encryptionUtil;
+    private final DailySpendService dailySpendService;
+    private final TransactionOperations transferTransactionTemplate;
+    private final DistributionSummary batchSizes;
+    private final int maxBatchSize;
+    private final long lingerNanos;
+    private final long resultTimeoutMs;
+    private final List<Lane> lanes = new ArrayList<>();
+
+    private volatile boolean running = true;
+
+    public ShardedTransferEngine(TransactionService transactionService,
+                                 CardRepository cardRepository,
+                                 TransactionRepository transactionRepository,
+                                 EncryptionUtil encryptionUtil,
+                                 DailySpendService dailySpendService,
+                                 TransactionOperations transferTransactionTemplate,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${app.transfer.engine.lanes:4}") int laneCount,
+                                 @Value("${app.transfer.engine.max-batch-size:50}") int maxBatchSize,
+                                 @Value("${app.transfer.engine.linger-ms:2}") long lingerMs,
+                                 @Value("${app.transfer.engine.queue-capacity:10000}") int queueCapacity,
+                                 @Value("${app.transfer.engine.result-timeout-ms:30000}") long resultTimeoutMs) {
+        this.transactionService = transactionService;
+        this.cardRepository = cardRepository;
+        this.transactionRepository = transactionRepository;
+        this.encryptionUtil = encryptionUtil;
+        this.dailySpendService = dailySpendService;
+        this.transferTransactionTemplate = transferTransactionTemplate;
+        this.maxBatchSize = maxBatchSize;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMs);
+        this.resultTimeoutMs = resultTimeoutMs;
+        this.batchSizes = DistributionSummary.builder("bank.transfer.engine.batch.size")
+                .register(meterRegistry);
+
+        for (int i = 0; i < laneCount; i++) {
+            Lane lane = new Lane(new LinkedBlockingQueue<>(queueCapacity));
+            Thread thread = new Thread(lane, "transfer-lane-" + i);
+            lane.thread = thread;
+            lanes.add(lane);
+            thread.start();
+        }
+        log.info("Sharded transfer engine started with {} lanes", laneCount);
+    }
+
+    public Transaction transfer(TransactionDTO.TransferRequest request, Long userId) {
+        return transfer(request, userId, TransactionService.NO_HOOK);
+    }
+
+    /**
+     * inTransaction выполняется в транзакции пачки после вставки транзакций; если оно падает,
+     * пачка откатывается и переводы проводятся по одному.
+     */
+    public Transaction transfer(TransactionDTO.TransferRequest request, Long userId,
+                                Consumer<Transaction> inTransaction) {
+        if (!running) {
+            throw shuttingDown();
+        }
+
+        String fromCardHash = encryptionUtil.hash(request.getFromCardNumber());
+        String toCardHash = encryptionUtil.hash(request.getToCardNumber());
+        PendingTransfer pending = new PendingTransfer(request, userId, fromCardHash, toCardHash, inTransaction);
+        Lane lane = lanes.get(Math.floorMod(toCardHash.hashCode(), lanes.size()));
+        if (!lane.queue.offer(pending)) {
+            throw new TransactionException("Transfer queue is full", HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        // Полоса могла остановиться между проверкой running и offer - тогда перевод никто не заберет
+        if (lane.stopped && lane.queue.remove(pending)) {
+            throw shuttingDown();
+        }
+
+        try {
+            return pending.result.get(resultTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            if (lane.queue.remove(pending)) {
+                throw new TransactionException("Transfer was not started in time", HttpStatus.SERVICE_UNAVAILABLE);
+            }
+            // Пачка уже проводится: перевод может быть зафиксирован, повтор безопасен только с Idempotency-Key
+            log.warn("Transfer result not ready after {} ms in lane {}", resultTimeoutMs, lane.thread.getName());
+            throw new TransactionException("Transfer outcome is unknown", HttpStatus.SERVICE_UNAVAILABLE);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new RuntimeException("Transfer failed: " + e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransactionException("Transfer interrupted", HttpStatus.SERVICE_UNAVAILABLE);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        for (Lane lane : lanes) {
+            lane.thread.join(TimeUnit.SECONDS.toMillis(30));
+        }
+    }
+
+    private static TransactionException shuttingDown() {
+        return new TransactionException("Transfer engine is shutting down", HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    private void processBatch(List<PendingTransfer> batch) {
+        batchSizes.record(batch.size());
+        try {
+            transferTransactionTemplate.executeWithoutResult(status -> applyBatch(batch));
+        } catch (RuntimeException e) {
+            // Пачка откатилась целиком - проводим переводы по одному, каждый получит свой результат
+            log.warn("Transfer batch of {} failed, falling back to single transfers: {}", batch.size(), e.getMessage());
+            for (PendingTransfer pending : batch) {
+                try {
+                    pending.result.complete(transactionService.executeTransfer(pending.request, pending.userId,
+                            pending.inTransaction));
+                } catch (RuntimeException single) {
+                    pending.result.completeExceptionally(single);
+                }
+            }
+            return;
+        }
+
+        for (PendingTransfer pending : batch) {
+            if (pending.failure != null) {
+                pending.result.completeExceptionally(pending.failure);
+            } else {
+                pending.result.complete(pending.transaction);
+            }
+        }
+    }
+
+    private void applyBatch(List<PendingTransfer> batch) {
+        LocalDateTime now = LocalDateTime.now();
+        Map<String, Card> cards = new HashMap<>();
+        Map<Long, BigDecimal> pendingDebits = new HashMap<>();
+        // TreeMap - обновления балансов идут по возрастанию id, как и в одиночных переводах
+        Map<Long, BigDecimal> balanceChanges = new TreeMap<>();
+        List<PendingTransfer> accepted = new ArrayList<>();
+        List<Transaction> transactions = new ArrayList<>();
+
+        for (PendingTransfer pending : batch) {
+            pending.failure = null;
+            try {
+                TransactionDTO.TransferRequest request = pending.request;
+                Card fromCard = loadCard(cards, pending.fromCardHash, pending.userId);
+                Card toCard = loadCard(cards, pending.toCardHash, pending.userId);
+
+                transactionService.validateTransfer(fromCard, toCard, request,
+                        pendingDebits.getOrDefault(fromCard.getId(), BigDecimal.ZERO));
+
+                pendingDebits.merge(fromCard.getId(), request.getAmount(), BigDecimal::add);
+                balanceChanges.merge(fromCard.getId(), request.getAmount().negate(), BigDecimal::add);
+                balanceChanges.merge(toCard.getId(), request.getAmount(), BigDecimal::add);
+                accepted.add(pending);
+                transactions.add(transactionService.buildTransfer(request, fromCard, toCard, now));
+            } catch (TransactionException | CardOperationException e) {
+                pending.failure = e;
+            }
+        }
+
+        for (Map.Entry<Long, BigDecimal> change : balanceChanges.entrySet()) {
+            int sign = change.getValue().signum();
+            if (sign < 0 && cardRepository.debitBalance(change.getKey(), change.getValue().negate(), now) == 0) {
+                throw new TransactionException("Insufficient funds", HttpStatus.BAD_REQUEST);
+            }
+            if (sign > 0 && cardRepository.creditBalance(change.getKey(), change.getValue(), now) == 0) {
+                throw new CardOperationException("receiver card is not active");
+            }
+        }
+
+        for (Map.Entry<Long, BigDecimal> debit : pendingDebits.entrySet()) {
+            dailySpendService.recordSpend(debit.getKey(), debit.getValue(), transactionService.dailyLimit());
+        }
+
+        List<Transaction> saved = transactionRepository.saveAll(transactions);
+        for (int i = 0; i < accepted.size(); i++) {
+            accepted.get(i).transaction = saved.get(i);
+            accepted.get(i).inTransaction.accept(saved.get(i));
+        }
+
+        log.debug("Transfer batch committed: {} accepted, {} rejected, {} cards updated",
+                accepted.size(), batch.size() - accepted.size(), balanceChanges.size());
+    }
+
+    private Card loadCard(Map<String, Card> cards, String cardNumberHash, Long userId) {
+        Card card = cards.get(cardNumberHash);
+        if (card == null) {
+            card = cardRepository.findByCardNumberHash(cardNumberHash)
+                    .orElseThrow(() -> new CardOperationException("Card not found"));
+            cards.put(cardNumberHash, card);
+        }
+        return transactionService.checkOwner(card, userId);
+    }
+
+    private final class Lane implements Runnable {
+
+        private final BlockingQueue<PendingTransfer> queue;
+        private Thread thread;
+        private volatile boolean stopped;
+        private List<PendingTransfer> inFlight = List.of();
+
+        private Lane(BlockingQueue<PendingTransfer> queue) {
+            this.queue = queue;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (running || !queue.isEmpty()) {
+                    try {
+                        PendingTransfer first = queue.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                        if (first == null) {
+                            continue;
+                        }
+                        inFlight = new ArrayList<>();
+                        inFlight.add(first);
+                        collectBatch(inFlight);
+                        processBatch(inFlight);
+                        inFlight = List.of();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    } catch (RuntimeException e) {
+                        log.error("Unexpected error in transfer lane {}: {}", thread.getName(), e.getMessage(), e);
+                        failAll(inFlight, new TransactionException("Transfer failed", HttpStatus.INTERNAL_SERVER_ERROR));
+                        inFlight = List.of();
+                    }
+                }
+            } finally {
+                // Сюда приходим и при Error: ни один принятый перевод не должен ждать вечно
+                stopped = true;
+                failAll(inFlight, shuttingDown());
+                PendingTransfer rest;
+                while ((rest = queue.poll()) != null) {
+                    rest.result.completeExceptionally(shuttingDown());
+                }
+            }
+        }
+
+        // completeExceptionally не трогает уже завершенные результаты
+        private void failAll(List<PendingTransfer> batch, RuntimeException failure) {
+            for (PendingTransfer pending : batch) {
+                pending.result.completeExceptionally(failure);
+            }
+        }
+
+        private void collectBatch(List<PendingTransfer> batch) throws InterruptedException {
+            queue.drainTo(batch, maxBatchSize - 1);
+
+            long deadline = System.nanoTime() + lingerNanos;
+            while (batch.size() < maxBatchSize) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    break;
+                }
+                PendingTransfer next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                if (next == null) {
+                    break;
+                }
+                batch.add(next);
+                queue.drainTo(batch, maxBatchSize - batch.size());
+            }
+        }
+    }
+
+    private static final class PendingTransfer {
+
+        private final TransactionDTO.TransferRequest request;
+        private final Long userId;
+        private final String fromCardHash;
+        private final String toCardHash;
+        private final Consumer<Transaction> inTransaction;
+        private final CompletableFuture<Transaction> result = new CompletableFuture<>();
+        private Transaction transaction;
+        private RuntimeException failure;
+
+        private PendingTransfer(TransactionDTO.TransferRequest request, Long userId, String fromCardHash,
+                                String toCardHash, Consumer<Transaction> inTransaction) {
+            this.request = request;
+            this.userId = userId;
+            this.fromCardHash = fromCardHash;
+            this.toCardHash = toCardHash;
+            this.inTransaction = inTransaction;
+        }
+    }
+}
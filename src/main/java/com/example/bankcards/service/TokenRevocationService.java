@@ -0,0 +1,108 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.RevokedToken;
+import com.example.bankcards.repository.RevokedTokenRepository;
+import com.example.bankcards.util.BloomFilter;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Отзыв access-токенов по jti (logout). Отозванные jti хранятся в таблице revoked_tokens до истечения токена,
+ * в памяти - фильтр Блума и точное множество. Для неотозванного токена проверка - несколько проб фильтра
+ * без аллокаций, точное множество читается только при срабатывании фильтра.
+ * Новые записи с других узлов подтягиваются инкрементально по revoked_at (с перекрытием на расхождение часов
+ * и поздние коммиты), полная пересборка раз в час удаляет истекшие jti.
+ */
+@Slf4j
+@Service
+public class TokenRevocationService {
+
+    private static final Duration SYNC_OVERLAP = Duration.ofMinutes(1);
+
+    private final RevokedTokenRepository revokedTokenRepository;
+    private final int expectedTokens;
+    private final double falsePositiveRate;
+
+    private volatile Snapshot snapshot;
+    private volatile LocalDateTime lastSync = LocalDateTime.now();
+
+    public TokenRevocationService(RevokedTokenRepository revokedTokenRepository,
+                                  @Value("${app.jwt.revocation.expected-tokens:100000}") int expectedTokens,
+                                  @Value("${app.jwt.revocation.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.revokedTokenRepository = revokedTokenRepository;
+        this.expectedTokens = expectedTokens;
+        this.falsePositiveRate = falsePositiveRate;
+        this.snapshot = new Snapshot(new BloomFilter(expectedTokens, falsePositiveRate), ConcurrentHashMap.newKeySet());
+    }
+
+    public boolean isRevoked(String jti) {
+        if (jti == null) {
+            return false;
+        }
+        Snapshot current = snapshot;
+        return current.filter().mightContain(jti) && current.jtis().contains(jti);
+    }
+
+    @Transactional
+    public void revoke(String jti, Long userId, Date expiresAt) {
+        if (!revokedTokenRepository.existsByJti(jti)) {
+            revokedTokenRepository.save(RevokedToken.builder()
+                    .jti(jti)
+                    .userId(userId)
+                    .expiresAt(LocalDateTime.ofInstant(expiresAt.toInstant(), ZoneId.systemDefault()))
+                    .build());
+        }
+        snapshot.add(jti);
+        log.info("Token {} of user {} revoked", jti, userId);
+    }
+
+    @Scheduled(fixedDelayString = "${app.jwt.revocation.sync-ms:5000}")
+    public void syncRecent() {
+        LocalDateTime now = LocalDateTime.now();
+        List<String> recent = revokedTokenRepository.findJtisRevokedSince(lastSync.minus(SYNC_OVERLAP), now);
+        Snapshot current = snapshot;
+        for (String jti : recent) {
+            current.add(jti);
+        }
+        lastSync = now;
+    }
+
+    @PostConstruct
+    @Scheduled(cron = "${app.jwt.revocation.rebuild-cron:0 15 * * * ?}")
+    public void rebuild() {
+        LocalDateTime now = LocalDateTime.now();
+        int purged = revokedTokenRepository.deleteExpired(now);
+
+        List<String> active = revokedTokenRepository.findActiveJtis(now);
+        Snapshot rebuilt = new Snapshot(
+                new BloomFilter(Math.max(expectedTokens, active.size()), falsePositiveRate),
+                ConcurrentHashMap.newKeySet(active.size()));
+        for (String jti : active) {
+            rebuilt.add(jti);
+        }
+        snapshot = rebuilt;
+        // Отозванное во время пересборки догонит ближайшая синхронизация
+        lastSync = now;
+        log.info("Token revocation list rebuilt: {} active, {} expired removed", active.size(), purged);
+    }
+
+    private record Snapshot(BloomFilter filter, Set<String> jtis) {
+
+        void add(String jti) {
+            jtis.add(jti);
+            filter.put(jti);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.bankcards.service;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+
+/**
+ * Формат выгрузки истории транзакций: NDJSON - по JSON-объекту TransactionDTO.Response на строку,
+ * CSV - те же поля колонками с заголовком.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum TransactionExportFormat {
+    NDJSON(MediaType.APPLICATION_NDJSON_VALUE, "ndjson"),
+    CSV("text/csv", "csv");
+
+    private final String contentType;
+    private final String extension;
+}
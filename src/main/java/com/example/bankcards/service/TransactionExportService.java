@@ -0,0 +1,169 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.TransactionDTO;
+import com.example.bankcards.exception.TooManyRequestsException;
+import com.example.bankcards.mapper.TransactionMapper;
+import com.example.bankcards.repository.TransactionRepository;
+import com.example.bankcards.repository.TransactionRepository.TransactionView;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.cfg.JsonNodeFeature;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionTimedOutException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+/**
+ * Потоковая выгрузка всей истории транзакций пользователя без пагинации и COUNT.
+ * Строки читаются из курсора проекциями, сразу пишутся в выходной поток и не накапливаются:
+ * память не зависит от длины истории. Поток сбрасывается каждые flush-rows строк, поэтому
+ * медленный клиент притормаживает чтение курсора через блокирующую запись, а не буфер в памяти.
+ * Поля строки - TransactionDTO.Response из TransactionMapper, те же, что в списочных эндпоинтах.
+ * Выгрузка держит соединение и курсор до конца скачивания, поэтому одновременных выгрузок не больше
+ * max-concurrent (сверх лимита - 429), а транзакция ограничена timeout-seconds.
+ */
+@Slf4j
+@Service
+public class TransactionExportService {
+
+    private final TransactionRepository transactionRepository;
+    private final TransactionMapper transactionMapper;
+    private final ObjectMapper objectMapper;
+    private final ObjectMapper csvRowMapper;
+    private final int flushRows;
+    private final List<String> csvColumns;
+    private final TransactionTemplate exportTransactionTemplate;
+    private final Duration timeout;
+    private final Semaphore exports;
+    private final long retryAfterSeconds;
+
+    public TransactionExportService(TransactionRepository transactionRepository,
+                                    TransactionMapper transactionMapper,
+                                    ObjectMapper objectMapper,
+                                    PlatformTransactionManager transactionManager,
+                                    @Value("${app.transactions.export.flush-rows:500}") int flushRows,
+                                    @Value("${app.transactions.export.max-concurrent:2}") int maxConcurrent,
+                                    @Value("${app.transactions.export.timeout-seconds:300}") int timeoutSeconds,
+                                    @Value("${app.transactions.export.retry-after-seconds:30}") long retryAfterSeconds) {
+        this.transactionRepository = transactionRepository;
+        this.transactionMapper = transactionMapper;
+        this.objectMapper = objectMapper;
+        // Только чтение: Hibernate не делает flush и снимков, строки - проекции, контекст персистентности пуст
+        this.exportTransactionTemplate = new TransactionTemplate(transactionManager);
+        exportTransactionTemplate.setReadOnly(true);
+        exportTransactionTemplate.setTimeout(timeoutSeconds);
+        this.timeout = Duration.ofSeconds(timeoutSeconds);
+        this.exports = new Semaphore(maxConcurrent);
+        this.retryAfterSeconds = retryAfterSeconds;
+        // дерево JSON по умолчанию отбрасывает хвостовые нули BigDecimal, а сумма в CSV должна остаться 100.50
+        this.csvRowMapper = objectMapper.copy().configure(JsonNodeFeature.STRIP_TRAILING_BIGDECIMAL_ZEROES, false);
+        this.flushRows = flushRows;
+        this.csvColumns = new ArrayList<>();
+        csvRowMapper.valueToTree(new TransactionDTO.Response()).fieldNames().forEachRemaining(csvColumns::add);
+    }
+
+    /**
+     * Пишет историю в поток target и возвращает число строк. target открывается только после получения
+     * разрешения на выгрузку, поэтому при отказе 429 ответ еще не начат. Поток не закрывается.
+     * Если выгрузка не уложилась в timeout-seconds, она прерывается с TransactionTimedOutException.
+     */
+    public long exportUserTransactions(Long userId, TransactionExportFormat format, ExportTarget target)
+            throws IOException {
+        if (!exports.tryAcquire()) {
+            throw new TooManyRequestsException("Too many concurrent exports",
+                    "Transaction export limit reached, retry later", retryAfterSeconds);
+        }
+        try {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(target.open(), StandardCharsets.UTF_8));
+            long rows = exportTransactionTemplate.execute(status -> write(userId, format, writer));
+            log.info("Exported {} transactions of user {} as {}", rows, userId, format);
+            return rows;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            exports.release();
+        }
+    }
+
+    private long write(Long userId, TransactionExportFormat format, Writer writer) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        long rows = 0;
+        try (Stream<TransactionView> transactions = transactionRepository.streamByUserId(userId)) {
+            if (format == TransactionExportFormat.CSV) {
+                writer.write(String.join(",", csvColumns));
+                writer.write('\n');
+            }
+            Iterator<TransactionView> iterator = transactions.iterator();
+            while (iterator.hasNext()) {
+                TransactionDTO.Response response = transactionMapper.toResponse(iterator.next());
+                if (format == TransactionExportFormat.CSV) {
+                    writeCsvRow(writer, response);
+                } else {
+                    writer.write(objectMapper.writeValueAsString(response));
+                    writer.write('\n');
+                }
+                if (++rows % flushRows == 0) {
+                    writer.flush();
+                    // таймаут транзакции проверяется только при выполнении запросов, а не при чтении курсора
+                    if (System.nanoTime() - deadline > 0) {
+                        throw new TransactionTimedOutException("Transaction export of user " + userId
+                                + " exceeded " + timeout.toSeconds() + " seconds after " + rows + " rows");
+                    }
+                }
+            }
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return rows;
+    }
+
+    private void writeCsvRow(Writer writer, TransactionDTO.Response response) throws IOException {
+        JsonNode row = csvRowMapper.valueToTree(response);
+        for (int i = 0; i < csvColumns.size(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            JsonNode value = row.get(csvColumns.get(i));
+            if (value != null && !value.isNull()) {
+                writer.write(csvValue(value.asText()));
+            }
+        }
+        writer.write('\n');
+    }
+
+    private static String csvValue(String value) {
+        // описание вводит пользователь: значения, которые табличный редактор примет за формулу, экранируются
+        if (!value.isEmpty() && "=+-@".indexOf(value.charAt(0)) >= 0) {
+            value = "'" + value;
+        }
+        if (value.contains(",") || value.contains("\"") || value.contains("\n") || value.contains("\r")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+
+    /**
+     * Получатель выгрузки. Контроллер выставляет заголовки ответа в open(), когда выгрузка уже разрешена.
+     */
+    @FunctionalInterface
+    public interface ExportTarget {
+        OutputStream open() throws IOException;
+    }
+}
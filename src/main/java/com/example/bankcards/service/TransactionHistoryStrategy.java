@@ -0,0 +1,11 @@
+package com.example.bankcards.service;
+
+/**
+ * Способ чтения истории транзакций пользователя (app.transactions.history-strategy).
+ * OWNER_COLUMN - диапазон индекса (owner_id, transaction_date, id) по денормализованному владельцу.
+ * CARD_UNION - карты пользователя, затем UNION ALL диапазонов по from_card_id и to_card_id.
+ */
+public enum TransactionHistoryStrategy {
+    OWNER_COLUMN,
+    CARD_UNION
+}
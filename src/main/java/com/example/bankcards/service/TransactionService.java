@@ -1,5 +1,8 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.aspect.RetryOnConcurrencyFailure;
+import com.example.bankcards.config.LimitProperties;
+import com.example.bankcards.dto.CursorPage;
 import com.example.bankcards.dto.TransactionDTO;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.Transaction;
@@ -10,10 +13,14 @@ import com.example.bankcards.exception.CardOperationException;
 import com.example.bankcards.exception.TransactionException;
 import com.example.bankcards.repository.CardRepository;
 import com.example.bankcards.repository.TransactionRepository;
+import com.example.bankcards.repository.TransactionRepository.TransactionView;
 import com.example.bankcards.util.EncryptionUtil;
+import com.example.bankcards.util.KeysetCursor;
 import com.example.bankcards.util.ValidationUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -21,77 +28,167 @@ import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionOperations;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.Consumer;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class TransactionService {
 
+    static final Consumer<Transaction> NO_HOOK = transaction -> { };
+
+    private static final Comparator<TransactionView> NEWEST_FIRST = Comparator
+            .comparing(TransactionView::getTransactionDate)
+            .thenComparing(TransactionView::getId)
+            .reversed();
+
     private final TransactionRepository transactionRepository;
     private final CardRepository cardRepository;
-    private final CardService cardService;
     private final EncryptionUtil encryptionUtil;
     private final ValidationUtil validationUtil;
+    private final TransactionOperations transferTransactionTemplate;
+    private final ObjectProvider<ShardedTransferEngine> transferEngine;
+    private final DailySpendService dailySpendService;
+    private final VelocityLimiter velocityLimiter;
+    private final LimitProperties limitProperties;
+
+    @Value("${app.transfer.locking-mode:ATOMIC}")
+    private TransferLockingMode lockingMode;
 
-    @Transactional
+    @Value("${app.transactions.history-strategy:OWNER_COLUMN}")
+    private TransactionHistoryStrategy historyStrategy;
+
+    @RetryOnConcurrencyFailure
     public Transaction transferBetweenOwnCards(TransactionDTO.TransferRequest request, Long userId) {
+        return transferBetweenOwnCards(request, userId, NO_HOOK);
+    }
+
+    /**
+     * Перевод с действием inTransaction, которое выполняется в транзакции перевода сразу после записи Transaction:
+     * данные, сохраненные им, фиксируются вместе с переводом, а его ошибка откатывает перевод.
+     * При повторах и пакетном откате движка действие может выполниться несколько раз, зафиксируется последнее.
+     */
+    @RetryOnConcurrencyFailure
+    public Transaction transferBetweenOwnCards(TransactionDTO.TransferRequest request, Long userId,
+                                               Consumer<Transaction> inTransaction) {
 
         if (!validationUtil.isValidAmount(request.getAmount())){
             throw new TransactionException("Invalid amount", HttpStatus.BAD_REQUEST);
         }
 
-        Card fromCard = validateAndGetCard(request.getFromCardNumber(), userId);
-        Card toCard = validateAndGetCard(request.getToCardNumber(), userId);
+        if (request.getAmount().compareTo(limitProperties.getMaxPerTransaction()) > 0) {
+            throw new TransactionException("Amount exceeds maximum per transaction");
+        }
 
-        String decryptedCVV = encryptionUtil.decrypt(fromCard.getCvv());
-        if (!decryptedCVV.equals(request.getCvv())) {
-            throw new TransactionException("Invalid CVV", HttpStatus.BAD_REQUEST, "CVV verification failed");
+        // Окна частоты ведутся по id своей карты: чужие и несуществующие номера отсекаются до них.
+        // Проверка идет до блокировок и транзакции перевода; неудачный перевод из окон снимается
+        Long fromCardId = ownedCardId(request.getFromCardNumber(), userId);
+        VelocityLimiter.Reservation reservation = velocityLimiter.acquire(userId, fromCardId, request.getAmount());
+        try {
+            if (lockingMode == TransferLockingMode.SHARDED) {
+                return transferEngine.getObject().transfer(request, userId, inTransaction);
+            }
+            return executeTransfer(request, userId, inTransaction);
+        } catch (RuntimeException e) {
+            reservation.release();
+            throw e;
         }
+    }
 
-        validateCardForTransaction(fromCard, "sender");
-        validateCardForTransaction(toCard, "receiver");
+    BigDecimal dailyLimit() {
+        return limitProperties.getDailyAmount();
+    }
 
-        if (fromCard.getBalance().compareTo(request.getAmount()) < 0) {
-            throw new TransactionException("Insufficient funds", HttpStatus.BAD_REQUEST);
+    Transaction executeTransfer(TransactionDTO.TransferRequest request, Long userId,
+                                Consumer<Transaction> inTransaction) {
+        return transferTransactionTemplate.execute(status -> {
+            Transaction transaction = transferInTransaction(request, userId);
+            inTransaction.accept(transaction);
+            return transaction;
+        });
+    }
+
+    private Transaction transferInTransaction(TransactionDTO.TransferRequest request, Long userId) {
+        Card fromCard;
+        Card toCard;
+        if (lockingMode == TransferLockingMode.PESSIMISTIC) {
+            Long fromCardId = resolveCardId(request.getFromCardNumber());
+            Long toCardId = resolveCardId(request.getToCardNumber());
+            Map<Long, Card> lockedCards = lockCardsInOrder(fromCardId, toCardId);
+
+            fromCard = checkOwner(lockedCards.get(fromCardId), userId);
+            toCard = checkOwner(lockedCards.get(toCardId), userId);
+        } else {
+            fromCard = validateAndGetCard(request.getFromCardNumber(), userId);
+            toCard = validateAndGetCard(request.getToCardNumber(), userId);
         }
 
-        validateTransactionLimits(fromCard, request.getAmount());
+        validateTransfer(fromCard, toCard, request, BigDecimal.ZERO);
 
         try {
+            LocalDateTime now = LocalDateTime.now();
 
-            BigDecimal newFromBalance = fromCard.getBalance().subtract(request.getAmount());
-            BigDecimal newToBalance = toCard.getBalance().add(request.getAmount());
-
-            cardService.updateBalance(fromCard.getId(), newFromBalance);
-            cardService.updateBalance(toCard.getId(), newToBalance);
+            applyBalanceChanges(fromCard, toCard, request.getAmount(), now);
+            dailySpendService.recordSpend(fromCard.getId(), request.getAmount(), dailyLimit());
 
-            Transaction transaction = Transaction.builder()
-                    .amount(request.getAmount())
-                    .type(TransactionType.TRANSFER)
-                    .status(TransactionStatus.COMPLETED)
-                    .description(request.getDescription())
-                    .fromCard(fromCard)
-                    .toCard(toCard)
-                    .transactionDate(LocalDateTime.now())
-                    .createdAt(LocalDateTime.now())
-                    .build();
-
-            Transaction savedTransaction = transactionRepository.save(transaction);
+            Transaction savedTransaction = transactionRepository.save(buildTransfer(request, fromCard, toCard, now));
 
             log.info("Transfer completed: {} from card {} to card {}",
                     request.getAmount(), fromCard.getId(), toCard.getId());
 
             return savedTransaction;
 
+        } catch (TransactionException | CardOperationException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Transfer failed: {}", e.getMessage());
             throw new RuntimeException("Transfer failed: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Проверки перевода. pendingDebit - сумма уже принятых, но еще не списанных переводов с карты
+     * (используется пакетным движком, для одиночного перевода - ноль).
+     */
+    void validateTransfer(Card fromCard, Card toCard, TransactionDTO.TransferRequest request, BigDecimal pendingDebit) {
+        String decryptedCVV = encryptionUtil.decrypt(fromCard.getCvv());
+        if (!decryptedCVV.equals(request.getCvv())) {
+            throw new TransactionException("Invalid CVV", HttpStatus.BAD_REQUEST, "CVV verification failed");
+        }
+
+        validateCardForTransaction(fromCard, "sender");
+        validateCardForTransaction(toCard, "receiver");
+
+        if (fromCard.getBalance().subtract(pendingDebit).compareTo(request.getAmount()) < 0) {
+            throw new TransactionException("Insufficient funds", HttpStatus.BAD_REQUEST);
+        }
+
+        validateTransactionLimits(fromCard, request.getAmount(), pendingDebit);
+    }
+
+    Transaction buildTransfer(TransactionDTO.TransferRequest request, Card fromCard, Card toCard, LocalDateTime now) {
+        return Transaction.builder()
+                .amount(request.getAmount())
+                .type(TransactionType.TRANSFER)
+                .status(TransactionStatus.COMPLETED)
+                .description(request.getDescription())
+                .fromCard(fromCard)
+                .toCard(toCard)
+                .transactionDate(now)
+                .createdAt(now)
+                .build();
+    }
+
     @Transactional(readOnly = true)
     public Transaction getTransactionById(String transactionId) {
         return transactionRepository.findByTransactionId(transactionId)
@@ -99,36 +196,123 @@ public class TransactionService {
     }
 
     @Transactional(readOnly = true)
-    public Page<Transaction> getUserTransactions(Long userId, int page, int size) {
+    public Page<TransactionView> getUserTransactions(Long userId, int page, int size) {
         Pageable pageable = PageRequest.of(page, size, Sort.by("transactionDate").descending());
         return transactionRepository.findByUserId(userId, pageable);
     }
 
     @Transactional(readOnly = true)
-    public Page<Transaction> getCardTransactions(Long cardId, int page, int size) {
+    public Page<TransactionView> getCardTransactions(Long cardId, int page, int size) {
         Pageable pageable = PageRequest.of(page, size, Sort.by("transactionDate").descending());
         return transactionRepository.findByCardId(cardId, pageable);
     }
 
+    /**
+     * История пользователя с keyset-пагинацией по (transaction_date, id): страница читается диапазоном
+     * от курсора без OFFSET, общее число строк считается только по запросу.
+     * Источник строк задает {@link TransactionHistoryStrategy}.
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<TransactionView> getUserTransactions(Long userId, String cursor, int size, boolean includeTotal) {
+        KeysetCursor position = KeysetCursor.decode(cursor);
+        List<TransactionView> rows = historyStrategy == TransactionHistoryStrategy.CARD_UNION
+                ? findByOwnerCards(userId, position, size + 1)
+                : transactionRepository.findByUserIdBefore(userId,
+                        position.transactionDate(), position.id(), PageRequest.of(0, size + 1));
+        return toCursorPage(rows, size, includeTotal ? transactionRepository.countByUserId(userId) : null);
+    }
+
+    /**
+     * История карты с keyset-пагинацией. Списания и зачисления читаются отдельными запросами,
+     * каждый - диапазоном своего индекса (card_id, transaction_date, id) не более size + 1 строк,
+     * и сливаются по убыванию даты.
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<TransactionView> getCardTransactions(Long cardId, String cursor, int size, boolean includeTotal) {
+        KeysetCursor position = KeysetCursor.decode(cursor);
+        Pageable limit = PageRequest.of(0, size + 1);
+        List<TransactionView> rows = mergeNewestFirst(
+                transactionRepository.findOutgoingBefore(cardId, position.transactionDate(), position.id(), limit),
+                transactionRepository.findIncomingBefore(cardId, position.transactionDate(), position.id(), limit),
+                size + 1);
+        return toCursorPage(rows, size, includeTotal ? transactionRepository.countByCardId(cardId) : null);
+    }
+
     @Transactional(readOnly = true)
     public BigDecimal getTotalTransferredAmount(Long cardId, int days) {
         LocalDateTime fromDate = LocalDateTime.now().minusDays(days);
-        Double total = transactionRepository.findTotalWithdrawnAmount(cardId, fromDate);
-        return total != null ? BigDecimal.valueOf(total) : BigDecimal.ZERO;
+        BigDecimal total = transactionRepository.findTotalWithdrawnAmount(cardId, fromDate);
+        return total != null ? total : BigDecimal.ZERO;
+    }
+
+    public BigDecimal getTodayTransferredAmount(Long cardId) {
+        return dailySpendService.getTodaySpend(cardId);
     }
 
-    private Card validateAndGetCard(String cardNumber, Long userId) {
+    Card validateAndGetCard(String cardNumber, Long userId) {
         String cardNumberHash = encryptionUtil.hash(cardNumber);
         Card card = cardRepository.findByCardNumberHash(cardNumberHash)
                 .orElseThrow(() -> new CardOperationException("Card not found"));
 
+        return checkOwner(card, userId);
+    }
+
+    Card checkOwner(Card card, Long userId) {
         if (!card.getOwner().getId().equals(userId)) {
             throw new CardOperationException("Card does not belong to user");
         }
-
         return card;
     }
 
+    private Long ownedCardId(String cardNumber, Long userId) {
+        CardRepository.CardOwnership ownership = cardRepository
+                .findOwnershipByCardNumberHash(encryptionUtil.hash(cardNumber))
+                .orElseThrow(() -> new CardOperationException("Card not found"));
+        if (!ownership.getOwnerId().equals(userId)) {
+            throw new CardOperationException("Card does not belong to user");
+        }
+        return ownership.getId();
+    }
+
+    private Long resolveCardId(String cardNumber) {
+        return cardRepository.findIdByCardNumberHash(encryptionUtil.hash(cardNumber))
+                .orElseThrow(() -> new CardOperationException("Card not found"));
+    }
+
+    // Блокируем строки по возрастанию id, чтобы встречные переводы не взаимоблокировались
+    private Map<Long, Card> lockCardsInOrder(Long firstCardId, Long secondCardId) {
+        Map<Long, Card> lockedCards = new HashMap<>();
+        for (Long cardId : new TreeSet<>(List.of(firstCardId, secondCardId))) {
+            Card card = cardRepository.findByIdForUpdate(cardId)
+                    .orElseThrow(() -> new CardOperationException("Card not found"));
+            lockedCards.put(cardId, card);
+        }
+        return lockedCards;
+    }
+
+    private void applyBalanceChanges(Card fromCard, Card toCard, BigDecimal amount, LocalDateTime now) {
+        boolean debitFirst = fromCard.getId() <= toCard.getId();
+        if (debitFirst) {
+            debit(fromCard, amount, now);
+            credit(toCard, amount, now);
+        } else {
+            credit(toCard, amount, now);
+            debit(fromCard, amount, now);
+        }
+    }
+
+    private void debit(Card card, BigDecimal amount, LocalDateTime now) {
+        if (cardRepository.debitBalance(card.getId(), amount, now) == 0) {
+            throw new TransactionException("Insufficient funds", HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    private void credit(Card card, BigDecimal amount, LocalDateTime now) {
+        if (cardRepository.creditBalance(card.getId(), amount, now) == 0) {
+            throw new CardOperationException("receiver card is not active");
+        }
+    }
+
     private void validateCardForTransaction(Card card, String role) {
         if (card.getStatus() == CardStatus.BLOCKED) {
             throw new CardOperationException(role + " card is blocked");
@@ -143,17 +327,54 @@ public class TransactionService {
         }
     }
 
-    private void validateTransactionLimits(Card card, BigDecimal amount) {
-        BigDecimal dailyLimit = new BigDecimal("5000");
-        BigDecimal dailyTotal = getTotalTransferredAmount(card.getId(), 1);
+    private void validateTransactionLimits(Card card, BigDecimal amount, BigDecimal pendingDebit) {
+        BigDecimal dailyTotal = dailySpendService.getTodaySpend(card.getId()).add(pendingDebit);
 
-        if (dailyTotal.add(amount).compareTo(dailyLimit) > 0) {
+        if (dailyTotal.add(amount).compareTo(dailyLimit()) > 0) {
             throw new TransactionException("Daily transfer limit exceeded");
         }
 
-        BigDecimal maxPerTransaction = new BigDecimal("10000");
-        if (amount.compareTo(maxPerTransaction) > 0) {
+        if (amount.compareTo(limitProperties.getMaxPerTransaction()) > 0) {
             throw new TransactionException("Amount exceeds maximum per transaction");
         }
     }
-}
\ No newline at end of file
+
+    private List<TransactionView> findByOwnerCards(Long userId, KeysetCursor position, int limit) {
+        List<Long> cardIds = cardRepository.findIdsByOwnerId(userId);
+        if (cardIds.isEmpty()) {
+            return List.of();
+        }
+        List<Long> ids = transactionRepository.findIdsByCardIdsBefore(cardIds,
+                position.transactionDate(), position.id(), limit);
+        return ids.isEmpty() ? List.of() : transactionRepository.findViewsByIdIn(ids);
+    }
+
+    private static List<TransactionView> mergeNewestFirst(List<TransactionView> left, List<TransactionView> right,
+                                                          int limit) {
+        List<TransactionView> merged = new ArrayList<>(Math.min(limit, left.size() + right.size()));
+        int i = 0;
+        int j = 0;
+        while (merged.size() < limit && (i < left.size() || j < right.size())) {
+            TransactionView next;
+            if (j >= right.size() || (i < left.size() && NEWEST_FIRST.compare(left.get(i), right.get(j)) <= 0)) {
+                next = left.get(i++);
+            } else {
+                next = right.get(j++);
+            }
+            if (merged.isEmpty() || !merged.get(merged.size() - 1).getId().equals(next.getId())) {
+                merged.add(next);
+            }
+        }
+        return merged;
+    }
+
+    private static CursorPage<TransactionView> toCursorPage(List<TransactionView> rows, int size, Long totalElements) {
+        if (rows.size() <= size) {
+            return new CursorPage<>(rows, null, totalElements);
+        }
+        List<TransactionView> content = rows.subList(0, size);
+        TransactionView last = content.get(size - 1);
+        return new CursorPage<>(List.copyOf(content),
+                new KeysetCursor(last.getTransactionDate(), last.getId()).encode(), totalElements);
+    }
+}
@@ -1,23 +1,55 @@
 package com.example.bankcards.service;
 
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.UserEventBus;
 import com.example.bankcards.security.UserPrincipal;
-import lombok.RequiredArgsConstructor;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
+
+/**
+ * Загрузка пользователя для аутентификации через кэш UserPrincipal по username (app.auth.user-cache).
+ * Запись удаляется по событию {@link UserEventBus} сразу после изменения пользователя, TTL ограничивает
+ * устаревание при потере события. Метрики кэша - cache.* с тегом cache=userPrincipals.
+ */
 @Service
-@RequiredArgsConstructor
 public class UserDetailsServiceImpl implements UserDetailsService {
 
+    static final String CACHE_NAME = "userPrincipals";
+
     private final UserRepository userRepository;
+    private final Cache<String, UserPrincipal> principals;
+
+    public UserDetailsServiceImpl(UserRepository userRepository,
+                                  UserEventBus userEventBus,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${app.auth.user-cache.max-size:10000}") long maxSize,
+                                  @Value("${app.auth.user-cache.ttl-seconds:300}") long ttlSeconds) {
+        this.userRepository = userRepository;
+        this.principals = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, principals, CACHE_NAME);
+        userEventBus.subscribe(event -> principals.invalidate(event.username()));
+    }
 
     @Override
-    @Transactional
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+        // Загрузка идет внутри вычисления Caffeine: инвалидация во время загрузки дождется ее и удалит результат
+        return principals.get(username, this::loadFromDatabase);
+    }
+
+    private UserPrincipal loadFromDatabase(String username) {
         return userRepository.findByUsername(username)
                 .map(UserPrincipal::create)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found with username: " + username));
@@ -5,6 +5,8 @@ import com.example.bankcards.entity.User;
 import com.example.bankcards.entity.enums.Role;
 import com.example.bankcards.exception.UserOperationException;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.UserChangeEvent;
+import com.example.bankcards.security.UserEventBus;
 import com.example.bankcards.util.ValidationUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -12,9 +14,12 @@ import org.springframework.http.HttpStatus;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Slf4j
 @Service
@@ -24,8 +29,14 @@ public class UserService {
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
     private final ValidationUtil validationUtil;
-
-    @Transactional
+    private final UserEventBus userEventBus;
+    private final RefreshTokenService refreshTokenService;
+
+    /**
+     * Без общей транзакции: проверки и сохранение идут короткими транзакциями репозитория, а хэширование
+     * пароля (очередь BCrypt) выполняется до вставки и не держит соединение из пула.
+     * Одновременную регистрацию того же имени или email отсекают уникальные индексы.
+     */
     public User registerUser(AuthDTO.RegisterRequest request) {
         if (userRepository.existsByUsername(request.getUsername())) {
             throw new UserOperationException("Username already exists");
@@ -48,9 +59,11 @@ public class UserService {
             throw new UserOperationException("Invalid email");
         }
 
+        String encodedPassword = passwordEncoder.encode(request.getPassword());
+
         User user = User.builder()
                 .username(request.getUsername())
-                .password(passwordEncoder.encode(request.getPassword()))
+                .password(encodedPassword)
                 .firstName(request.getFirstName())
                 .lastName(request.getLastName())
                 .email(request.getEmail())
@@ -68,6 +81,14 @@ public class UserService {
                 .orElseThrow(() -> new UserOperationException("User not found with id: " + id, HttpStatus.NOT_FOUND));
     }
 
+    /**
+     * Пользователь независимо от статуса; проверка enabled - на вызывающей стороне.
+     */
+    @Transactional(readOnly = true)
+    public Optional<User> findUserById(Long id) {
+        return userRepository.findById(id);
+    }
+
     @Transactional(readOnly = true)
     public List<User> getAllUsers() {
         return userRepository.findAll();
@@ -76,14 +97,23 @@ public class UserService {
     @Transactional
     public User updateUser(Long id, User updatedUser) {
         User user = getUserById(id);
+        UserChangeEvent.Type changeType = user.getRole() != updatedUser.getRole()
+                ? UserChangeEvent.Type.ROLE_CHANGED
+                : UserChangeEvent.Type.UPDATED;
 
         user.setFirstName(updatedUser.getFirstName());
         user.setLastName(updatedUser.getLastName());
         user.setRole(updatedUser.getRole());
         user.setEmail(updatedUser.getEmail());
         user.setUpdatedAt(LocalDateTime.now());
+        if (changeType == UserChangeEvent.Type.ROLE_CHANGED) {
+            // В выданных токенах записана старая роль; отметка в БД доходит до всех узлов и переживает рестарт
+            user.setTokensRevokedBefore(LocalDateTime.now());
+        }
 
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        publishAfterCommit(new UserChangeEvent(id, user.getUsername(), changeType));
+        return saved;
     }
 
     @Transactional
@@ -91,6 +121,9 @@ public class UserService {
         User user = getUserById(id);
         user.setEnabled(false);
         userRepository.save(user);
+        // Иначе отключенный пользователь продолжал бы получать access-токены по refresh-токенам
+        refreshTokenService.revokeAllForUser(id);
+        publishAfterCommit(new UserChangeEvent(id, user.getUsername(), UserChangeEvent.Type.DISABLED));
         log.info("User disabled: {}", id);
     }
 
@@ -99,7 +132,9 @@ public class UserService {
         User user = userRepository.findById(id)
                 .orElseThrow(() -> new UserOperationException("User not found with id: " + id, HttpStatus.NOT_FOUND));
         user.setEnabled(true);
+        user.setTokensRevokedBefore(LocalDateTime.now());
         userRepository.save(user);
+        publishAfterCommit(new UserChangeEvent(id, user.getUsername(), UserChangeEvent.Type.ENABLED));
         log.info("User enabled: {}", id);
     }
 
@@ -118,4 +153,18 @@ public class UserService {
     public boolean existsByEmail(String email) {
         return userRepository.existsByEmail(email);
     }
+
+    // Кэши и реестр отзыва обновляются только после коммита, иначе их могут снова заполнить старыми данными
+    private void publishAfterCommit(UserChangeEvent event) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    userEventBus.publish(event);
+                }
+            });
+        } else {
+            userEventBus.publish(event);
+        }
+    }
 }
@@ -0,0 +1,167 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.LimitProperties;
+import com.example.bankcards.exception.TransactionException;
+import com.example.bankcards.repository.TransactionRepository;
+import com.example.bankcards.util.SlidingWindowCounter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ограничение частоты и объема переводов в скользящих окнах (app.limits.velocity).
+ * Окна хранятся в памяти по карте списания (ключ - id карты, уже проверенной на принадлежность пользователю)
+ * и по пользователю, поэтому проверка выполняется до блокировок и транзакции перевода. При первом обращении
+ * окна ключа восстанавливаются из таблицы transactions за самый длинный интервал. Число ключей ограничено
+ * velocity-max-keys, окна без операций дольше самого длинного интервала вытесняются. Перевод, не прошедший дальше
+ * проверок, снимается из окон через {@link Reservation#release()}.
+ */
+@Slf4j
+@Service
+public class VelocityLimiter {
+
+    private final TransactionRepository transactionRepository;
+    private final List<LimitProperties.VelocityRule> cardRules;
+    private final List<LimitProperties.VelocityRule> userRules;
+    private final Duration longestWindow;
+    private final Cache<String, SlidingWindowCounter[]> windows;
+
+    public VelocityLimiter(TransactionRepository transactionRepository, LimitProperties limitProperties) {
+        this.transactionRepository = transactionRepository;
+        this.cardRules = rulesFor(limitProperties, LimitProperties.Scope.CARD);
+        this.userRules = rulesFor(limitProperties, LimitProperties.Scope.USER);
+        this.longestWindow = limitProperties.getVelocity().stream()
+                .map(LimitProperties.VelocityRule::getWindow)
+                .max(Duration::compareTo)
+                .orElse(Duration.ZERO);
+        this.windows = Caffeine.newBuilder()
+                .maximumSize(limitProperties.getVelocityMaxKeys())
+                .expireAfterAccess(longestWindow)
+                .build();
+    }
+
+    /**
+     * Учитывает перевод во всех окнах карты и пользователя или отклоняет его с 429,
+     * если хотя бы одно окно переполнено. Уже занятые окна при отказе освобождаются.
+     */
+    public Reservation acquire(Long userId, Long cardId, BigDecimal amount) {
+        if (cardRules.isEmpty() && userRules.isEmpty()) {
+            return Reservation.NONE;
+        }
+
+        long now = System.currentTimeMillis();
+        long cents = toCents(amount);
+        Reservation reservation = new Reservation(cents);
+        try {
+            acquireAll(reservation, cardRules, "card:" + cardId,
+                    since -> transactionRepository.findSpendByCardSince(cardId, since), now);
+            acquireAll(reservation, userRules, "user:" + userId,
+                    since -> transactionRepository.findSpendByUserSince(userId, since), now);
+        } catch (RuntimeException e) {
+            reservation.release();
+            throw e;
+        }
+        return reservation;
+    }
+
+    private void acquireAll(Reservation reservation, List<LimitProperties.VelocityRule> rules, String key,
+                            HistoryLoader loader, long now) {
+        if (rules.isEmpty()) {
+            return;
+        }
+
+        // История читается внутри вычисления Caffeine: параллельные первые переводы по ключу грузят ее один раз
+        SlidingWindowCounter[] counters = windows.get(key, k -> load(rules, loader, now));
+
+        for (int i = 0; i < rules.size(); i++) {
+            LimitProperties.VelocityRule rule = rules.get(i);
+            SlidingWindowCounter counter = counters[i];
+            long slot = counter.tryAcquire(now, reservation.cents,
+                    rule.getMaxCount() != null ? rule.getMaxCount() : Long.MAX_VALUE,
+                    rule.getMaxAmount() != null ? toCents(rule.getMaxAmount()) : Long.MAX_VALUE);
+            if (slot == SlidingWindowCounter.REJECTED) {
+                log.debug("Velocity limit {} per {} exceeded for {}", rule.getScope(), rule.getWindow(), key);
+                throw new TransactionException("Transfer velocity limit exceeded", HttpStatus.TOO_MANY_REQUESTS,
+                        rule.getScope().name().toLowerCase() + " limit per " + rule.getWindow() + " reached");
+            }
+            reservation.add(counter, slot);
+        }
+    }
+
+    private SlidingWindowCounter[] load(List<LimitProperties.VelocityRule> rules, HistoryLoader loader, long now) {
+        SlidingWindowCounter[] counters = new SlidingWindowCounter[rules.size()];
+        for (int i = 0; i < rules.size(); i++) {
+            counters[i] = new SlidingWindowCounter(rules.get(i).getWindow(), rules.get(i).getBuckets());
+        }
+
+        LocalDateTime since = LocalDateTime.now().minus(longestWindow);
+        for (TransactionRepository.SpendEntry entry : loader.load(since)) {
+            long timestamp = entry.getTransactionDate().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            long cents = toCents(entry.getAmount());
+            for (int i = 0; i < rules.size(); i++) {
+                if (timestamp > now - rules.get(i).getWindow().toMillis()) {
+                    counters[i].add(timestamp, cents);
+                }
+            }
+        }
+        return counters;
+    }
+
+    private static List<LimitProperties.VelocityRule> rulesFor(LimitProperties properties,
+                                                               LimitProperties.Scope scope) {
+        return properties.getVelocity().stream()
+                .filter(rule -> rule.getScope() == scope)
+                .toList();
+    }
+
+    private static long toCents(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    @FunctionalInterface
+    private interface HistoryLoader {
+        List<TransactionRepository.SpendEntry> load(LocalDateTime since);
+    }
+
+    /**
+     * Занятые переводом слоты окон. release() вызывается, если перевод не был проведен.
+     */
+    public static final class Reservation {
+
+        public static final Reservation NONE = new Reservation(0);
+
+        private final long cents;
+        private final List<SlidingWindowCounter> counters = new ArrayList<>();
+        private final List<Long> slots = new ArrayList<>();
+
+        private Reservation(long cents) {
+            this.cents = cents;
+        }
+
+        private void add(SlidingWindowCounter counter, long slot) {
+            counters.add(counter);
+            slots.add(slot);
+        }
+
+        public void release() {
+            if (counters.isEmpty()) {
+                return;
+            }
+            for (int i = 0; i < counters.size(); i++) {
+                counters.get(i).release(slots.get(i), cents);
+            }
+            counters.clear();
+            slots.clear();
+        }
+    }
+}
@@ -7,39 +7,60 @@ import javax.crypto.Cipher;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
+import java.util.Arrays;
 import java.util.Base64;
 
+/**
+ * Шифрование (AES, ключ - SHA-256 от секрета) и хэширование номеров карт.
+ * Ключ вычисляется один раз при создании. Cipher и MessageDigest не потокобезопасны,
+ * поэтому у каждого потока свой экземпляр; SecureRandom общий.
+ */
 @Slf4j
 @Component
 public class EncryptionUtil {
 
-    @Value("${app.encryption.secret-key}")
-    private String secretKey;
-
-    @Value("${app.encryption.algorithm}")
-    private String algorithm;
-
     private static final String HASH_ALGORITHM = "SHA-256";
+    private static final int IV_LENGTH = 16;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final SecretKeySpec secretKeySpec;
+    private final SecureRandom secureRandom = new SecureRandom();
+    private final ThreadLocal<Cipher> ciphers;
+    private final ThreadLocal<MessageDigest> digests = ThreadLocal.withInitial(() -> newInstance(HASH_ALGORITHM));
+
+    public EncryptionUtil(@Value("${app.encryption.secret-key}") String secretKey,
+                          @Value("${app.encryption.algorithm}") String algorithm) {
+        this.secretKeySpec = new SecretKeySpec(
+                newInstance(HASH_ALGORITHM).digest(secretKey.getBytes(StandardCharsets.UTF_8)), "AES");
+        this.ciphers = ThreadLocal.withInitial(() -> {
+            try {
+                return Cipher.getInstance(algorithm);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Cipher " + algorithm + " is not available", e);
+            }
+        });
+    }
 
     public String encrypt(String data) {
         try {
-            byte[] key = getKeyBytes();
-            byte[] iv = generateIv();
-
-            SecretKeySpec secretKeySpec = new SecretKeySpec(key, "AES");
-            IvParameterSpec ivParameterSpec = new IvParameterSpec(iv);
+            byte[] iv = new byte[IV_LENGTH];
+            secureRandom.nextBytes(iv);
 
-            Cipher cipher = Cipher.getInstance(algorithm);
-            cipher.init(Cipher.ENCRYPT_MODE, secretKeySpec, ivParameterSpec);
+            Cipher cipher = ciphers.get();
+            cipher.init(Cipher.ENCRYPT_MODE, secretKeySpec, new IvParameterSpec(iv));
 
-            byte[] encryptedData = cipher.doFinal(data.getBytes(StandardCharsets.UTF_8));
-
-            byte[] combined = new byte[iv.length + encryptedData.length];
-            System.arraycopy(iv, 0, combined, 0, iv.length);
-            System.arraycopy(encryptedData, 0, combined, iv.length, encryptedData.length);
+            byte[] plain = data.getBytes(StandardCharsets.UTF_8);
+            byte[] combined = new byte[IV_LENGTH + cipher.getOutputSize(plain.length)];
+            System.arraycopy(iv, 0, combined, 0, IV_LENGTH);
+            int length = cipher.doFinal(plain, 0, plain.length, combined, IV_LENGTH);
 
+            if (IV_LENGTH + length < combined.length) {
+                combined = Arrays.copyOf(combined, IV_LENGTH + length);
+            }
             return Base64.getEncoder().encodeToString(combined);
         } catch (Exception e) {
             log.error("Error encrypting data", e);
@@ -51,21 +72,10 @@ public class EncryptionUtil {
         try {
             byte[] combined = Base64.getDecoder().decode(encryptedData);
 
-            byte[] iv = new byte[16];
-            System.arraycopy(combined, 0, iv, 0, iv.length);
-
-            byte[] encrypted = new byte[combined.length - iv.length];
-            System.arraycopy(combined, iv.length, encrypted, 0, encrypted.length);
-
-            byte[] key = getKeyBytes();
+            Cipher cipher = ciphers.get();
+            cipher.init(Cipher.DECRYPT_MODE, secretKeySpec, new IvParameterSpec(combined, 0, IV_LENGTH));
 
-            SecretKeySpec secretKeySpec = new SecretKeySpec(key, "AES");
-            IvParameterSpec ivParameterSpec = new IvParameterSpec(iv);
-
-            Cipher cipher = Cipher.getInstance(algorithm);
-            cipher.init(Cipher.DECRYPT_MODE, secretKeySpec, ivParameterSpec);
-
-            byte[] decryptedData = cipher.doFinal(encrypted);
+            byte[] decryptedData = cipher.doFinal(combined, IV_LENGTH, combined.length - IV_LENGTH);
             return new String(decryptedData, StandardCharsets.UTF_8);
         } catch (Exception e) {
             log.error("Error decrypting data", e);
@@ -75,8 +85,7 @@ public class EncryptionUtil {
 
     public String hash(String data) {
         try {
-            MessageDigest digest = MessageDigest.getInstance(HASH_ALGORITHM);
-            byte[] hash = digest.digest(data.getBytes(StandardCharsets.UTF_8));
+            byte[] hash = digests.get().digest(data.getBytes(StandardCharsets.UTF_8));
             return bytesToHex(hash);
         } catch (Exception e) {
             log.error("Error hashing data", e);
@@ -84,24 +93,20 @@ public class EncryptionUtil {
         }
     }
 
-    private byte[] getKeyBytes() throws Exception {
-        MessageDigest sha = MessageDigest.getInstance("SHA-256");
-        return sha.digest(secretKey.getBytes(StandardCharsets.UTF_8));
-    }
-
-    private byte[] generateIv() {
-        byte[] iv = new byte[16];
-        new SecureRandom().nextBytes(iv);
-        return iv;
+    private static MessageDigest newInstance(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(algorithm + " is not available", e);
+        }
     }
 
     private String bytesToHex(byte[] bytes) {
-        StringBuilder hexString = new StringBuilder();
-        for (byte b : bytes) {
-            String hex = Integer.toHexString(0xff & b);
-            if (hex.length() == 1) hexString.append('0');
-            hexString.append(hex);
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0x0f];
+            hex[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0x0f];
         }
-        return hexString.toString();
+        return new String(hex);
     }
-}
\ No newline at end of file
+}
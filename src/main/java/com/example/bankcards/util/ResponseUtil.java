@@ -65,4 +65,17 @@ public class ResponseUtil {
 
         return response;
     }
+
+    public Map<String, Object> cursorPaginatedResponse(Object content, int size, String nextCursor, Long totalElements) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("content", content);
+        response.put("size", size);
+        response.put("nextCursor", nextCursor);
+        response.put("last", nextCursor == null);
+        if (totalElements != null) {
+            response.put("totalElements", totalElements);
+        }
+
+        return response;
+    }
 }
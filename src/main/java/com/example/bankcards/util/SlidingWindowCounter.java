@@ -0,0 +1,83 @@
+package com.example.bankcards.util;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Скользящее окно на кольцевом буфере корзин без блокировок.
+ * Каждая корзина хранит номер своего временного слота, число операций и сумму (в копейках);
+ * корзина с устаревшим слотом обнуляется первым потоком, который в нее пишет.
+ * На границе корзин гонка сброса может потерять единичное добавление - для предварительной
+ * проверки частоты это допустимо.
+ */
+public class SlidingWindowCounter {
+
+    public static final long REJECTED = -1;
+
+    private final long bucketMillis;
+    private final int buckets;
+    private final AtomicLongArray slots;
+    private final AtomicLongArray counts;
+    private final AtomicLongArray amounts;
+
+    public SlidingWindowCounter(Duration window, int buckets) {
+        this.buckets = buckets;
+        this.bucketMillis = Math.max(1, window.toMillis() / buckets);
+        this.slots = new AtomicLongArray(buckets);
+        this.counts = new AtomicLongArray(buckets);
+        this.amounts = new AtomicLongArray(buckets);
+    }
+
+    /**
+     * Добавляет операцию, если после добавления окно не превышает лимиты.
+     * Возвращает слот, в который записана операция (для отката), или REJECTED.
+     */
+    public long tryAcquire(long nowMillis, long amount, long maxCount, long maxAmount) {
+        long slot = add(nowMillis, amount);
+        if (count(nowMillis) > maxCount || amount(nowMillis) > maxAmount) {
+            release(slot, amount);
+            return REJECTED;
+        }
+        return slot;
+    }
+
+    public long add(long timestampMillis, long amount) {
+        long slot = timestampMillis / bucketMillis;
+        int index = (int) (slot % buckets);
+        long current = slots.get(index);
+        if (current < slot && slots.compareAndSet(index, current, slot)) {
+            counts.set(index, 0);
+            amounts.set(index, 0);
+        }
+        counts.incrementAndGet(index);
+        amounts.addAndGet(index, amount);
+        return slot;
+    }
+
+    public void release(long slot, long amount) {
+        int index = (int) (slot % buckets);
+        if (slots.get(index) == slot) {
+            counts.decrementAndGet(index);
+            amounts.addAndGet(index, -amount);
+        }
+    }
+
+    public long count(long nowMillis) {
+        return sum(counts, nowMillis);
+    }
+
+    public long amount(long nowMillis) {
+        return sum(amounts, nowMillis);
+    }
+
+    private long sum(AtomicLongArray values, long nowMillis) {
+        long oldestSlot = nowMillis / bucketMillis - buckets;
+        long total = 0;
+        for (int i = 0; i < buckets; i++) {
+            if (slots.get(i) > oldestSlot) {
+                total += values.get(i);
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.bankcards.aspect;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.exception.CardOperationException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.Signature;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ConcurrencyRetryAspectTest {
+
+    @Mock
+    private ProceedingJoinPoint joinPoint;
+
+    @Mock
+    private Signature signature;
+
+    private SimpleMeterRegistry meterRegistry;
+    private ConcurrencyRetryAspect aspect;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        aspect = new ConcurrencyRetryAspect(meterRegistry);
+        ReflectionTestUtils.setField(aspect, "maxAttempts", 3);
+        ReflectionTestUtils.setField(aspect, "backoffMs", 1L);
+        ReflectionTestUtils.setField(aspect, "maxBackoffMs", 2L);
+        lenient().when(joinPoint.getSignature()).thenReturn(signature);
+        lenient().when(signature.toShortString()).thenReturn("CardService.updateBalance(..)");
+    }
+
+    @Test
+    void retry_OptimisticFailure_ShouldRetryAndCountWithoutCardTag() throws Throwable {
+        when(joinPoint.proceed())
+                .thenThrow(new ObjectOptimisticLockingFailureException(Card.class, 7L))
+                .thenReturn("ok");
+
+        assertEquals("ok", aspect.retry(joinPoint));
+
+        verify(joinPoint, times(2)).proceed();
+        Counter retries = meterRegistry.get(ConcurrencyRetryAspect.RETRIES_METRIC)
+                .tag("type", "optimistic")
+                .counter();
+        assertEquals(1.0, retries.count());
+        assertNull(retries.getId().getTag("card"));
+    }
+
+    @Test
+    void retry_PessimisticFailureExhausted_ShouldRethrowAndCountExhausted() throws Throwable {
+        when(joinPoint.proceed()).thenThrow(new PessimisticLockingFailureException("deadlock"));
+
+        assertThrows(PessimisticLockingFailureException.class, () -> aspect.retry(joinPoint));
+
+        verify(joinPoint, times(3)).proceed();
+        assertEquals(2.0, meterRegistry.get(ConcurrencyRetryAspect.RETRIES_METRIC)
+                .tag("type", "pessimistic")
+                .counter().count());
+        assertEquals(1.0, meterRegistry.get(ConcurrencyRetryAspect.EXHAUSTED_METRIC).counter().count());
+    }
+
+    @Test
+    void retry_BusinessFailure_ShouldNotRetry() throws Throwable {
+        when(joinPoint.proceed()).thenThrow(new CardOperationException("Card not found"));
+
+        assertThrows(CardOperationException.class, () -> aspect.retry(joinPoint));
+
+        verify(joinPoint, times(1)).proceed();
+        assertTrue(meterRegistry.find(ConcurrencyRetryAspect.RETRIES_METRIC).counters().isEmpty());
+    }
+}
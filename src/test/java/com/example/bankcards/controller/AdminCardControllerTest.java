@@ -5,6 +5,9 @@ import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.entity.enums.CardStatus;
 import com.example.bankcards.mapper.CardMapper;
+import com.example.bankcards.repository.CardRepository.CardView;
+import com.example.bankcards.service.CardImportFormat;
+import com.example.bankcards.service.CardImportService;
 import com.example.bankcards.service.CardService;
 import com.example.bankcards.util.ResponseUtil;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -22,7 +25,9 @@ import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import java.io.OutputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
@@ -48,11 +53,15 @@ class AdminCardControllerTest {
     @Mock
     private CardMapper cardMapper;
 
+    @Mock
+    private CardImportService cardImportService;
+
     @InjectMocks
     private AdminCardController adminCardController;
 
     private ObjectMapper objectMapper;
     private Card testCard;
+    private CardView testCardView;
     private CardDTO.Response testCardResponse;
     private User testUser;
 
@@ -80,6 +89,8 @@ class AdminCardControllerTest {
                 .owner(testUser)
                 .build();
 
+        testCardView = mock(CardView.class);
+
         testCardResponse = CardDTO.Response.builder()
                 .id(1L)
                 .maskedNumber("1234****5678")
@@ -98,11 +109,11 @@ class AdminCardControllerTest {
     @WithMockUser(roles = "ADMIN")
     void getAllCards_ShouldReturnCards() throws Exception {
 
-        Page<Card> cardPage = new PageImpl<>(List.of(testCard),
+        Page<CardView> cardPage = new PageImpl<>(List.of(testCardView),
                 PageRequest.of(0, 20, Sort.Direction.DESC, "createdAt"), 1);
 
         when(cardService.getAllCards(any(Pageable.class))).thenReturn(cardPage);
-        when(cardMapper.toResponse(any(Card.class))).thenReturn(testCardResponse);
+        when(cardMapper.toResponse(any(CardView.class))).thenReturn(testCardResponse);
 
         Map<String, Object> paginatedResponse = Map.of(
                 "items", List.of(testCardResponse),
@@ -135,11 +146,11 @@ class AdminCardControllerTest {
     @WithMockUser(roles = "ADMIN")
     void getAllCards_WithCustomPagination_ShouldUseParameters() throws Exception {
         // Arrange
-        Page<Card> cardPage = new PageImpl<>(List.of(testCard),
+        Page<CardView> cardPage = new PageImpl<>(List.of(testCardView),
                 PageRequest.of(2, 50, Sort.Direction.ASC, "balance"), 1);
 
         when(cardService.getAllCards(any(Pageable.class))).thenReturn(cardPage);
-        when(cardMapper.toResponse(any(Card.class))).thenReturn(testCardResponse);
+        when(cardMapper.toResponse(any(CardView.class))).thenReturn(testCardResponse);
 
         Map<String, Object> paginatedResponse = Map.of(
                 "items", List.of(testCardResponse),
@@ -259,11 +270,11 @@ class AdminCardControllerTest {
     @WithMockUser(roles = "ADMIN")
     void getUserCards_ShouldReturnUserCards() throws Exception {
 
-        List<Card> cards = List.of(testCard);
+        List<CardView> cards = List.of(testCardView);
         List<CardDTO.Response> responses = List.of(testCardResponse);
 
         when(cardService.getUserCards(1L)).thenReturn(cards);
-        when(cardMapper.toResponse(any(Card.class))).thenReturn(testCardResponse);
+        when(cardMapper.toResponse(any(CardView.class))).thenReturn(testCardResponse);
 
         Map<String, Object> responseBody = Map.of(
                 "message", "User cards retrieved successfully",
@@ -317,12 +328,13 @@ class AdminCardControllerTest {
     @WithMockUser(roles = "ADMIN")
     void checkExpiredCards_ShouldProcessExpiredCards() throws Exception {
 
-        doNothing().when(cardService).updateExpiredCardsStatus();
+        CardDTO.ExpirationResult result = new CardDTO.ExpirationResult(3, 1);
+        when(cardService.updateExpiredCardsStatus()).thenReturn(result);
 
         Map<String, Object> responseBody = Map.of(
                 "message", "Expired cards check completed"
         );
-        when(responseUtil.successResponse(eq("Expired cards check completed"), isNull()))
+        when(responseUtil.successResponse(eq("Expired cards check completed"), eq(result)))
                 .thenReturn(ResponseEntity.ok(responseBody));
 
         mockMvc.perform(post("/api/admin/cards/check-expired")
@@ -357,11 +369,11 @@ class AdminCardControllerTest {
     @Test
     @WithMockUser(roles = "ADMIN")
     void getAllCards_WithDefaultParameters_ShouldUseDefaults() throws Exception {
-        Page<Card> cardPage = new PageImpl<>(List.of(testCard),
+        Page<CardView> cardPage = new PageImpl<>(List.of(testCardView),
                 PageRequest.of(0, 20, Sort.Direction.DESC, "createdAt"), 1);
 
         when(cardService.getAllCards(any(Pageable.class))).thenReturn(cardPage);
-        when(cardMapper.toResponse(any(Card.class))).thenReturn(testCardResponse);
+        when(cardMapper.toResponse(any(CardView.class))).thenReturn(testCardResponse);
 
         Map<String, Object> paginatedResponse = Map.of(
                 "items", List.of(testCardResponse),
@@ -390,4 +402,37 @@ class AdminCardControllerTest {
                         pageable.getSort().getOrderFor("createdAt").getDirection() == Sort.Direction.DESC
         ));
     }
-}
\ No newline at end of file
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void importCards_ShouldStreamRowResults() throws Exception {
+        String csv = "cardNumber,ownerName,expiryDate,cvv,userId\n4149471805568597,IVAN IVANOV,12/27,123,1\n";
+        when(cardImportService.importCards(any(), eq(CardImportFormat.CSV), any())).thenAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(2);
+            out.write("{\"row\":2,\"status\":\"CREATED\"}\n".getBytes(StandardCharsets.UTF_8));
+            return new CardDTO.ImportSummary(1, 1, 0);
+        });
+
+        mockMvc.perform(post("/api/admin/cards/import")
+                        .with(csrf())
+                        .contentType("text/csv")
+                        .content(csv))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string("{\"row\":2,\"status\":\"CREATED\"}\n"));
+
+        verify(cardImportService).importCards(any(), eq(CardImportFormat.CSV), any());
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void importCards_WithJsonBody_ShouldBeRejected() throws Exception {
+        mockMvc.perform(post("/api/admin/cards/import")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[]"))
+                .andExpect(status().isUnsupportedMediaType());
+
+        verifyNoInteractions(cardImportService);
+    }
+}
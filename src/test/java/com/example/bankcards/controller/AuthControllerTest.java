@@ -99,7 +99,7 @@ class AuthControllerTest {
     @Test
     void login_ShouldReturnJwtToken() throws Exception {
 
-        when(authService.authenticateUser(any(AuthDTO.LoginRequest.class))).thenReturn(jwtResponse);
+        when(authService.authenticateUser(any(AuthDTO.LoginRequest.class), any())).thenReturn(jwtResponse);
 
         Map<String, Object> responseBody = Map.of(
                 "message", "User authenticated successfully",
@@ -116,7 +116,67 @@ class AuthControllerTest {
                 .andExpect(jsonPath("$.message").value("User authenticated successfully"))
                 .andExpect(jsonPath("$.data.token").value("jwt.token.here"));
 
-        verify(authService).authenticateUser(any(AuthDTO.LoginRequest.class));
+        verify(authService).authenticateUser(any(AuthDTO.LoginRequest.class), any());
+    }
+
+    @Test
+    void logout_ShouldRevokeBearerToken() throws Exception {
+        when(responseUtil.successResponse(eq("Logged out successfully"), any()))
+                .thenReturn(ResponseEntity.ok(Map.of("message", "Logged out successfully")));
+
+        mockMvc.perform(post("/auth/logout")
+                        .with(csrf())
+                        .header("Authorization", "Bearer jwt.token.here"))
+                .andExpect(status().isOk());
+
+        verify(authService).logout("jwt.token.here", null);
+    }
+
+    @Test
+    void logout_WithRefreshToken_ShouldRevokeBoth() throws Exception {
+        when(responseUtil.successResponse(eq("Logged out successfully"), any()))
+                .thenReturn(ResponseEntity.ok(Map.of("message", "Logged out successfully")));
+
+        mockMvc.perform(post("/auth/logout")
+                        .with(csrf())
+                        .header("Authorization", "Bearer jwt.token.here")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"refreshToken\":\"refresh-token\"}"))
+                .andExpect(status().isOk());
+
+        verify(authService).logout("jwt.token.here", "refresh-token");
+    }
+
+    @Test
+    void refresh_ShouldReturnNewTokens() throws Exception {
+        jwtResponse.setRefreshToken("new-refresh");
+        when(authService.refresh("old-refresh")).thenReturn(jwtResponse);
+        when(responseUtil.successResponse(eq("Token refreshed successfully"), any()))
+                .thenReturn(ResponseEntity.ok(Map.of(
+                        "message", "Token refreshed successfully",
+                        "data", jwtResponse
+                )));
+
+        mockMvc.perform(post("/auth/refresh")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"refreshToken\":\"old-refresh\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.token").value("jwt.token.here"))
+                .andExpect(jsonPath("$.data.refreshToken").value("new-refresh"));
+
+        verify(authService).refresh("old-refresh");
+    }
+
+    @Test
+    void refresh_WithoutToken_ShouldReturnBadRequest() throws Exception {
+        mockMvc.perform(post("/auth/refresh")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{}"))
+                .andExpect(status().isBadRequest());
+
+        verify(authService, never()).refresh(any());
     }
 
     @Test
@@ -281,7 +341,7 @@ class AuthControllerTest {
     @Test
     void login_ShouldCallAuthServiceWithCorrectParameters() throws Exception {
 
-        when(authService.authenticateUser(any(AuthDTO.LoginRequest.class))).thenReturn(jwtResponse);
+        when(authService.authenticateUser(any(AuthDTO.LoginRequest.class), any())).thenReturn(jwtResponse);
 
         Map<String, Object> responseBody = Map.of(
                 "message", "User authenticated successfully",
@@ -299,6 +359,6 @@ class AuthControllerTest {
         verify(authService).authenticateUser(argThat(request ->
                 request.getUsername().equals("testuser") &&
                         request.getPassword().equals("password123")
-        ));
+        ), eq("127.0.0.1"));
     }
 }
\ No newline at end of file
@@ -5,6 +5,7 @@ import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.entity.enums.CardStatus;
 import com.example.bankcards.mapper.CardMapper;
+import com.example.bankcards.repository.CardRepository.CardView;
 import com.example.bankcards.service.AuthService;
 import com.example.bankcards.service.CardService;
 import com.example.bankcards.util.ResponseUtil;
@@ -55,6 +56,7 @@ class CardControllerTest {
 
     private ObjectMapper objectMapper;
     private Card testCard;
+    private CardView testCardView;
     private CardDTO.Response testCardResponse;
     private User testUser;
 
@@ -84,6 +86,8 @@ class CardControllerTest {
                 .owner(testUser)
                 .build();
 
+        testCardView = mock(CardView.class);
+
         testCardResponse = CardDTO.Response.builder()
                 .id(1L)
                 .maskedNumber("414947******7890")
@@ -108,11 +112,11 @@ class CardControllerTest {
         filterRequest.setPage(0);
         filterRequest.setSize(10);
 
-        Page<Card> cardPage = new PageImpl<>(List.of(testCard),
+        Page<CardView> cardPage = new PageImpl<>(List.of(testCardView),
                 PageRequest.of(0, 10, Sort.Direction.DESC, "createdAt"), 1);
 
         when(cardService.getUserCards(eq(1L), any(CardDTO.FilterRequest.class))).thenReturn(cardPage);
-        when(cardMapper.toResponse(any(Card.class))).thenReturn(testCardResponse);
+        when(cardMapper.toResponse(any(CardView.class))).thenReturn(testCardResponse);
 
         Map<String, Object> paginatedResponse = Map.of(
                 "items", List.of(testCardResponse),
@@ -149,11 +153,11 @@ class CardControllerTest {
 
         when(authService.getCurrentUserId()).thenReturn(1L);
 
-        Page<Card> cardPage = new PageImpl<>(List.of(testCard),
+        Page<CardView> cardPage = new PageImpl<>(List.of(testCardView),
                 PageRequest.of(0, 10, Sort.Direction.DESC, "createdAt"), 1);
 
         when(cardService.getUserCards(eq(1L), any(CardDTO.FilterRequest.class))).thenReturn(cardPage);
-        when(cardMapper.toResponse(any(Card.class))).thenReturn(testCardResponse);
+        when(cardMapper.toResponse(any(CardView.class))).thenReturn(testCardResponse);
 
         Map<String, Object> paginatedResponse = Map.of(
                 "items", List.of(testCardResponse),
@@ -403,11 +407,11 @@ class CardControllerTest {
 
         when(authService.getCurrentUserId()).thenReturn(1L);
 
-        Page<Card> cardPage = new PageImpl<>(List.of(testCard),
+        Page<CardView> cardPage = new PageImpl<>(List.of(testCardView),
                 PageRequest.of(0, 10, Sort.Direction.DESC, "createdAt"), 1);
 
         when(cardService.getUserCards(eq(1L), any(CardDTO.FilterRequest.class))).thenReturn(cardPage);
-        when(cardMapper.toResponse(any(Card.class))).thenReturn(testCardResponse);
+        when(cardMapper.toResponse(any(CardView.class))).thenReturn(testCardResponse);
 
         Map<String, Object> paginatedResponse = Map.of(
                 "items", List.of(testCardResponse),
@@ -439,11 +443,11 @@ class CardControllerTest {
 
         when(authService.getCurrentUserId()).thenReturn(1L);
 
-        Page<Card> cardPage = new PageImpl<>(List.of(testCard),
+        Page<CardView> cardPage = new PageImpl<>(List.of(testCardView),
                 PageRequest.of(0, 10, Sort.Direction.DESC, "createdAt"), 1);
 
         when(cardService.getUserCards(eq(1L), any(CardDTO.FilterRequest.class))).thenReturn(cardPage);
-        when(cardMapper.toResponse(any(Card.class))).thenReturn(testCardResponse);
+        when(cardMapper.toResponse(any(CardView.class))).thenReturn(testCardResponse);
 
         Map<String, Object> paginatedResponse = Map.of(
                 "items", List.of(testCardResponse),
@@ -0,0 +1,270 @@
+package com.example.bankcards.controller;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.entity.enums.Role;
+import com.example.bankcards.entity.enums.TransactionStatus;
+import com.example.bankcards.entity.enums.TransactionType;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.TransactionRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.UserPrincipal;
+import com.example.bankcards.service.TransactionHistoryStrategy;
+import com.example.bankcards.service.TransactionService;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Бюджет SQL-запросов списочных эндпоинтов. Число запросов не должно зависеть от размера страницы:
+ * владельцы карт и карты транзакций загружаются вместе со страницей, а не ленивыми SELECT на каждую строку.
+ * Запросы считаются StatementInspector'ом Hibernate в потоке MockMvc.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+@ActiveProfiles("test")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ListingQueryBudgetTest {
+
+    private static final int USERS = 3;
+    private static final int CARDS_PER_USER = 5;
+    private static final int TRANSACTIONS_PER_USER = 30;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private SqlStatementCounter statementCounter;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    private final List<User> users = new ArrayList<>();
+    private final List<Card> cards = new ArrayList<>();
+    private final List<Transaction> transactions = new ArrayList<>();
+    private User customer;
+    private User admin;
+    private Card customerCard;
+
+    @BeforeAll
+    void setUp() {
+        for (int u = 0; u < USERS; u++) {
+            User owner = saveUser("budget-user" + u, Role.USER);
+            List<Card> ownerCards = new ArrayList<>();
+            for (int c = 0; c < CARDS_PER_USER; c++) {
+                ownerCards.add(saveCard(owner, u * CARDS_PER_USER + c));
+            }
+            LocalDateTime start = LocalDateTime.now().minusDays(1);
+            for (int t = 0; t < TRANSACTIONS_PER_USER; t++) {
+                Card from = ownerCards.get(t % CARDS_PER_USER);
+                Card to = ownerCards.get((t + 1) % CARDS_PER_USER);
+                transactions.add(transactionRepository.save(Transaction.builder()
+                        .transactionId(UUID.randomUUID().toString())
+                        .amount(BigDecimal.ONE)
+                        .currency("USD")
+                        .type(TransactionType.TRANSFER)
+                        .status(TransactionStatus.COMPLETED)
+                        .fromCard(t % 3 == 0 ? null : from)
+                        .toCard(to)
+                        .transactionDate(start.plusMinutes(t))
+                        .createdAt(start.plusMinutes(t))
+                        .build()));
+            }
+            if (u == 0) {
+                customer = owner;
+                customerCard = ownerCards.get(0);
+            }
+        }
+        admin = saveUser("budget-admin", Role.ADMIN);
+    }
+
+    @AfterAll
+    void tearDown() {
+        transactionRepository.deleteAll(transactions);
+        cardRepository.deleteAll(cards);
+        userRepository.deleteAll(users);
+    }
+
+    @Test
+    void userCards_ShouldFitQueryBudget() throws Exception {
+        assertQueryBudget(2, get("/api/cards").param("size", "20").with(user(UserPrincipal.create(customer))))
+                .andExpect(jsonPath("$.data.totalElements").value(CARDS_PER_USER))
+                .andExpect(jsonPath("$.data.content[0].userId").value(customer.getId()))
+                .andExpect(jsonPath("$.data.content[0].username").value(customer.getUsername()))
+                .andExpect(jsonPath("$.data.content[0].expired").value(false));
+        assertQueryBudget(2, get("/api/cards").param("size", "20").param("status", "ACTIVE")
+                .with(user(UserPrincipal.create(customer))));
+    }
+
+    @Test
+    void adminCards_ShouldFitQueryBudget() throws Exception {
+        assertQueryBudget(2, get("/api/admin/cards").param("size", "50").with(user(UserPrincipal.create(admin))));
+        assertQueryBudget(1, get("/api/admin/cards/user/{userId}", customer.getId())
+                .with(user(UserPrincipal.create(admin))));
+    }
+
+    @Test
+    void userTransactions_ShouldFitQueryBudget() throws Exception {
+        assertQueryBudget(2, get("/api/transactions").param("size", "50")
+                .with(user(UserPrincipal.create(customer))))
+                .andExpect(jsonPath("$.data.totalElements").value(TRANSACTIONS_PER_USER))
+                .andExpect(jsonPath("$.data.content[0].toCardMasked").isNotEmpty());
+        assertQueryBudget(2, get("/api/transactions").param("cursor", "").param("size", "50")
+                .param("includeTotal", "true").with(user(UserPrincipal.create(customer))));
+    }
+
+    @Test
+    void userTransactions_WithCardUnionStrategy_ShouldFitQueryBudget() throws Exception {
+        ReflectionTestUtils.setField(transactionService, "historyStrategy", TransactionHistoryStrategy.CARD_UNION);
+        try {
+            assertQueryBudget(3, get("/api/transactions").param("cursor", "").param("size", "50")
+                    .with(user(UserPrincipal.create(customer))));
+        } finally {
+            ReflectionTestUtils.setField(transactionService, "historyStrategy", TransactionHistoryStrategy.OWNER_COLUMN);
+        }
+    }
+
+    @Test
+    void cardTransactions_ShouldFitQueryBudget() throws Exception {
+        assertQueryBudget(3, get("/api/transactions/card/{cardId}", customerCard.getId()).param("size", "50")
+                .with(user(UserPrincipal.create(customer))));
+        assertQueryBudget(3, get("/api/transactions/card/{cardId}", customerCard.getId()).param("cursor", "")
+                .param("size", "50").with(user(UserPrincipal.create(customer))));
+    }
+
+    @Test
+    void transactionExport_ShouldReadWholeHistoryInOneQuery() throws Exception {
+        String body = assertQueryBudget(1, get("/api/transactions/export").param("format", "NDJSON")
+                .with(user(UserPrincipal.create(customer))))
+                .andReturn().getResponse().getContentAsString();
+
+        assertEquals(TRANSACTIONS_PER_USER, body.lines().count());
+    }
+
+    private ResultActions assertQueryBudget(int budget, MockHttpServletRequestBuilder request) throws Exception {
+        List<ResultActions> result = new ArrayList<>();
+        List<String> statements = statementCounter.record(() -> result.add(mockMvc.perform(request)));
+        assertTrue(statements.size() <= budget, () -> "Expected at most " + budget + " statements but was "
+                + statements.size() + ":\n" + String.join("\n", statements));
+        return result.get(0).andExpect(status().isOk());
+    }
+
+    private User saveUser(String username, Role role) {
+        User user = userRepository.save(User.builder()
+                .username(username)
+                .password("secret")
+                .firstName("Budget")
+                .lastName("User")
+                .email(username + "@bank.com")
+                .role(role)
+                .enabled(true)
+                .build());
+        users.add(user);
+        return user;
+    }
+
+    private Card saveCard(User owner, int index) {
+        String number = "budget-card-" + index;
+        Card card = cardRepository.save(Card.builder()
+                .cardNumber(number)
+                .cardNumberHash(number)
+                .maskedNumber(String.format("**** **** **** %04d", index))
+                .ownerName("BUDGET USER")
+                .expiryDate(LocalDate.now().plusYears(2))
+                .cvv("cvv")
+                .balance(BigDecimal.ZERO)
+                .status(CardStatus.ACTIVE)
+                .owner(owner)
+                .build());
+        cards.add(card);
+        return card;
+    }
+
+    @TestConfiguration
+    static class StatementCounterConfig {
+
+        @Bean
+        SqlStatementCounter sqlStatementCounter() {
+            return new SqlStatementCounter();
+        }
+
+        @Bean
+        HibernatePropertiesCustomizer statementCounterCustomizer(SqlStatementCounter counter) {
+            return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, counter);
+        }
+    }
+
+    /**
+     * Записывает SQL, подготовленный Hibernate в текущем потоке, пока выполняется действие.
+     */
+    static class SqlStatementCounter implements StatementInspector {
+
+        private final ThreadLocal<List<String>> recorded = new ThreadLocal<>();
+
+        @Override
+        public String inspect(String sql) {
+            List<String> statements = recorded.get();
+            if (statements != null) {
+                statements.add(sql);
+            }
+            return sql;
+        }
+
+        List<String> record(ThrowingAction action) throws Exception {
+            List<String> statements = new ArrayList<>();
+            recorded.set(statements);
+            try {
+                action.run();
+            } finally {
+                recorded.remove();
+            }
+            return statements;
+        }
+    }
+
+    @FunctionalInterface
+    interface ThrowingAction {
+        void run() throws Exception;
+    }
+}
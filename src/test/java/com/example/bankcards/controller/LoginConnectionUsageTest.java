@@ -0,0 +1,268 @@
+package com.example.bankcards.controller;
+
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.Role;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.BoundedPasswordEncoder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Вход и регистрация не должны удерживать соединение из пула, пока ждут очередь BCrypt: иначе всплеск входов
+ * выбирает пул Hikari и останавливает переводы. Пул паролей заменен на 1 поток с очередью 1, первый вход
+ * блокируется в хэшировании, второй стоит в очереди, третий получает 429.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+@ActiveProfiles("test")
+class LoginConnectionUsageTest {
+
+    private static final String USERNAME = "pool-user";
+    private static final String PASSWORD = "password123";
+    private static final String NEW_USERNAME = "pool-newcomer";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private Instrumentation instrumentation;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        instrumentation.reset();
+        user = userRepository.save(User.builder()
+                .username(USERNAME)
+                .password(new BCryptPasswordEncoder(4).encode(PASSWORD))
+                .firstName("Pool")
+                .lastName("User")
+                .email("pool-user@bank.com")
+                .role(Role.USER)
+                .enabled(true)
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        instrumentation.release.countDown();
+        userRepository.delete(user);
+        userRepository.findByUsername(NEW_USERNAME).ifPresent(userRepository::delete);
+    }
+
+    @Test
+    void login_WhenPasswordQueueIsFull_ShouldNotHoldConnections() throws Exception {
+        List<Thread> callers = new CopyOnWriteArrayList<>();
+        Callable<MvcResult> login = () -> {
+            callers.add(Thread.currentThread());
+            return mockMvc.perform(loginRequest()).andReturn();
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<MvcResult> hashing = executor.submit(login);
+            assertTrue(instrumentation.hashing.await(10, TimeUnit.SECONDS));
+            Future<MvcResult> queued = executor.submit(login);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (instrumentation.meterRegistry.get("auth.password.queue.size").gauge().value() < 1) {
+                assertTrue(System.nanoTime() < deadline, "Second login never reached the password queue");
+                Thread.onSpinWait();
+            }
+
+            mockMvc.perform(loginRequest()).andExpect(status().isTooManyRequests());
+            for (Thread caller : callers) {
+                assertEquals(0, instrumentation.connectionsHeldBy(caller),
+                        () -> caller.getName() + " holds a connection while waiting for password hashing");
+            }
+
+            instrumentation.release.countDown();
+            assertEquals(200, hashing.get(10, TimeUnit.SECONDS).getResponse().getStatus());
+            assertEquals(200, queued.get(10, TimeUnit.SECONDS).getResponse().getStatus());
+        } finally {
+            instrumentation.release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void register_WhileHashingPassword_ShouldNotHoldConnection() throws Exception {
+        AtomicReference<Thread> caller = new AtomicReference<>();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<MvcResult> registration = executor.submit(() -> {
+                caller.set(Thread.currentThread());
+                return mockMvc.perform(registerRequest()).andReturn();
+            });
+            assertTrue(instrumentation.hashing.await(10, TimeUnit.SECONDS));
+
+            assertEquals(0, instrumentation.connectionsHeldBy(caller.get()),
+                    "Registration holds a connection while waiting for password hashing");
+
+            instrumentation.release.countDown();
+            assertEquals(201, registration.get(10, TimeUnit.SECONDS).getResponse().getStatus());
+        } finally {
+            instrumentation.release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    private MockHttpServletRequestBuilder registerRequest() {
+        return post("/auth/register")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"username\":\"" + NEW_USERNAME + "\",\"password\":\"" + PASSWORD + "\"," +
+                        "\"firstName\":\"Pool\",\"lastName\":\"Newcomer\",\"email\":\"pool-newcomer@bank.com\"}");
+    }
+
+    private MockHttpServletRequestBuilder loginRequest() {
+        return post("/auth/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"username\":\"" + USERNAME + "\",\"password\":\"" + PASSWORD + "\"}");
+    }
+
+    @TestConfiguration
+    static class InstrumentationConfig {
+
+        @Bean
+        static Instrumentation instrumentation() {
+            return new Instrumentation();
+        }
+    }
+
+    /**
+     * Подменяет пул паролей блокирующимся и считает открытые соединения по потокам, которые их взяли.
+     */
+    static class Instrumentation implements BeanPostProcessor {
+
+        volatile CountDownLatch hashing = new CountDownLatch(1);
+        volatile CountDownLatch release = new CountDownLatch(1);
+        final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        private final Map<Thread, AtomicInteger> heldConnections = new ConcurrentHashMap<>();
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (bean instanceof BoundedPasswordEncoder original) {
+                original.shutdown();
+                return new BoundedPasswordEncoder(new BlockingEncoder(), 1, 1, 1, meterRegistry);
+            }
+            if (bean instanceof DataSource dataSource) {
+                return new CountingDataSource(dataSource);
+            }
+            return bean;
+        }
+
+        void reset() {
+            hashing = new CountDownLatch(1);
+            release = new CountDownLatch(1);
+        }
+
+        int connectionsHeldBy(Thread thread) {
+            AtomicInteger held = heldConnections.get(thread);
+            return held == null ? 0 : held.get();
+        }
+
+        private class BlockingEncoder extends BCryptPasswordEncoder {
+
+            BlockingEncoder() {
+                super(4);
+            }
+
+            @Override
+            public String encode(CharSequence rawPassword) {
+                block();
+                return super.encode(rawPassword);
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                block();
+                return super.matches(rawPassword, encodedPassword);
+            }
+
+            private void block() {
+                hashing.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        private class CountingDataSource extends DelegatingDataSource {
+
+            CountingDataSource(DataSource target) {
+                super(target);
+            }
+
+            @Override
+            public Connection getConnection() throws SQLException {
+                return track(super.getConnection());
+            }
+
+            @Override
+            public Connection getConnection(String username, String password) throws SQLException {
+                return track(super.getConnection(username, password));
+            }
+
+            private Connection track(Connection connection) {
+                AtomicInteger held = heldConnections.computeIfAbsent(Thread.currentThread(), t -> new AtomicInteger());
+                held.incrementAndGet();
+                AtomicBoolean closed = new AtomicBoolean();
+                return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                        new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                            if (method.getName().equals("close") && closed.compareAndSet(false, true)) {
+                                held.decrementAndGet();
+                            }
+                            try {
+                                return method.invoke(connection, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            }
+                        });
+            }
+        }
+    }
+}
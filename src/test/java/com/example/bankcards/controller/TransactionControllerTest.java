@@ -1,32 +1,47 @@
 package com.example.bankcards.controller;
 
+import com.example.bankcards.config.LimitProperties;
+import com.example.bankcards.dto.CursorPage;
 import com.example.bankcards.dto.TransactionDTO;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.Transaction;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.exception.GlobalExceptionHandler;
 import com.example.bankcards.mapper.TransactionMapper;
+import com.example.bankcards.repository.TransactionRepository.TransactionView;
 import com.example.bankcards.service.AuthService;
 import com.example.bankcards.service.CardService;
+import com.example.bankcards.service.IdempotencyService;
+import com.example.bankcards.service.TransactionExportFormat;
+import com.example.bankcards.service.TransactionExportService;
 import com.example.bankcards.service.TransactionService;
 import com.example.bankcards.util.ResponseUtil;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
+import org.springframework.aop.framework.ProxyFactory;
 import org.springframework.data.domain.*;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.validation.beanvalidation.MethodValidationInterceptor;
 
+import java.io.OutputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
@@ -58,6 +73,15 @@ class TransactionControllerTest {
     @Mock
     private TransactionMapper transactionMapper;
 
+    @Mock
+    private IdempotencyService idempotencyService;
+
+    @Mock
+    private TransactionExportService transactionExportService;
+
+    @Spy
+    private LimitProperties limitProperties = new LimitProperties();
+
     @InjectMocks
     private TransactionController transactionController;
 
@@ -65,6 +89,7 @@ class TransactionControllerTest {
     private TransactionDTO.TransferRequest transferRequest;
     private TransactionDTO.Response transactionResponse;
     private Transaction testTransaction;
+    private TransactionView testTransactionView;
     private User testUser;
     private Card testCard;
 
@@ -88,6 +113,8 @@ class TransactionControllerTest {
                 .owner(testUser)
                 .build();
 
+        testTransactionView = mock(TransactionView.class);
+
         testTransaction = Transaction.builder()
                 .transactionId("TXN123456")
                 .amount(new BigDecimal("100.00"))
@@ -146,6 +173,27 @@ class TransactionControllerTest {
         verify(transactionService).transferBetweenOwnCards(any(TransactionDTO.TransferRequest.class), eq(1L));
     }
 
+    @Test
+    @WithMockUser(roles = "USER")
+    void transferBetweenCards_WithIdempotencyKey_ShouldReturnStoredResponse() throws Exception {
+        when(authService.getCurrentUserId()).thenReturn(1L);
+        when(idempotencyService.transfer(eq(1L), eq("key-1"), any(TransactionDTO.TransferRequest.class)))
+                .thenReturn(transactionResponse);
+        when(responseUtil.createdResponse(eq("Transfer completed successfully"), eq(transactionResponse)))
+                .thenReturn(ResponseEntity.status(201).body(Map.of("data", transactionResponse)));
+
+        mockMvc.perform(post("/api/transactions/transfer")
+                        .with(csrf())
+                        .header("Idempotency-Key", "key-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(transferRequest)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.data.transactionId").value("TXN123456"));
+
+        verify(idempotencyService).transfer(eq(1L), eq("key-1"), any(TransactionDTO.TransferRequest.class));
+        verify(transactionService, never()).transferBetweenOwnCards(any(), anyLong());
+    }
+
     @Test
     @WithMockUser(roles = "USER")
     void transferBetweenCards_WithInvalidAmount_ShouldReturnBadRequest() throws Exception {
@@ -185,11 +233,11 @@ class TransactionControllerTest {
 
         when(authService.getCurrentUserId()).thenReturn(1L);
 
-        Page<Transaction> transactionPage = new PageImpl<>(List.of(testTransaction),
+        Page<TransactionView> transactionPage = new PageImpl<>(List.of(testTransactionView),
                 PageRequest.of(0, 20, Sort.Direction.DESC, "createdAt"), 1);
 
         when(transactionService.getUserTransactions(1L, 0, 20)).thenReturn(transactionPage);
-        when(transactionMapper.toResponse(any(Transaction.class))).thenReturn(transactionResponse);
+        when(transactionMapper.toResponse(any(TransactionView.class))).thenReturn(transactionResponse);
 
         Map<String, Object> paginatedResponse = Map.of(
                 "items", List.of(transactionResponse),
@@ -223,11 +271,11 @@ class TransactionControllerTest {
     void getUserTransactions_WithCustomPagination_ShouldUseParameters() throws Exception {
         when(authService.getCurrentUserId()).thenReturn(1L);
 
-        Page<Transaction> transactionPage = new PageImpl<>(List.of(testTransaction),
+        Page<TransactionView> transactionPage = new PageImpl<>(List.of(testTransactionView),
                 PageRequest.of(2, 50, Sort.Direction.ASC, "amount"), 1);
 
         when(transactionService.getUserTransactions(1L, 2, 50)).thenReturn(transactionPage);
-        when(transactionMapper.toResponse(any(Transaction.class))).thenReturn(transactionResponse);
+        when(transactionMapper.toResponse(any(TransactionView.class))).thenReturn(transactionResponse);
 
         Map<String, Object> paginatedResponse = Map.of(
                 "items", List.of(transactionResponse),
@@ -260,12 +308,12 @@ class TransactionControllerTest {
     void getCardTransactions_ShouldReturnCardTransactions() throws Exception {
         when(authService.getCurrentUserId()).thenReturn(1L);
 
-        Page<Transaction> transactionPage = new PageImpl<>(List.of(testTransaction),
+        Page<TransactionView> transactionPage = new PageImpl<>(List.of(testTransactionView),
                 PageRequest.of(0, 20, Sort.Direction.DESC, "createdAt"), 1);
 
         when(cardService.getCardByIdAndOwnerId(1L, 1L)).thenReturn(testCard);
         when(transactionService.getCardTransactions(1L, 0, 20)).thenReturn(transactionPage);
-        when(transactionMapper.toResponse(any(Transaction.class))).thenReturn(transactionResponse);
+        when(transactionMapper.toResponse(any(TransactionView.class))).thenReturn(transactionResponse);
 
         Map<String, Object> paginatedResponse = Map.of(
                 "items", List.of(transactionResponse),
@@ -294,6 +342,54 @@ class TransactionControllerTest {
         verify(transactionService).getCardTransactions(1L, 0, 20);
     }
 
+    @Test
+    @WithMockUser(roles = "USER")
+    void getCardTransactions_WithCursor_ShouldUseKeysetPagination() throws Exception {
+        when(authService.getCurrentUserId()).thenReturn(1L);
+        when(cardService.getCardByIdAndOwnerId(1L, 1L)).thenReturn(testCard);
+        when(transactionService.getCardTransactions(1L, "abc", 20, true))
+                .thenReturn(new CursorPage<>(List.of(testTransactionView), "next", 5L));
+        when(transactionMapper.toResponse(any(TransactionView.class))).thenReturn(transactionResponse);
+
+        Map<String, Object> cursorResponse = Map.of(
+                "content", List.of(transactionResponse),
+                "nextCursor", "next",
+                "totalElements", 5L
+        );
+        when(responseUtil.cursorPaginatedResponse(anyList(), eq(20), eq("next"), eq(5L)))
+                .thenReturn(cursorResponse);
+        when(responseUtil.successResponse(eq("Card transactions retrieved successfully"), eq(cursorResponse)))
+                .thenReturn(ResponseEntity.ok(Map.of(
+                        "message", "Card transactions retrieved successfully",
+                        "data", cursorResponse)));
+
+        mockMvc.perform(get("/api/transactions/card/{cardId}", 1L)
+                        .param("cursor", "abc")
+                        .param("includeTotal", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.nextCursor").value("next"))
+                .andExpect(jsonPath("$.data.content[0].transactionId").value("TXN123456"));
+
+        verify(transactionService).getCardTransactions(1L, "abc", 20, true);
+        verify(transactionService, never()).getCardTransactions(anyLong(), anyInt(), anyInt());
+    }
+
+    @Test
+    @WithMockUser(roles = "USER")
+    void getUserTransactions_WithEmptyCursor_ShouldStartKeysetPagination() throws Exception {
+        when(authService.getCurrentUserId()).thenReturn(1L);
+        when(transactionService.getUserTransactions(1L, "", 20, false))
+                .thenReturn(new CursorPage<>(List.of(), null, null));
+        when(responseUtil.successResponse(eq("Transactions retrieved successfully"), any()))
+                .thenReturn(ResponseEntity.ok(Map.of("message", "Transactions retrieved successfully")));
+
+        mockMvc.perform(get("/api/transactions").param("cursor", ""))
+                .andExpect(status().isOk());
+
+        verify(transactionService).getUserTransactions(1L, "", 20, false);
+        verify(responseUtil).cursorPaginatedResponse(List.of(), 20, null, null);
+    }
+
     @Test
     @WithMockUser(roles = "USER")
     void getTransaction_ShouldReturnTransaction() throws Exception {
@@ -322,7 +418,7 @@ class TransactionControllerTest {
 
         when(authService.getCurrentUserId()).thenReturn(1L);
         when(cardService.getCardByIdAndOwnerId(1L, 1L)).thenReturn(testCard);
-        when(transactionService.getTotalTransferredAmount(1L, 1)).thenReturn(new BigDecimal("1000.00"));
+        when(transactionService.getTodayTransferredAmount(1L)).thenReturn(new BigDecimal("1000.00"));
 
         Map<String, Object> limitResponse = Map.of(
                 "dailyTotal", new BigDecimal("1000.00"),
@@ -347,7 +443,7 @@ class TransactionControllerTest {
 
         verify(authService).getCurrentUserId();
         verify(cardService).getCardByIdAndOwnerId(1L, 1L);
-        verify(transactionService).getTotalTransferredAmount(1L, 1);
+        verify(transactionService).getTodayTransferredAmount(1L);
     }
 
     @Test
@@ -356,7 +452,7 @@ class TransactionControllerTest {
 
         when(authService.getCurrentUserId()).thenReturn(1L);
         when(cardService.getCardByIdAndOwnerId(1L, 1L)).thenReturn(testCard);
-        when(transactionService.getTotalTransferredAmount(1L, 1)).thenReturn(new BigDecimal("6000.00"));
+        when(transactionService.getTodayTransferredAmount(1L)).thenReturn(new BigDecimal("6000.00"));
 
         Map<String, Object> limitResponse = Map.of(
                 "dailyTotal", new BigDecimal("6000.00"),
@@ -407,11 +503,11 @@ class TransactionControllerTest {
     void getUserTransactions_WithDefaultPagination_ShouldUseDefaults() throws Exception {
         when(authService.getCurrentUserId()).thenReturn(1L);
 
-        Page<Transaction> transactionPage = new PageImpl<>(List.of(testTransaction),
+        Page<TransactionView> transactionPage = new PageImpl<>(List.of(testTransactionView),
                 PageRequest.of(0, 20, Sort.Direction.DESC, "createdAt"), 1);
 
         when(transactionService.getUserTransactions(1L, 0, 20)).thenReturn(transactionPage);
-        when(transactionMapper.toResponse(any(Transaction.class))).thenReturn(transactionResponse);
+        when(transactionMapper.toResponse(any(TransactionView.class))).thenReturn(transactionResponse);
 
         Map<String, Object> paginatedResponse = Map.of(
                 "items", List.of(transactionResponse),
@@ -436,4 +532,73 @@ class TransactionControllerTest {
 
         verify(transactionService).getUserTransactions(1L, 0, 20);
     }
-}
\ No newline at end of file
+
+    @Test
+    @WithMockUser(roles = "USER")
+    void exportUserTransactions_ShouldStreamCsvAttachment() throws Exception {
+        when(authService.getCurrentUserId()).thenReturn(1L);
+        when(transactionExportService.exportUserTransactions(eq(1L), eq(TransactionExportFormat.CSV), any()))
+                .thenAnswer(invocation -> {
+                    OutputStream out = invocation.getArgument(2, TransactionExportService.ExportTarget.class).open();
+                    out.write("transactionId\nTXN123456\n".getBytes(StandardCharsets.UTF_8));
+                    return 1L;
+                });
+
+        mockMvc.perform(get("/api/transactions/export")
+                        .param("format", "CSV"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("text/csv"))
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"transactions.csv\""))
+                .andExpect(content().string("transactionId\nTXN123456\n"));
+
+        verify(transactionExportService).exportUserTransactions(eq(1L), eq(TransactionExportFormat.CSV), any());
+    }
+
+    @Test
+    @WithMockUser(roles = "USER")
+    void exportUserTransactions_ShouldDefaultToNdjson() throws Exception {
+        when(authService.getCurrentUserId()).thenReturn(1L);
+        when(transactionExportService.exportUserTransactions(eq(1L), eq(TransactionExportFormat.NDJSON), any()))
+                .thenAnswer(invocation -> {
+                    invocation.getArgument(2, TransactionExportService.ExportTarget.class).open();
+                    return 0L;
+                });
+
+        mockMvc.perform(get("/api/transactions/export"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON));
+
+        verify(transactionExportService).exportUserTransactions(eq(1L), eq(TransactionExportFormat.NDJSON), any());
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "/api/transactions, , 0",
+            "/api/transactions, '', 0",
+            "/api/transactions, '', 101",
+            "/api/transactions/card/1, , 0",
+            "/api/transactions/card/1, '', 0",
+            "/api/transactions/card/1, , 101"
+    })
+    void getTransactions_WithSizeOutOfRange_ShouldReturnBadRequest(String path, String cursor, int size)
+            throws Exception {
+        // Ограничения параметров проверяются прокси @Validated, как в контексте Spring
+        ProxyFactory proxyFactory = new ProxyFactory(transactionController);
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAdvice(new MethodValidationInterceptor());
+        MockMvc validatingMockMvc = MockMvcBuilders.standaloneSetup(proxyFactory.getProxy())
+                .setControllerAdvice(new GlobalExceptionHandler(new ResponseUtil()))
+                .build();
+        when(authService.getCurrentUserId()).thenReturn(1L);
+
+        MockHttpServletRequestBuilder request = get(path).param("size", String.valueOf(size));
+        if (cursor != null) {
+            request.param("cursor", cursor);
+        }
+        validatingMockMvc.perform(request)
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Constraint violation"));
+
+        verifyNoInteractions(transactionService);
+    }
+}
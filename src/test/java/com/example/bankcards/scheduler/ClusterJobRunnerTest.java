@@ -0,0 +1,194 @@
+package com.example.bankcards.scheduler;
+
+import com.example.bankcards.entity.SchedulerLock;
+import com.example.bankcards.entity.SchedulerRun;
+import com.example.bankcards.entity.enums.SchedulerRunStatus;
+import com.example.bankcards.repository.SchedulerLockRepository;
+import com.example.bankcards.repository.SchedulerRunRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Аренда задач планировщика на H2: два экземпляра ClusterJobRunner с разными nodeId
+ * изображают два узла кластера, работающих с одной таблицей scheduler_locks.
+ */
+@DataJpaTest(showSql = false)
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ClusterJobRunnerTest {
+
+    private static final String JOB = "test-job";
+
+    @Autowired
+    private SchedulerLockRepository schedulerLockRepository;
+
+    @Autowired
+    private SchedulerRunRepository schedulerRunRepository;
+
+    private ClusterJobRunner nodeA;
+    private ClusterJobRunner nodeB;
+
+    @BeforeEach
+    void setUp() {
+        nodeA = runner("node-a", 600);
+        nodeB = runner("node-b", 600);
+    }
+
+    @AfterEach
+    void tearDown() {
+        nodeA.shutdown();
+        nodeB.shutdown();
+        schedulerRunRepository.deleteAll();
+        schedulerLockRepository.deleteAll();
+    }
+
+    @Test
+    void runExclusively_WhileLeaseHeld_ShouldSkipOnOtherNode() {
+        AtomicBoolean ranOnB = new AtomicBoolean();
+
+        boolean ranOnA = nodeA.runExclusively(JOB, () -> {
+            assertFalse(nodeB.runExclusively(JOB, () -> {
+                ranOnB.set(true);
+                return "b";
+            }));
+            return "done";
+        });
+
+        assertTrue(ranOnA);
+        assertFalse(ranOnB.get());
+        List<SchedulerRun> runs = schedulerRunRepository.findByJobNameOrderByStartedAtDesc(JOB);
+        assertEquals(1, runs.size());
+        assertEquals("node-a", runs.get(0).getNodeId());
+        assertEquals(SchedulerRunStatus.SUCCEEDED, runs.get(0).getStatus());
+        assertEquals("done", runs.get(0).getDetails());
+        assertNotNull(runs.get(0).getFinishedAt());
+    }
+
+    @Test
+    void runExclusively_RightAfterRunOnOtherNode_ShouldNotRepeatJob() {
+        nodeA.runExclusively(JOB, () -> "done");
+
+        assertFalse(nodeB.runExclusively(JOB, () -> "again"));
+        assertEquals(1, schedulerRunRepository.findByJobNameOrderByStartedAtDesc(JOB).size());
+    }
+
+    @Test
+    void runExclusively_AfterHolderDied_ShouldTakeOverAndAbandonItsRun() {
+        LocalDateTime crashedAt = LocalDateTime.now().minusHours(1);
+        schedulerLockRepository.save(SchedulerLock.builder()
+                .jobName(JOB)
+                .lockedBy("dead-node")
+                .lockedAt(crashedAt)
+                .lockedUntil(crashedAt.plusMinutes(10))
+                .build());
+        schedulerRunRepository.save(SchedulerRun.builder()
+                .jobName(JOB)
+                .nodeId("dead-node")
+                .status(SchedulerRunStatus.RUNNING)
+                .startedAt(crashedAt)
+                .build());
+
+        assertTrue(nodeB.runExclusively(JOB, () -> "recovered"));
+
+        List<SchedulerRun> runs = schedulerRunRepository.findByJobNameOrderByStartedAtDesc(JOB);
+        assertEquals(2, runs.size());
+        assertEquals(SchedulerRunStatus.SUCCEEDED, runs.get(0).getStatus());
+        assertEquals("node-b", runs.get(0).getNodeId());
+        assertEquals(SchedulerRunStatus.ABANDONED, runs.get(1).getStatus());
+        assertNotNull(runs.get(1).getFinishedAt());
+        assertEquals("node-b", schedulerLockRepository.findById(JOB).orElseThrow().getLockedBy());
+    }
+
+    @Test
+    void runExclusively_WhenJobFails_ShouldRecordFailureAndKeepLease() {
+        IllegalStateException failure = assertThrows(IllegalStateException.class,
+                () -> nodeA.runExclusively(JOB, () -> {
+                    throw new IllegalStateException("boom");
+                }));
+
+        assertEquals("boom", failure.getMessage());
+        SchedulerRun run = schedulerRunRepository.findByJobNameOrderByStartedAtDesc(JOB).get(0);
+        assertEquals(SchedulerRunStatus.FAILED, run.getStatus());
+        assertEquals("boom", run.getDetails());
+        assertFalse(nodeB.runExclusively(JOB, () -> "again"));
+    }
+
+    @Test
+    void runExclusively_LongJob_ShouldRenewLease() {
+        ClusterJobRunner shortLease = runner("node-short", 1);
+        try {
+            assertTrue(shortLease.runExclusively(JOB, () -> {
+                sleep(1_500);
+                assertFalse(nodeB.runExclusively(JOB, () -> "stolen"));
+                return "done";
+            }));
+        } finally {
+            shortLease.shutdown();
+        }
+        assertEquals(1, schedulerRunRepository.findByJobNameOrderByStartedAtDesc(JOB).size());
+    }
+
+    @Test
+    void runExclusively_WhenLeaseTakenOver_ShouldSignalJobAndRecordAbandonedRun() {
+        ClusterJobRunner shortLease = runner("node-short", 1);
+        try {
+            boolean completed = shortLease.runExclusively(JOB, lease -> {
+                SchedulerLock lock = schedulerLockRepository.findById(JOB).orElseThrow();
+                lock.setLockedBy("node-b");
+                schedulerLockRepository.save(lock);
+                long deadline = System.currentTimeMillis() + 5_000;
+                while (!lease.isLost() && System.currentTimeMillis() < deadline) {
+                    sleep(50);
+                }
+                assertTrue(lease.isLost());
+                return "stopped";
+            });
+
+            assertFalse(completed);
+        } finally {
+            shortLease.shutdown();
+        }
+        SchedulerRun run = schedulerRunRepository.findByJobNameOrderByStartedAtDesc(JOB).get(0);
+        assertEquals(SchedulerRunStatus.ABANDONED, run.getStatus());
+        assertEquals("stopped", run.getDetails());
+        assertEquals("node-b", schedulerLockRepository.findById(JOB).orElseThrow().getLockedBy());
+    }
+
+    @Test
+    void runExclusively_ShouldTakeLeaseTimesFromDatabaseClock() {
+        nodeA.runExclusively(JOB, () -> {
+            SchedulerLock lock = schedulerLockRepository.findById(JOB).orElseThrow();
+            assertEquals(Duration.ofSeconds(600), Duration.between(lock.getLockedAt(), lock.getLockedUntil()));
+            return "done";
+        });
+
+        SchedulerLock released = schedulerLockRepository.findById(JOB).orElseThrow();
+        assertEquals(Duration.ofSeconds(60), Duration.between(released.getLockedAt(), released.getLockedUntil()));
+    }
+
+    private ClusterJobRunner runner(String nodeId, long leaseSeconds) {
+        return new ClusterJobRunner(schedulerLockRepository, schedulerRunRepository, nodeId, leaseSeconds, 60);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
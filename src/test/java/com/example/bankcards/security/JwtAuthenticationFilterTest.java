@@ -0,0 +1,162 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.Role;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.TokenRevocationService;
+import com.example.bankcards.service.UserDetailsServiceImpl;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class JwtAuthenticationFilterTest {
+
+    @Mock
+    private UserDetailsServiceImpl userDetailsService;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private FilterChain filterChain;
+
+    @Mock
+    private TokenRevocationService tokenRevocationService;
+
+    private JwtAuthenticationFilter filter;
+    private UserRevocationRegistry revocationRegistry;
+    private UserEventBus userEventBus;
+    private String token;
+
+    @BeforeEach
+    void setUp() {
+        SecurityContextHolder.clearContext();
+        JwtTokenProvider tokenProvider =
+                new JwtTokenProvider("YWJjZGVmZ2hpamtsbW5vcHFyc3R1dnd4eXowMTIzNDU2Nzg5", 60000L, 100);
+
+        userEventBus = new InProcessUserEventBus();
+        revocationRegistry = new UserRevocationRegistry(userRepository, userEventBus);
+        ReflectionTestUtils.setField(revocationRegistry, "jwtExpirationMs", 60000L);
+        revocationRegistry.subscribe();
+
+        filter = new JwtAuthenticationFilter(tokenProvider, userDetailsService, revocationRegistry,
+                tokenRevocationService);
+        ReflectionTestUtils.setField(filter, "authMode", JwtAuthMode.STATELESS);
+
+        User user = User.builder()
+                .id(7L)
+                .username("testuser")
+                .password("encoded")
+                .email("test@example.com")
+                .role(Role.ADMIN)
+                .enabled(true)
+                .build();
+        UserPrincipal principal = UserPrincipal.create(user);
+        token = tokenProvider.generateToken(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+        when(userDetailsService.loadUserByUsername("testuser")).thenReturn(principal);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void stateless_ShouldBuildPrincipalFromClaimsWithoutDatabase() throws Exception {
+        filter.doFilter(request(token), new MockHttpServletResponse(), filterChain);
+
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        assertNotNull(authentication);
+        UserPrincipal principal = (UserPrincipal) authentication.getPrincipal();
+        assertEquals(7L, principal.getId());
+        assertEquals("testuser", principal.getUsername());
+        assertEquals("ROLE_ADMIN", principal.getAuthorities().iterator().next().getAuthority());
+        verifyNoInteractions(userDetailsService);
+        verify(filterChain).doFilter(any(), any());
+    }
+
+    @Test
+    void stateless_ShouldRejectDisabledUser() throws Exception {
+        when(userRepository.findDisabledUserIds()).thenReturn(List.of(7L));
+        revocationRegistry.refresh();
+
+        filter.doFilter(request(token), new MockHttpServletResponse(), filterChain);
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        verify(filterChain).doFilter(any(), any());
+    }
+
+    @Test
+    void stateless_ShouldRejectTokensIssuedBeforeRevocation() throws Exception {
+        Thread.sleep(1000);
+        userEventBus.publish(new UserChangeEvent(7L, "testuser", UserChangeEvent.Type.ROLE_CHANGED));
+
+        filter.doFilter(request(token), new MockHttpServletResponse(), filterChain);
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+    }
+
+    @Test
+    void stateless_ShouldRejectUserDisabledOnThisNodeImmediately() throws Exception {
+        userEventBus.publish(new UserChangeEvent(7L, "testuser", UserChangeEvent.Type.DISABLED));
+
+        filter.doFilter(request(token), new MockHttpServletResponse(), filterChain);
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+    }
+
+    @Test
+    void shouldRejectRevokedToken() throws Exception {
+        when(tokenRevocationService.isRevoked(anyString())).thenReturn(true);
+
+        filter.doFilter(request(token), new MockHttpServletResponse(), filterChain);
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        verify(filterChain).doFilter(any(), any());
+    }
+
+    @Test
+    void databaseMode_ShouldLoadUser() throws Exception {
+        ReflectionTestUtils.setField(filter, "authMode", JwtAuthMode.DATABASE);
+
+        filter.doFilter(request(token), new MockHttpServletResponse(), filterChain);
+
+        assertNotNull(SecurityContextHolder.getContext().getAuthentication());
+        verify(userDetailsService).loadUserByUsername("testuser");
+    }
+
+    @Test
+    void invalidToken_ShouldLeaveRequestAnonymous() throws Exception {
+        filter.doFilter(request(token + "x"), new MockHttpServletResponse(), filterChain);
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        verify(filterChain).doFilter(any(), any());
+    }
+
+    private MockHttpServletRequest request(String jwt) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer " + jwt);
+        return request;
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.Role;
+import io.jsonwebtoken.Claims;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtTokenProviderTest {
+
+    private static final String SECRET = "YWJjZGVmZ2hpamtsbW5vcHFyc3R1dnd4eXowMTIzNDU2Nzg5";
+
+    @Test
+    void parseClaims_ShouldReturnCachedClaimsForRepeatedToken() {
+        JwtTokenProvider tokenProvider = new JwtTokenProvider(SECRET, 60000L, 100);
+        String token = tokenProvider.generateToken(authentication());
+
+        Claims first = tokenProvider.parseClaims(token);
+        Claims second = tokenProvider.parseClaims(token);
+
+        assertNotNull(first);
+        assertSame(first, second);
+        assertEquals("testuser", tokenProvider.getUsernameFromToken(token));
+        assertEquals(7, first.get("id", Number.class).intValue());
+    }
+
+    @Test
+    void parseClaims_ShouldRejectTamperedAndForeignTokens() {
+        JwtTokenProvider tokenProvider = new JwtTokenProvider(SECRET, 60000L, 100);
+        String token = tokenProvider.generateToken(authentication());
+        tokenProvider.parseClaims(token);
+
+        JwtTokenProvider otherProvider = new JwtTokenProvider(
+                "b3RoZXJzZWNyZXRvdGhlcnNlY3JldG90aGVyc2VjcmV0b3RoZXI=", 60000L, 100);
+
+        assertNull(tokenProvider.parseClaims(token.substring(0, token.length() - 2) + "xx"));
+        assertNull(otherProvider.parseClaims(token));
+        assertFalse(tokenProvider.validateToken(""));
+    }
+
+    @Test
+    void parseClaims_ShouldNotServeExpiredTokenFromCache() throws InterruptedException {
+        JwtTokenProvider tokenProvider = new JwtTokenProvider(SECRET, 1000L, 100);
+        String token = tokenProvider.generateToken(authentication());
+        assertTrue(tokenProvider.validateToken(token));
+
+        Thread.sleep(2000);
+
+        assertFalse(tokenProvider.validateToken(token));
+    }
+
+    private UsernamePasswordAuthenticationToken authentication() {
+        UserPrincipal principal = UserPrincipal.create(User.builder()
+                .id(7L)
+                .username("testuser")
+                .password("encoded")
+                .role(Role.USER)
+                .enabled(true)
+                .build());
+        return new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities());
+    }
+}
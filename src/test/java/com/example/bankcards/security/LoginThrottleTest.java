@@ -0,0 +1,51 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.exception.TooManyRequestsException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoginThrottleTest {
+
+    private LoginThrottle loginThrottle;
+
+    @BeforeEach
+    void setUp() {
+        loginThrottle = new LoginThrottle(3, 5, 900, 1000);
+    }
+
+    @Test
+    void checkAllowed_AfterUsernameFailures_ShouldRejectWithRetryAfter() {
+        for (int i = 0; i < 3; i++) {
+            assertDoesNotThrow(() -> loginThrottle.checkAllowed("alice", "10.0.0.1"));
+            loginThrottle.recordFailure("alice", "10.0.0.1");
+        }
+
+        TooManyRequestsException exception = assertThrows(TooManyRequestsException.class,
+                () -> loginThrottle.checkAllowed("alice", "10.0.0.2"));
+        assertTrue(exception.getRetryAfterSeconds() > 0 && exception.getRetryAfterSeconds() <= 900);
+        assertDoesNotThrow(() -> loginThrottle.checkAllowed("bob", "10.0.0.2"));
+    }
+
+    @Test
+    void checkAllowed_AfterIpFailuresAcrossUsers_ShouldRejectAddress() {
+        for (int i = 0; i < 5; i++) {
+            loginThrottle.recordFailure("user" + i, "10.0.0.1");
+        }
+
+        assertThrows(TooManyRequestsException.class, () -> loginThrottle.checkAllowed("other", "10.0.0.1"));
+        assertDoesNotThrow(() -> loginThrottle.checkAllowed("other", "10.0.0.2"));
+    }
+
+    @Test
+    void recordSuccess_ShouldResetUsernameFailures() {
+        loginThrottle.recordFailure("alice", "10.0.0.1");
+        loginThrottle.recordFailure("alice", "10.0.0.2");
+        loginThrottle.recordSuccess("alice");
+        loginThrottle.recordFailure("alice", "10.0.0.3");
+        loginThrottle.recordFailure("alice", "10.0.0.4");
+
+        assertDoesNotThrow(() -> loginThrottle.checkAllowed("alice", "10.0.0.5"));
+    }
+}
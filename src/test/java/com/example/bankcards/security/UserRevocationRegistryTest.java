@@ -0,0 +1,98 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class UserRevocationRegistryTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    private UserEventBus userEventBus;
+    private UserRevocationRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        userEventBus = new InProcessUserEventBus();
+        registry = new UserRevocationRegistry(userRepository, userEventBus);
+        ReflectionTestUtils.setField(registry, "jwtExpirationMs", 900_000L);
+        registry.subscribe();
+        when(userRepository.findDisabledUserIds()).thenReturn(List.of());
+        when(userRepository.findTokenCutoffsAfter(any())).thenReturn(List.of());
+    }
+
+    @Test
+    void refresh_ShouldRevokeTokensIssuedBeforePersistedCutoff() {
+        // Смена роли записана другим узлом: на этом узле события не было
+        when(userRepository.findTokenCutoffsAfter(any())).thenReturn(List.of(cutoff(7L, LocalDateTime.now())));
+
+        registry.refresh();
+
+        assertTrue(registry.isRevoked(7L, secondsFromNow(-60)));
+        assertFalse(registry.isRevoked(7L, secondsFromNow(60)));
+        assertFalse(registry.isRevoked(8L, secondsFromNow(-60)));
+    }
+
+    @Test
+    void refresh_ShouldKeepDisableEventArrivingDuringRead() {
+        when(userRepository.findDisabledUserIds()).thenAnswer(inv -> {
+            userEventBus.publish(new UserChangeEvent(7L, "testuser", UserChangeEvent.Type.DISABLED));
+            return List.of();
+        });
+
+        registry.refresh();
+
+        assertTrue(registry.isRevoked(7L, new Date()));
+    }
+
+    @Test
+    void refresh_ShouldApplyDatabaseStateOnceEventIsOlderThanRead() {
+        userEventBus.publish(new UserChangeEvent(7L, "testuser", UserChangeEvent.Type.DISABLED));
+        when(userRepository.findDisabledUserIds()).thenReturn(List.of());
+
+        registry.refresh();
+
+        assertFalse(registry.isRevoked(7L, new Date()));
+    }
+
+    @Test
+    void refresh_ShouldNotLowerCutoffSetByEvent() {
+        Date issuedJustBefore = secondsFromNow(-1);
+        userEventBus.publish(new UserChangeEvent(7L, "testuser", UserChangeEvent.Type.ROLE_CHANGED));
+        when(userRepository.findTokenCutoffsAfter(any()))
+                .thenReturn(List.of(cutoff(7L, LocalDateTime.now().minusMinutes(5))));
+
+        registry.refresh();
+
+        assertTrue(registry.isRevoked(7L, issuedJustBefore));
+    }
+
+    private static Date secondsFromNow(long seconds) {
+        return Date.from(Instant.now().plusSeconds(seconds));
+    }
+
+    private static UserRepository.TokenCutoff cutoff(Long userId, LocalDateTime revokedBefore) {
+        return new SpelAwareProxyProjectionFactory().createProjection(UserRepository.TokenCutoff.class,
+                Map.of("userId", userId, "revokedBefore", revokedBefore));
+    }
+}
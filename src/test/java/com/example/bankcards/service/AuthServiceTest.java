@@ -2,8 +2,14 @@ package com.example.bankcards.service;
 
 import com.example.bankcards.dto.AuthDTO;
 import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.Role;
+import com.example.bankcards.exception.TooManyRequestsException;
+import com.example.bankcards.exception.UserOperationException;
 import com.example.bankcards.security.JwtTokenProvider;
+import com.example.bankcards.security.LoginThrottle;
 import com.example.bankcards.security.UserPrincipal;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -12,6 +18,7 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
@@ -21,7 +28,9 @@ import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 
 import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -40,6 +49,15 @@ class AuthServiceTest {
     @Mock
     private UserService userService;
 
+    @Mock
+    private TokenRevocationService tokenRevocationService;
+
+    @Mock
+    private RefreshTokenService refreshTokenService;
+
+    @Mock
+    private LoginThrottle loginThrottle;
+
     @InjectMocks
     private AuthService authService;
 
@@ -83,6 +101,7 @@ class AuthServiceTest {
 
         authentication = mock(Authentication.class);
         when(authentication.getPrincipal()).thenReturn(userPrincipal);
+        when(refreshTokenService.issue(1L)).thenReturn("refresh-token");
     }
 
     @Test
@@ -96,7 +115,7 @@ class AuthServiceTest {
         when(securityContext.getAuthentication()).thenReturn(authentication);
         SecurityContextHolder.setContext(securityContext);
 
-        AuthDTO.JwtResponse result = authService.authenticateUser(loginRequest);
+        AuthDTO.JwtResponse result = authService.authenticateUser(loginRequest, "127.0.0.1");
 
         assertNotNull(result);
         assertEquals("jwt.token.here", result.getToken());
@@ -104,6 +123,7 @@ class AuthServiceTest {
         assertEquals("testuser", result.getUsername());
         assertEquals("test@example.com", result.getEmail());
         assertEquals("ROLE_USER", result.getRole());
+        assertEquals("refresh-token", result.getRefreshToken());
 
         verify(authenticationManager).authenticate(argThat(token ->
                 token.getPrincipal().equals("testuser") &&
@@ -170,7 +190,7 @@ class AuthServiceTest {
         SecurityContext securityContext = mock(SecurityContext.class);
         SecurityContextHolder.setContext(securityContext);
 
-        authService.authenticateUser(loginRequest);
+        authService.authenticateUser(loginRequest, "127.0.0.1");
 
         verify(securityContext).setAuthentication(authentication);
     }
@@ -181,7 +201,32 @@ class AuthServiceTest {
                 .thenThrow(new org.springframework.security.authentication.BadCredentialsException("Invalid credentials"));
 
         assertThrows(org.springframework.security.authentication.BadCredentialsException.class,
-                () -> authService.authenticateUser(loginRequest));
+                () -> authService.authenticateUser(loginRequest, "127.0.0.1"));
+        verify(loginThrottle).recordFailure("testuser", "127.0.0.1");
+        verify(loginThrottle, never()).recordSuccess(any());
+    }
+
+    @Test
+    void authenticateUser_WhenThrottled_ShouldNotCheckPassword() {
+        doThrow(new TooManyRequestsException("Too many login attempts", "user", 60))
+                .when(loginThrottle).checkAllowed("testuser", "127.0.0.1");
+
+        assertThrows(TooManyRequestsException.class,
+                () -> authService.authenticateUser(loginRequest, "127.0.0.1"));
+        verifyNoInteractions(authenticationManager);
+    }
+
+    @Test
+    void authenticateUser_OnSuccess_ShouldResetUsernameFailures() {
+        when(authenticationManager.authenticate(any(UsernamePasswordAuthenticationToken.class)))
+                .thenReturn(authentication);
+        when(tokenProvider.generateToken(authentication)).thenReturn("jwt.token.here");
+        SecurityContextHolder.setContext(mock(SecurityContext.class));
+
+        authService.authenticateUser(loginRequest, "127.0.0.1");
+
+        verify(loginThrottle).checkAllowed("testuser", "127.0.0.1");
+        verify(loginThrottle).recordSuccess("testuser");
     }
 
     @Test
@@ -205,4 +250,88 @@ class AuthServiceTest {
                         request.getEmail().equals("john@example.com")
         ));
     }
-}
\ No newline at end of file
+
+    @Test
+    void logout_ShouldRevokeTokenByJti() {
+        Date expiration = new Date(System.currentTimeMillis() + 60000);
+        Claims claims = Jwts.claims().setSubject("testuser");
+        claims.setId("jti-1");
+        claims.setExpiration(expiration);
+        claims.put("id", 1);
+        when(tokenProvider.parseClaims("jwt.token.here")).thenReturn(claims);
+
+        authService.logout("jwt.token.here", "refresh-token");
+
+        verify(tokenRevocationService).revoke("jti-1", 1L, claims.getExpiration());
+        verify(refreshTokenService).revoke("refresh-token");
+    }
+
+    @Test
+    void logout_WithInvalidToken_ShouldDoNothing() {
+        when(tokenProvider.parseClaims("broken")).thenReturn(null);
+
+        authService.logout("broken", null);
+
+        verifyNoInteractions(tokenRevocationService);
+        verifyNoInteractions(refreshTokenService);
+    }
+
+    @Test
+    void refresh_ShouldIssueTokensWithoutPasswordCheck() {
+        User user = User.builder()
+                .id(1L)
+                .username("testuser")
+                .email("test@example.com")
+                .role(Role.USER)
+                .enabled(true)
+                .build();
+        when(refreshTokenService.rotate("old-refresh"))
+                .thenReturn(new RefreshTokenService.Rotation(1L, "new-refresh"));
+        when(userService.findUserById(1L)).thenReturn(Optional.of(user));
+        when(tokenProvider.generateToken(any(Authentication.class))).thenReturn("jwt.token.here");
+
+        AuthDTO.JwtResponse result = authService.refresh("old-refresh");
+
+        assertEquals("jwt.token.here", result.getToken());
+        assertEquals("new-refresh", result.getRefreshToken());
+        assertEquals("testuser", result.getUsername());
+        verify(tokenProvider).generateToken(argThat(auth ->
+                ((UserPrincipal) auth.getPrincipal()).getId().equals(1L)));
+        verifyNoInteractions(authenticationManager);
+    }
+
+    @Test
+    void refresh_WhenUserIsDeleted_ShouldRevokeAndReturnUnauthorized() {
+        when(refreshTokenService.rotate("old-refresh"))
+                .thenReturn(new RefreshTokenService.Rotation(1L, "new-refresh"));
+        when(userService.findUserById(1L)).thenReturn(Optional.empty());
+
+        UserOperationException exception = assertThrows(UserOperationException.class,
+                () -> authService.refresh("old-refresh"));
+
+        assertEquals(HttpStatus.UNAUTHORIZED, exception.getStatus());
+        verify(refreshTokenService).revoke("new-refresh");
+        verifyNoInteractions(tokenProvider);
+    }
+
+    @Test
+    void refresh_WhenUserIsDisabled_ShouldRevokeAndReturnUnauthorized() {
+        User disabledUser = User.builder()
+                .id(1L)
+                .username("testuser")
+                .role(Role.USER)
+                .enabled(false)
+                .build();
+        when(refreshTokenService.rotate("old-refresh"))
+                .thenReturn(new RefreshTokenService.Rotation(1L, "new-refresh"));
+        when(userService.findUserById(1L)).thenReturn(Optional.of(disabledUser));
+
+        UserOperationException exception = assertThrows(UserOperationException.class,
+                () -> authService.refresh("old-refresh"));
+
+        assertEquals(HttpStatus.UNAUTHORIZED, exception.getStatus());
+        assertEquals("Invalid refresh token", exception.getMessage());
+        verify(refreshTokenService).revoke("new-refresh");
+        verifyNoInteractions(tokenProvider);
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardDTO;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.entity.enums.Role;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Порционная проверка истекших карт на H2: каждая порция фиксируется отдельно,
+ * уже помеченные EXPIRED карты и карты с действующим сроком не трогаются.
+ */
+@DataJpaTest(showSql = false)
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CardExpirationUpdateTest {
+
+    private static final long FIRST_ID = 70_000_000L;
+    private static final int ALREADY_EXPIRED = 500;
+    private static final int NEWLY_EXPIRED = 45;
+    private static final int VALID = 300;
+    private static final int CHUNK_SIZE = 20;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private CardService cardService;
+    private User owner;
+
+    @BeforeEach
+    void setUp() {
+        owner = userRepository.save(User.builder()
+                .username("expiration-user")
+                .password("secret")
+                .firstName("Expiration")
+                .lastName("User")
+                .email("expiration-user@bank.com")
+                .role(Role.USER)
+                .enabled(true)
+                .build());
+
+        LocalDate today = LocalDate.now();
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < ALREADY_EXPIRED; i++) {
+            rows.add(row(rows.size(), today.minusYears(1), CardStatus.EXPIRED));
+        }
+        for (int i = 0; i < VALID + NEWLY_EXPIRED; i++) {
+            // истекшие карты перемешаны с действующими, чтобы диапазоны id порций содержали и те, и другие
+            boolean expired = i % 7 == 0 && i / 7 < NEWLY_EXPIRED;
+            CardStatus status = expired && i % 2 == 0 ? CardStatus.BLOCKED : CardStatus.ACTIVE;
+            rows.add(row(rows.size(), expired ? today.minusDays(1) : today.plusYears(1), status));
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO cards (id, card_number, card_number_hash, masked_number, last_four, "
+                + "owner_name, expiry_date, cvv, balance, status, user_id, created_at, version) "
+                + "VALUES (?, ?, ?, '**** **** **** 0000', '0000', 'EXPIRATION USER', ?, 'cvv', 0, ?, ?, ?, 0)", rows);
+
+        cardService = new CardService(cardRepository, userRepository, null, null, null, null);
+        ReflectionTestUtils.setField(cardService, "expirationChunkSize", CHUNK_SIZE);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM cards WHERE id >= ?", FIRST_ID);
+        userRepository.delete(owner);
+    }
+
+    @Test
+    void updateExpiredCardsStatus_ShouldExpireOnlyNewlyExpiredCardsInChunks() {
+        CardDTO.ExpirationResult result = cardService.updateExpiredCardsStatus();
+
+        assertEquals(NEWLY_EXPIRED, result.getExpiredCards());
+        assertEquals((NEWLY_EXPIRED + CHUNK_SIZE - 1) / CHUNK_SIZE, result.getChunks());
+        assertEquals(ALREADY_EXPIRED + NEWLY_EXPIRED, countByStatus(CardStatus.EXPIRED));
+        assertEquals(0, countByStatus(CardStatus.BLOCKED));
+        assertEquals(NEWLY_EXPIRED, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM cards WHERE id >= ? "
+                + "AND version = 1", Integer.class, FIRST_ID));
+    }
+
+    @Test
+    void updateExpiredCardsStatus_SecondRun_ShouldFindNothing() {
+        cardService.updateExpiredCardsStatus();
+
+        CardDTO.ExpirationResult result = cardService.updateExpiredCardsStatus();
+
+        assertEquals(0, result.getExpiredCards());
+        assertEquals(0, result.getChunks());
+    }
+
+    private int countByStatus(CardStatus status) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM cards WHERE id >= ? AND status = ?",
+                Integer.class, FIRST_ID, status.name());
+    }
+
+    private Object[] row(int index, LocalDate expiryDate, CardStatus status) {
+        long id = FIRST_ID + index;
+        return new Object[]{id, "number-" + id, "hash-" + id, Date.valueOf(expiryDate), status.name(),
+                owner.getId(), Timestamp.valueOf(LocalDateTime.now())};
+    }
+}
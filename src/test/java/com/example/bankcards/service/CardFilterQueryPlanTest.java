@@ -0,0 +1,179 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.entity.enums.Role;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.CardRepository.CardView;
+import com.example.bankcards.repository.UserRepository;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * План фильтра карт по последним цифрам на H2 при большом числе карт у одного владельца.
+ * Подстрока masked_number LIKE '%1234%' не может быть условием индекса, и перебираются все карты
+ * владельца с нужным статусом; точное равенство по last_four ищется по индексу (user_id, status, last_four).
+ */
+@DataJpaTest(showSql = false)
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class CardFilterQueryPlanTest {
+
+    private static final int HEAVY_USER_CARDS = 50_000;
+    private static final int OTHER_USERS = 10;
+    private static final int OTHER_USER_CARDS = 1_000;
+    private static final long FIRST_ID = 60_000_000L;
+    private static final String LAST_FOUR = "0042";
+
+    private static final String LEGACY_QUERY = "SELECT c.id FROM cards c WHERE c.user_id = :userId"
+            + " AND c.status = :status AND c.masked_number LIKE :pattern";
+
+    private static final String EXACT_QUERY = "SELECT c.id FROM cards c WHERE c.user_id = :userId"
+            + " AND c.status = :status AND c.last_four = :lastFour";
+
+    private static final Pattern SCAN_COUNT = Pattern.compile("scanCount: (\\d+)");
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    private final List<User> users = new ArrayList<>();
+    private User heavyUser;
+
+    @BeforeAll
+    void setUp() {
+        List<Object[]> rows = new ArrayList<>();
+        heavyUser = user("heavy");
+        for (int i = 0; i < HEAVY_USER_CARDS; i++) {
+            CardStatus status = i % 10 == 0 ? CardStatus.BLOCKED : CardStatus.ACTIVE;
+            rows.add(row(rows.size(), heavyUser.getId(), status, String.format("%04d", i % 10_000)));
+        }
+        for (int u = 0; u < OTHER_USERS; u++) {
+            User other = user("other" + u);
+            for (int i = 0; i < OTHER_USER_CARDS; i++) {
+                rows.add(row(rows.size(), other.getId(), CardStatus.ACTIVE, String.format("%04d", i)));
+            }
+        }
+
+        jdbcTemplate.batchUpdate("INSERT INTO cards (id, card_number, card_number_hash, masked_number, last_four, "
+                + "owner_name, expiry_date, cvv, balance, status, user_id, created_at, version) "
+                + "VALUES (?, ?, ?, ?, ?, 'PLAN USER', ?, 'cvv', 0, ?, ?, ?, 0)", rows);
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    @AfterAll
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM cards WHERE id >= ?", FIRST_ID);
+        userRepository.deleteAll(users);
+    }
+
+    @Test
+    void exactLastFourFilter_ShouldSeekCompositeIndex() {
+        String plan = explain(EXACT_QUERY);
+
+        assertTrue(plan.contains("IDX_CARDS_USER_STATUS_LAST_FOUR"), plan);
+        assertTrue(plan.contains("LAST_FOUR = "), plan);
+        assertFalse(plan.contains("TABLESCAN"), plan);
+    }
+
+    @Test
+    void exactLastFourFilter_ShouldScanFarFewerRowsThanSubstringFilter() {
+        String legacy = explain(LEGACY_QUERY);
+        String exact = explain(EXACT_QUERY);
+
+        long legacyScanned = scanCount(legacy);
+        long exactScanned = scanCount(exact);
+
+        assertTrue(legacyScanned >= HEAVY_USER_CARDS * 9 / 10, legacy);
+        assertTrue(exactScanned * 100 < legacyScanned, exact);
+    }
+
+    @Test
+    void exactLastFourFilter_ShouldReturnSameCardsAsSuffixMatch() {
+        List<Long> expected = namedJdbcTemplate.queryForList(LEGACY_QUERY + " ORDER BY c.id",
+                params().addValue("pattern", "%" + LAST_FOUR), Long.class);
+
+        List<Long> actual = cardRepository.findViewsByOwnerIdAndStatusAndLastFour(heavyUser.getId(),
+                        CardStatus.ACTIVE, LAST_FOUR, PageRequest.of(0, 100, Sort.by("id")))
+                .map(CardView::getId)
+                .getContent();
+
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, actual);
+    }
+
+    private String explain(String sql) {
+        MapSqlParameterSource params = params().addValue("pattern", "%" + LAST_FOUR + "%");
+        return String.join("\n", namedJdbcTemplate.queryForList("EXPLAIN ANALYZE " + sql, params, String.class));
+    }
+
+    private MapSqlParameterSource params() {
+        return new MapSqlParameterSource()
+                .addValue("userId", heavyUser.getId())
+                .addValue("status", CardStatus.ACTIVE.name())
+                .addValue("lastFour", LAST_FOUR);
+    }
+
+    private long scanCount(String plan) {
+        Matcher matcher = SCAN_COUNT.matcher(plan);
+        long total = 0;
+        while (matcher.find()) {
+            total += Long.parseLong(matcher.group(1));
+        }
+        return total;
+    }
+
+    private Object[] row(int index, Long userId, CardStatus status, String lastFour) {
+        long id = FIRST_ID + index;
+        return new Object[]{id, "number-" + id, "hash-" + id, "**** **** **** " + lastFour, lastFour,
+                Date.valueOf(LocalDate.now().plusYears(2)), status.name(), userId,
+                Timestamp.valueOf(LocalDateTime.now())};
+    }
+
+    private User user(String name) {
+        User user = userRepository.save(User.builder()
+                .username("cards-plan-" + name)
+                .password("secret")
+                .firstName("Plan")
+                .lastName("User")
+                .email("cards-plan-" + name + "@bank.com")
+                .role(Role.USER)
+                .enabled(true)
+                .build());
+        users.add(user);
+        return user;
+    }
+}
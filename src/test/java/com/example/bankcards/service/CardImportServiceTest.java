@@ -0,0 +1,207 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardDTO;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.Role;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.util.CardNumberGenerator;
+import com.example.bankcards.util.EncryptionUtil;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Массовый импорт карт на H2 через полный контекст: разбор CSV/NDJSON, параллельная подготовка,
+ * отсев дубликатов и пакетная вставка порциями.
+ */
+@SpringBootTest
+@AutoConfigureTestDatabase
+@ActiveProfiles("test")
+class CardImportServiceTest {
+
+    private static final String HEADER = "cardNumber,ownerName,expiryDate,cvv,userId,initialBalance";
+    private static final String EXPIRY = YearMonth.now().plusYears(2).format(DateTimeFormatter.ofPattern("MM/yy"));
+
+    @Autowired
+    private CardImportService cardImportService;
+
+    @Autowired
+    private CardService cardService;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CardNumberGenerator cardNumberGenerator;
+
+    @Autowired
+    private EncryptionUtil encryptionUtil;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private User owner;
+
+    @BeforeEach
+    void setUp() {
+        owner = userRepository.save(User.builder()
+                .username("import-owner")
+                .password("secret")
+                .firstName("Import")
+                .lastName("Owner")
+                .email("import-owner@bank.com")
+                .role(Role.USER)
+                .enabled(true)
+                .build());
+        ReflectionTestUtils.setField(cardImportService, "chunkSize", 3);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReflectionTestUtils.setField(cardImportService, "chunkSize", 1000);
+        cardRepository.deleteAllById(cardRepository.findIdsByOwnerId(owner.getId()));
+        userRepository.delete(owner);
+    }
+
+    @Test
+    void importCards_FromCsv_ShouldCreateValidRowsAndReportRowErrors() throws Exception {
+        String first = cardNumberGenerator.generateCardNumber(null);
+        String second = cardNumberGenerator.generateCardNumber(null);
+        String existing = cardNumberGenerator.generateCardNumber(null);
+        cardService.createCard(CardDTO.CreateRequest.builder()
+                .cardNumber(existing)
+                .ownerName("EXISTING")
+                .expiryDate(YearMonth.now().plusYears(2).atDay(1))
+                .cvv("111")
+                .userId(owner.getId())
+                .build());
+
+        String csv = String.join("\n",
+                HEADER,
+                row(first, "\"IVANOV, IVAN\"", owner.getId(), "250.00"),
+                row(first, "DUPLICATE", owner.getId(), ""),
+                row(invalidLuhn(second), "BAD LUHN", owner.getId(), ""),
+                "",
+                row(existing, "EXISTING AGAIN", owner.getId(), ""),
+                row(second, "PETROV", -1L, ""),
+                "1234,only-two-columns",
+                row(second, "PETROV", owner.getId(), ""));
+
+        List<JsonNode> lines = runImport(csv, CardImportFormat.CSV);
+
+        assertEquals(8, lines.size());
+        assertCreated(lines.get(0), 2);
+        assertFailed(lines.get(1), 3, "Duplicate card number in import");
+        assertFailed(lines.get(2), 4, "Invalid card number");
+        assertFailed(lines.get(3), 6, "Card with this number already exists");
+        assertFailed(lines.get(4), 7, "User not found with id: -1");
+        assertFailed(lines.get(5), 8, "Expected 6 columns but was 2");
+        assertCreated(lines.get(6), 9);
+        assertEquals(7, lines.get(7).get("total").asLong());
+        assertEquals(2, lines.get(7).get("created").asLong());
+        assertEquals(5, lines.get(7).get("failed").asLong());
+
+        Card imported = cardRepository.findByCardNumberHash(encryptionUtil.hash(first)).orElseThrow();
+        assertEquals("IVANOV, IVAN", imported.getOwnerName());
+        assertEquals(0, new BigDecimal("250.00").compareTo(imported.getBalance()));
+        assertEquals(first, encryptionUtil.decrypt(imported.getCardNumber()));
+        assertEquals(first.substring(12), imported.getLastFour());
+        assertEquals(lines.get(0).get("cardId").asLong(), imported.getId());
+    }
+
+    @Test
+    void importCards_FromNdjson_ShouldImportAcrossChunks() throws Exception {
+        List<String> numbers = IntStream.range(0, 10)
+                .mapToObj(i -> cardNumberGenerator.generateCardNumber(null))
+                .toList();
+        List<String> rows = new ArrayList<>();
+        for (String number : numbers) {
+            rows.add(json(number, EXPIRY));
+        }
+        rows.add(json(cardNumberGenerator.generateCardNumber(null), "2027-01-01"));
+        rows.add(json(numbers.get(0), EXPIRY));
+
+        List<JsonNode> lines = runImport(String.join("\n", rows), CardImportFormat.NDJSON);
+
+        assertEquals(13, lines.size());
+        for (int i = 0; i < numbers.size(); i++) {
+            assertCreated(lines.get(i), i + 1);
+        }
+        assertEquals("FAILED", lines.get(10).get("status").asText());
+        assertTrue(lines.get(10).get("error").asText().startsWith("Malformed row: "));
+        assertTrue(lines.get(10).get("error").asText().contains("Invalid date format. Use MM/yy"));
+        assertFailed(lines.get(11), 12, "Card with this number already exists");
+        assertEquals(10, lines.get(12).get("created").asLong());
+        assertEquals(numbers.size(), cardRepository.findExistingHashes(numbers.stream()
+                .map(encryptionUtil::hash)
+                .collect(Collectors.toList())).size());
+    }
+
+    private List<JsonNode> runImport(String body, CardImportFormat format) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        cardImportService.importCards(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), format, out);
+        List<JsonNode> lines = new ArrayList<>();
+        for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+            lines.add(objectMapper.readTree(line));
+        }
+        return lines;
+    }
+
+    private String row(String cardNumber, String ownerName, Long userId, String balance) {
+        return String.join(",", cardNumber, ownerName, EXPIRY, "123", String.valueOf(userId), balance);
+    }
+
+    private String json(String cardNumber, String expiryDate) throws Exception {
+        return objectMapper.writeValueAsString(Map.of(
+                "cardNumber", cardNumber,
+                "ownerName", "NDJSON OWNER",
+                "expiryDate", expiryDate,
+                "cvv", "321",
+                "userId", owner.getId()));
+    }
+
+    private static String invalidLuhn(String cardNumber) {
+        char last = cardNumber.charAt(cardNumber.length() - 1);
+        return cardNumber.substring(0, cardNumber.length() - 1) + (char) ('0' + (last - '0' + 1) % 10);
+    }
+
+    private static void assertCreated(JsonNode line, long row) {
+        assertEquals(row, line.get("row").asLong(), line::toString);
+        assertEquals("CREATED", line.get("status").asText(), line::toString);
+        assertTrue(line.get("cardId").asLong() > 0, line::toString);
+        assertFalse(line.has("error"), line::toString);
+    }
+
+    private static void assertFailed(JsonNode line, long row, String error) {
+        assertEquals(row, line.get("row").asLong(), line::toString);
+        assertEquals("FAILED", line.get("status").asText(), line::toString);
+        assertEquals(error, line.get("error").asText(), line::toString);
+        assertFalse(line.has("cardId"), line::toString);
+    }
+}
@@ -7,6 +7,7 @@ import com.example.bankcards.entity.enums.CardStatus;
 import com.example.bankcards.exception.CardOperationException;
 import com.example.bankcards.exception.UserOperationException;
 import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.CardRepository.CardView;
 import com.example.bankcards.repository.UserRepository;
 import com.example.bankcards.util.CardMaskingUtil;
 import com.example.bankcards.util.CardNumberGenerator;
@@ -19,12 +20,14 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.*;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -101,6 +104,7 @@ class CardServiceTest {
         when(encryptionUtil.hash("1234567812345678")).thenReturn("hash-1234");
         when(cardRepository.existsByCardNumberHash("hash-1234")).thenReturn(false);
         when(cardMaskingUtil.validateAndMask("1234567812345678")).thenReturn("1234****5678");
+        when(cardMaskingUtil.getLastFourDigits("1234****5678")).thenReturn("5678");
         when(encryptionUtil.encrypt("123")).thenReturn("encrypted-123");
         when(cardRepository.save(any(Card.class))).thenReturn(testCard);
 
@@ -109,7 +113,7 @@ class CardServiceTest {
         assertNotNull(result);
         assertEquals(1L, result.getId());
         verify(userRepository).findById(1L);
-        verify(cardRepository).save(any(Card.class));
+        verify(cardRepository).save(argThat((Card card) -> "5678".equals(card.getLastFour())));
     }
 
     @Test
@@ -184,26 +188,68 @@ class CardServiceTest {
 
     @Test
     void getUserCards_ShouldReturnUserCards() {
-        List<Card> cards = List.of(testCard);
-        when(cardRepository.findByOwnerId(1L)).thenReturn(cards);
+        List<CardView> cards = List.of(mock(CardView.class));
+        when(cardRepository.findViewsByOwnerId(1L)).thenReturn(cards);
 
-        List<Card> result = cardService.getUserCards(1L);
+        List<CardView> result = cardService.getUserCards(1L);
 
         assertEquals(1, result.size());
-        verify(cardRepository).findByOwnerId(1L);
+        verify(cardRepository).findViewsByOwnerId(1L);
     }
 
     @Test
     void getAllCards_ShouldReturnPaginatedCards() {
-        Page<Card> cardPage = new PageImpl<>(List.of(testCard));
+        Page<CardView> cardPage = new PageImpl<>(List.of(mock(CardView.class)));
         Pageable pageable = PageRequest.of(0, 20);
 
-        when(cardRepository.findAll(pageable)).thenReturn(cardPage);
+        when(cardRepository.findAllViews(pageable)).thenReturn(cardPage);
+
+        Page<CardView> result = cardService.getAllCards(pageable);
+
+        assertEquals(1, result.getTotalElements());
+        verify(cardRepository).findAllViews(pageable);
+        verify(cardRepository, never()).findAll(any(Pageable.class));
+    }
+
+    @Test
+    void getUserCards_WithStatusAndLastFour_ShouldUseExactMatchQuery() {
+        CardDTO.FilterRequest filter = new CardDTO.FilterRequest();
+        filter.setStatus(CardStatus.ACTIVE);
+        filter.setCardNumberLastFour("5678");
+        Page<CardView> cardPage = new PageImpl<>(List.of(mock(CardView.class)));
+        when(cardRepository.findViewsByOwnerIdAndStatusAndLastFour(eq(1L), eq(CardStatus.ACTIVE), eq("5678"),
+                any(Pageable.class))).thenReturn(cardPage);
 
-        Page<Card> result = cardService.getAllCards(pageable);
+        Page<CardView> result = cardService.getUserCards(1L, filter);
 
         assertEquals(1, result.getTotalElements());
-        verify(cardRepository).findAll(pageable);
+        verify(cardRepository, never()).findViewsByOwnerId(eq(1L), any(Pageable.class));
+    }
+
+    @Test
+    void getUserCards_WithOnlyLastFour_ShouldNotFilterByStatus() {
+        CardDTO.FilterRequest filter = new CardDTO.FilterRequest();
+        filter.setCardNumberLastFour("5678");
+        when(cardRepository.findViewsByOwnerIdAndLastFour(eq(1L), eq("5678"), any(Pageable.class)))
+                .thenReturn(Page.empty());
+
+        cardService.getUserCards(1L, filter);
+
+        verify(cardRepository).findViewsByOwnerIdAndLastFour(eq(1L), eq("5678"), any(Pageable.class));
+        verify(cardRepository, never()).findViewsByOwnerIdAndStatusAndLastFour(any(), any(), any(), any());
+    }
+
+    @Test
+    void getUserCards_WithBlankLastFour_ShouldFilterByStatusOnly() {
+        CardDTO.FilterRequest filter = new CardDTO.FilterRequest();
+        filter.setStatus(CardStatus.BLOCKED);
+        filter.setCardNumberLastFour("");
+        when(cardRepository.findViewsByOwnerIdAndStatus(eq(1L), eq(CardStatus.BLOCKED), any(Pageable.class)))
+                .thenReturn(Page.empty());
+
+        cardService.getUserCards(1L, filter);
+
+        verify(cardRepository).findViewsByOwnerIdAndStatus(eq(1L), eq(CardStatus.BLOCKED), any(Pageable.class));
     }
 
     @Test
@@ -323,13 +369,51 @@ class CardServiceTest {
     }
 
     @Test
-    void updateExpiredCardsStatus_ShouldUpdateExpiredCards() {
-        List<Card> expiredCards = List.of(testCard);
-        when(cardRepository.findExpiredCards(any(LocalDate.class))).thenReturn(expiredCards);
+    void updateExpiredCardsStatus_ShouldUpdateInIdRangeChunks() {
+        ReflectionTestUtils.setField(cardService, "expirationChunkSize", 2);
+        when(cardRepository.findExpirableIdsAfter(any(LocalDate.class), eq(0L), any(Pageable.class)))
+                .thenReturn(List.of(3L, 7L));
+        when(cardRepository.findExpirableIdsAfter(any(LocalDate.class), eq(7L), any(Pageable.class)))
+                .thenReturn(List.of(9L));
+        when(cardRepository.expireCardsInRange(eq(0L), eq(7L), any(LocalDate.class), any(LocalDateTime.class)))
+                .thenReturn(2);
+        when(cardRepository.expireCardsInRange(eq(7L), eq(9L), any(LocalDate.class), any(LocalDateTime.class)))
+                .thenReturn(1);
+
+        CardDTO.ExpirationResult result = cardService.updateExpiredCardsStatus();
+
+        assertEquals(3, result.getExpiredCards());
+        assertEquals(2, result.getChunks());
+        verify(cardRepository, times(2)).findExpirableIdsAfter(any(LocalDate.class), anyLong(), any(Pageable.class));
+        verify(cardRepository, never()).save(any(Card.class));
+    }
+
+    @Test
+    void updateExpiredCardsStatus_WithNothingToExpire_ShouldNotUpdate() {
+        ReflectionTestUtils.setField(cardService, "expirationChunkSize", 2);
+        when(cardRepository.findExpirableIdsAfter(any(LocalDate.class), eq(0L), any(Pageable.class)))
+                .thenReturn(List.of());
 
-        cardService.updateExpiredCardsStatus();
+        CardDTO.ExpirationResult result = cardService.updateExpiredCardsStatus();
 
-        verify(cardRepository).findExpiredCards(any(LocalDate.class));
-        verify(cardRepository).save(any(Card.class));
+        assertEquals(0, result.getExpiredCards());
+        assertEquals(0, result.getChunks());
+        verify(cardRepository, never()).expireCardsInRange(anyLong(), anyLong(), any(), any());
+    }
+
+    @Test
+    void updateExpiredCardsStatus_WhenStopRequested_ShouldStopBetweenChunks() {
+        ReflectionTestUtils.setField(cardService, "expirationChunkSize", 2);
+        when(cardRepository.findExpirableIdsAfter(any(LocalDate.class), eq(0L), any(Pageable.class)))
+                .thenReturn(List.of(3L, 7L));
+        when(cardRepository.expireCardsInRange(eq(0L), eq(7L), any(LocalDate.class), any(LocalDateTime.class)))
+                .thenReturn(2);
+        AtomicInteger checks = new AtomicInteger();
+
+        CardDTO.ExpirationResult result = cardService.updateExpiredCardsStatus(() -> checks.incrementAndGet() > 1);
+
+        assertEquals(2, result.getExpiredCards());
+        assertEquals(1, result.getChunks());
+        verify(cardRepository, times(1)).findExpirableIdsAfter(any(LocalDate.class), anyLong(), any(Pageable.class));
     }
-}
\ No newline at end of file
+}
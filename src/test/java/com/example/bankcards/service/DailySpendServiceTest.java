@@ -0,0 +1,92 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.exception.TransactionException;
+import com.example.bankcards.repository.CardDailySpendRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class DailySpendServiceTest {
+
+    private static final BigDecimal LIMIT = new BigDecimal("5000");
+
+    @Mock
+    private CardDailySpendRepository cardDailySpendRepository;
+
+    private DailySpendService dailySpendService;
+
+    @BeforeEach
+    void setUp() {
+        dailySpendService = new DailySpendService(cardDailySpendRepository, 30);
+    }
+
+    @Test
+    void getTodaySpend_ShouldCacheAggregate() {
+        when(cardDailySpendRepository.findAmount(eq(1L), any(LocalDate.class)))
+                .thenReturn(Optional.of(new BigDecimal("1200.00")));
+
+        assertEquals(new BigDecimal("1200.00"), dailySpendService.getTodaySpend(1L));
+        assertEquals(new BigDecimal("1200.00"), dailySpendService.getTodaySpend(1L));
+
+        verify(cardDailySpendRepository, times(1)).findAmount(eq(1L), any(LocalDate.class));
+    }
+
+    @Test
+    void getTodaySpend_ShouldReturnZero_WhenNoRowForToday() {
+        when(cardDailySpendRepository.findAmount(eq(1L), any(LocalDate.class))).thenReturn(Optional.empty());
+
+        assertEquals(BigDecimal.ZERO, dailySpendService.getTodaySpend(1L));
+    }
+
+    @Test
+    void recordSpend_ShouldIncrementExistingRowAndInvalidateCache() {
+        when(cardDailySpendRepository.findAmount(eq(1L), any(LocalDate.class)))
+                .thenReturn(Optional.of(new BigDecimal("100.00")))
+                .thenReturn(Optional.of(new BigDecimal("150.00")));
+        when(cardDailySpendRepository.addWithinLimit(eq(1L), any(LocalDate.class), any(BigDecimal.class), eq(LIMIT)))
+                .thenReturn(1);
+        dailySpendService.getTodaySpend(1L);
+
+        dailySpendService.recordSpend(1L, new BigDecimal("50.00"), LIMIT);
+
+        assertEquals(new BigDecimal("150.00"), dailySpendService.getTodaySpend(1L));
+        verify(cardDailySpendRepository, never()).insert(anyLong(), any(LocalDate.class), any(BigDecimal.class));
+    }
+
+    @Test
+    void recordSpend_ShouldInsertFirstRowOfTheDay() {
+        when(cardDailySpendRepository.addWithinLimit(eq(1L), any(LocalDate.class), any(BigDecimal.class), eq(LIMIT)))
+                .thenReturn(0);
+        when(cardDailySpendRepository.findAmount(eq(1L), any(LocalDate.class))).thenReturn(Optional.empty());
+
+        dailySpendService.recordSpend(1L, new BigDecimal("50.00"), LIMIT);
+
+        verify(cardDailySpendRepository).insert(eq(1L), eq(LocalDate.now()), eq(new BigDecimal("50.00")));
+    }
+
+    @Test
+    void recordSpend_ShouldThrow_WhenLimitWouldBeExceeded() {
+        when(cardDailySpendRepository.addWithinLimit(eq(1L), any(LocalDate.class), any(BigDecimal.class), eq(LIMIT)))
+                .thenReturn(0);
+        when(cardDailySpendRepository.findAmount(eq(1L), any(LocalDate.class)))
+                .thenReturn(Optional.of(new BigDecimal("4990.00")));
+
+        assertThrows(TransactionException.class,
+                () -> dailySpendService.recordSpend(1L, new BigDecimal("50.00"), LIMIT));
+        verify(cardDailySpendRepository, never()).insert(anyLong(), any(LocalDate.class), any(BigDecimal.class));
+    }
+}
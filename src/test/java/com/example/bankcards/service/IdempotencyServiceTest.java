@@ -0,0 +1,192 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.TransactionDTO;
+import com.example.bankcards.entity.IdempotencyRecord;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.exception.TransactionException;
+import com.example.bankcards.mapper.TransactionMapper;
+import com.example.bankcards.repository.IdempotencyRecordRepository;
+import com.example.bankcards.util.EncryptionUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class IdempotencyServiceTest {
+
+    @Mock
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    @Mock
+    private TransactionService transactionService;
+
+    @Mock
+    private TransactionMapper transactionMapper;
+
+    @Mock
+    private EncryptionUtil encryptionUtil;
+
+    private ObjectMapper objectMapper;
+    private IdempotencyService idempotencyService;
+    private TransactionDTO.TransferRequest request;
+    private TransactionDTO.Response response;
+    private AtomicInteger transfers;
+    private AtomicInteger recordsInsideTransfer;
+    private Transaction transaction;
+
+    @BeforeEach
+    void setUp() {
+        objectMapper = new ObjectMapper().findAndRegisterModules()
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        idempotencyService = new IdempotencyService(idempotencyRecordRepository, transactionService, transactionMapper,
+                encryptionUtil, objectMapper, 100, 24);
+
+        request = new TransactionDTO.TransferRequest();
+        request.setFromCardNumber("1111111111111111");
+        request.setToCardNumber("2222222222222222");
+        request.setAmount(new BigDecimal("100.00"));
+        request.setCvv("123");
+
+        response = TransactionDTO.Response.builder()
+                .transactionId("TXN123")
+                .amount(new BigDecimal("100.00"))
+                .fromCardMasked("**** **** **** 1111")
+                .toCardMasked("**** **** **** 2222")
+                .transactionDate(LocalDateTime.now())
+                .build();
+
+        transfers = new AtomicInteger();
+        recordsInsideTransfer = new AtomicInteger();
+        transaction = Transaction.builder().transactionId("TXN123").build();
+        when(transactionMapper.toResponse(transaction)).thenReturn(response);
+        when(transactionService.transferBetweenOwnCards(any(), eq(1L), any())).thenAnswer(inv -> {
+            transfers.incrementAndGet();
+            Consumer<Transaction> inTransaction = inv.getArgument(2);
+            inTransaction.accept(transaction);
+            return transaction;
+        });
+
+        when(encryptionUtil.hash(anyString())).thenAnswer(inv -> "hash:" + inv.getArgument(0));
+        when(idempotencyRecordRepository.saveAndFlush(any(IdempotencyRecord.class))).thenAnswer(inv -> {
+            recordsInsideTransfer.incrementAndGet();
+            IdempotencyRecord record = inv.getArgument(0);
+            record.setCreatedAt(LocalDateTime.now());
+            return record;
+        });
+    }
+
+    @Test
+    void transfer_NewKey_ShouldStoreResponseInsideTransferTransaction() {
+        when(idempotencyRecordRepository.findByUserIdAndIdempotencyKey(1L, "key-1")).thenReturn(Optional.empty());
+
+        TransactionDTO.Response result = idempotencyService.transfer(1L, "key-1", request);
+
+        assertEquals("TXN123", result.getTransactionId());
+        assertEquals(1, transfers.get());
+        assertEquals(1, recordsInsideTransfer.get());
+        verify(idempotencyRecordRepository).saveAndFlush(argThat(record ->
+                "TXN123".equals(record.getTransactionId()) && record.getResponseBody() != null));
+        verify(idempotencyRecordRepository, never()).delete(any());
+    }
+
+    @Test
+    void transfer_RepeatedKey_ShouldReplayFromCacheWithoutRepository() {
+        when(idempotencyRecordRepository.findByUserIdAndIdempotencyKey(1L, "key-1")).thenReturn(Optional.empty());
+        idempotencyService.transfer(1L, "key-1", request);
+        clearInvocations(idempotencyRecordRepository);
+
+        TransactionDTO.Response replay = idempotencyService.transfer(1L, "key-1", request);
+
+        assertEquals("TXN123", replay.getTransactionId());
+        assertEquals(1, transfers.get());
+        verifyNoInteractions(idempotencyRecordRepository);
+    }
+
+    @Test
+    void transfer_KeyStoredInDatabase_ShouldReplayWithoutTransfer() throws Exception {
+        IdempotencyRecord stored = storedRecord(objectMapper.writeValueAsString(response));
+        when(idempotencyRecordRepository.findByUserIdAndIdempotencyKey(1L, "key-1")).thenReturn(Optional.of(stored));
+
+        TransactionDTO.Response replay = idempotencyService.transfer(1L, "key-1", request);
+
+        assertEquals("TXN123", replay.getTransactionId());
+        assertEquals("**** **** **** 2222", replay.getToCardMasked());
+        assertEquals(0, transfers.get());
+        verify(idempotencyRecordRepository, never()).saveAndFlush(any());
+    }
+
+    @Test
+    void transfer_KeyCommittedConcurrently_ShouldReplayWinnerResponse() throws Exception {
+        when(idempotencyRecordRepository.findByUserIdAndIdempotencyKey(1L, "key-1"))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(storedRecord(objectMapper.writeValueAsString(response))));
+        when(transactionService.transferBetweenOwnCards(any(), eq(1L), any()))
+                .thenThrow(new DataIntegrityViolationException("duplicate key"));
+
+        TransactionDTO.Response replay = idempotencyService.transfer(1L, "key-1", request);
+
+        assertEquals("TXN123", replay.getTransactionId());
+    }
+
+    @Test
+    void transfer_KeyReusedForDifferentRequest_ShouldThrowUnprocessable() throws Exception {
+        IdempotencyRecord stored = storedRecord(objectMapper.writeValueAsString(response));
+        when(idempotencyRecordRepository.findByUserIdAndIdempotencyKey(1L, "key-1")).thenReturn(Optional.of(stored));
+        request.setAmount(new BigDecimal("999.00"));
+
+        TransactionException exception = assertThrows(TransactionException.class,
+                () -> idempotencyService.transfer(1L, "key-1", request));
+
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, exception.getStatus());
+        assertEquals(0, transfers.get());
+    }
+
+    @Test
+    void transfer_TransferFails_ShouldLeaveNothingToReleaseAndAllowRetry() {
+        when(idempotencyRecordRepository.findByUserIdAndIdempotencyKey(1L, "key-1")).thenReturn(Optional.empty());
+        when(transactionService.transferBetweenOwnCards(any(), eq(1L), any()))
+                .thenThrow(new RuntimeException("commit failed"))
+                .thenAnswer(inv -> {
+                    Consumer<Transaction> inTransaction = inv.getArgument(2);
+                    inTransaction.accept(transaction);
+                    return transaction;
+                });
+
+        assertThrows(RuntimeException.class, () -> idempotencyService.transfer(1L, "key-1", request));
+        TransactionDTO.Response retry = idempotencyService.transfer(1L, "key-1", request);
+
+        assertEquals("TXN123", retry.getTransactionId());
+        verify(idempotencyRecordRepository, never()).delete(any(IdempotencyRecord.class));
+    }
+
+    private IdempotencyRecord storedRecord(String responseBody) {
+        return IdempotencyRecord.builder()
+                .id(10L)
+                .userId(1L)
+                .idempotencyKey("key-1")
+                .requestHash("hash:1111111111111111|2222222222222222|100|null")
+                .transactionId(responseBody != null ? "TXN123" : null)
+                .responseBody(responseBody)
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+}
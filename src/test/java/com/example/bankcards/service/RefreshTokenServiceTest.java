@@ -0,0 +1,145 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.RefreshToken;
+import com.example.bankcards.exception.UserOperationException;
+import com.example.bankcards.repository.RefreshTokenRepository;
+import com.example.bankcards.util.EncryptionUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.http.HttpStatus;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class RefreshTokenServiceTest {
+
+    @Mock
+    private RefreshTokenRepository refreshTokenRepository;
+
+    private final EncryptionUtil encryptionUtil = new EncryptionUtil("test-secret", "AES/CBC/PKCS5Padding");
+
+    private RefreshTokenService refreshTokenService;
+
+    @BeforeEach
+    void setUp() {
+        refreshTokenService = new RefreshTokenService(refreshTokenRepository, encryptionUtil, 30);
+    }
+
+    @Test
+    void issue_ShouldStoreOnlyTokenHash() {
+        String token = refreshTokenService.issue(1L);
+
+        ArgumentCaptor<RefreshToken> saved = ArgumentCaptor.forClass(RefreshToken.class);
+        verify(refreshTokenRepository).save(saved.capture());
+        assertEquals(encryptionUtil.hash(token), saved.getValue().getTokenHash());
+        assertNotEquals(token, saved.getValue().getTokenHash());
+        assertEquals(1L, saved.getValue().getUserId());
+        assertNotNull(saved.getValue().getFamilyId());
+        assertTrue(saved.getValue().getExpiresAt().isAfter(LocalDateTime.now().plusDays(29)));
+    }
+
+    @Test
+    void rotate_ShouldIssueNextTokenInSameFamily() {
+        RefreshToken current = storedToken("old-token", null, false, LocalDateTime.now().plusDays(1));
+        when(refreshTokenRepository.markUsed(eq(10L), any())).thenReturn(1);
+
+        RefreshTokenService.Rotation rotation = refreshTokenService.rotate("old-token");
+
+        assertEquals(1L, rotation.userId());
+        assertNotEquals("old-token", rotation.refreshToken());
+        verify(refreshTokenRepository).save(argThat((RefreshToken token) ->
+                token.getFamilyId().equals("family-1")
+                        && token.getTokenHash().equals(encryptionUtil.hash(rotation.refreshToken()))));
+        verify(refreshTokenRepository, never()).revokeFamily(any());
+    }
+
+    @Test
+    void rotate_WithUsedToken_ShouldRevokeFamily() {
+        storedToken("old-token", LocalDateTime.now().minusMinutes(5), false, LocalDateTime.now().plusDays(1));
+
+        UserOperationException exception = assertThrows(UserOperationException.class,
+                () -> refreshTokenService.rotate("old-token"));
+
+        assertEquals(HttpStatus.UNAUTHORIZED, exception.getStatus());
+        verify(refreshTokenRepository).revokeFamily("family-1");
+        verify(refreshTokenRepository, never()).save(any());
+    }
+
+    @Test
+    void rotate_WhenConcurrentRotationWins_ShouldRevokeFamily() {
+        storedToken("old-token", null, false, LocalDateTime.now().plusDays(1));
+        when(refreshTokenRepository.markUsed(eq(10L), any())).thenReturn(0);
+
+        assertThrows(UserOperationException.class, () -> refreshTokenService.rotate("old-token"));
+
+        verify(refreshTokenRepository).revokeFamily("family-1");
+        verify(refreshTokenRepository, never()).save(any());
+    }
+
+    @Test
+    void rotate_WithExpiredOrRevokedToken_ShouldReturnUnauthorized() {
+        storedToken("expired-token", null, false, LocalDateTime.now().minusMinutes(1));
+        storedToken("revoked-token", null, true, LocalDateTime.now().plusDays(1));
+
+        assertThrows(UserOperationException.class, () -> refreshTokenService.rotate("expired-token"));
+        assertThrows(UserOperationException.class, () -> refreshTokenService.rotate("revoked-token"));
+
+        verify(refreshTokenRepository, never()).markUsed(any(), any());
+        verify(refreshTokenRepository, never()).save(any());
+    }
+
+    @Test
+    void rotate_WithUnknownToken_ShouldReturnUnauthorized() {
+        when(refreshTokenRepository.findByTokenHash(anyString())).thenReturn(Optional.empty());
+
+        UserOperationException exception = assertThrows(UserOperationException.class,
+                () -> refreshTokenService.rotate("unknown"));
+
+        assertEquals(HttpStatus.UNAUTHORIZED, exception.getStatus());
+        verify(refreshTokenRepository, never()).revokeFamily(any());
+    }
+
+    @Test
+    void revoke_ShouldRevokeWholeFamily() {
+        storedToken("old-token", null, false, LocalDateTime.now().plusDays(1));
+
+        refreshTokenService.revoke("old-token");
+
+        verify(refreshTokenRepository).revokeFamily("family-1");
+    }
+
+    @Test
+    void revokeAllForUser_ShouldRevokeEveryFamilyOfUser() {
+        when(refreshTokenRepository.revokeAllByUserId(1L)).thenReturn(3);
+
+        assertEquals(3, refreshTokenService.revokeAllForUser(1L));
+
+        verify(refreshTokenRepository).revokeAllByUserId(1L);
+    }
+
+    private RefreshToken storedToken(String token, LocalDateTime usedAt, boolean revoked, LocalDateTime expiresAt) {
+        RefreshToken stored = RefreshToken.builder()
+                .id(10L)
+                .tokenHash(encryptionUtil.hash(token))
+                .familyId("family-1")
+                .userId(1L)
+                .expiresAt(expiresAt)
+                .usedAt(usedAt)
+                .revoked(revoked)
+                .build();
+        when(refreshTokenRepository.findByTokenHash(encryptionUtil.hash(token))).thenReturn(Optional.of(stored));
+        return stored;
+    }
+}
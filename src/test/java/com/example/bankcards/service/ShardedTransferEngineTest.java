@@ -0,0 +1,107 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.TransactionDTO;
+import com.example.bankcards.exception.TransactionException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.TransactionRepository;
+import com.example.bankcards.util.EncryptionUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class ShardedTransferEngineTest {
+
+    @Mock
+    private TransactionService transactionService;
+
+    @Mock
+    private CardRepository cardRepository;
+
+    @Mock
+    private TransactionRepository transactionRepository;
+
+    @Mock
+    private EncryptionUtil encryptionUtil;
+
+    @Mock
+    private DailySpendService dailySpendService;
+
+    @Mock
+    private TransactionOperations transferTransactionTemplate;
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private ShardedTransferEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        when(encryptionUtil.hash(anyString())).thenAnswer(inv -> "hash:" + inv.getArgument(0));
+        engine = new ShardedTransferEngine(transactionService, cardRepository, transactionRepository, encryptionUtil,
+                dailySpendService, transferTransactionTemplate, new SimpleMeterRegistry(), 1, 10, 0, 100, 200);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        release.countDown();
+        engine.shutdown();
+    }
+
+    @Test
+    void transfer_BatchHangs_ShouldFailWithServiceUnavailableAfterTimeout() {
+        doAnswer(inv -> {
+            release.await();
+            return null;
+        }).when(transferTransactionTemplate).executeWithoutResult(any());
+
+        TransactionException exception = assertTimeoutPreemptively(Duration.ofSeconds(5),
+                () -> assertThrows(TransactionException.class, () -> engine.transfer(request(), 1L)));
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, exception.getStatus());
+        assertEquals("Transfer outcome is unknown", exception.getMessage());
+    }
+
+    @Test
+    void transfer_LaneThreadDies_ShouldFailInFlightAndLaterTransfers() {
+        doAnswer(inv -> {
+            throw new StackOverflowError("lane crashed");
+        }).when(transferTransactionTemplate).executeWithoutResult(any());
+
+        TransactionException inFlight = assertTimeoutPreemptively(Duration.ofSeconds(5),
+                () -> assertThrows(TransactionException.class, () -> engine.transfer(request(), 1L)));
+        TransactionException afterStop = assertTimeoutPreemptively(Duration.ofSeconds(5),
+                () -> assertThrows(TransactionException.class, () -> engine.transfer(request(), 1L)));
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, inFlight.getStatus());
+        assertEquals("Transfer engine is shutting down", inFlight.getMessage());
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, afterStop.getStatus());
+        assertEquals("Transfer engine is shutting down", afterStop.getMessage());
+    }
+
+    private TransactionDTO.TransferRequest request() {
+        TransactionDTO.TransferRequest request = new TransactionDTO.TransferRequest();
+        request.setFromCardNumber("1111111111111111");
+        request.setToCardNumber("2222222222222222");
+        request.setAmount(new BigDecimal("10.00"));
+        request.setCvv("123");
+        return request;
+    }
+}
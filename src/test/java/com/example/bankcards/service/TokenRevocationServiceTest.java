@@ -0,0 +1,81 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.RevokedToken;
+import com.example.bankcards.repository.RevokedTokenRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class TokenRevocationServiceTest {
+
+    @Mock
+    private RevokedTokenRepository revokedTokenRepository;
+
+    private TokenRevocationService tokenRevocationService;
+
+    @BeforeEach
+    void setUp() {
+        tokenRevocationService = new TokenRevocationService(revokedTokenRepository, 1000, 0.01);
+    }
+
+    @Test
+    void revoke_ShouldPersistAndRejectImmediately() {
+        when(revokedTokenRepository.existsByJti("jti-1")).thenReturn(false);
+
+        tokenRevocationService.revoke("jti-1", 1L, new Date(System.currentTimeMillis() + 60000));
+
+        assertTrue(tokenRevocationService.isRevoked("jti-1"));
+        assertFalse(tokenRevocationService.isRevoked("jti-2"));
+        assertFalse(tokenRevocationService.isRevoked(null));
+        verify(revokedTokenRepository).save(argThat((RevokedToken token) ->
+                token.getJti().equals("jti-1") && token.getUserId().equals(1L)));
+    }
+
+    @Test
+    void syncRecent_ShouldPickUpTokensRevokedOnOtherNodes() {
+        when(revokedTokenRepository.findJtisRevokedSince(any(), any())).thenReturn(List.of("remote-jti"));
+
+        tokenRevocationService.syncRecent();
+
+        assertTrue(tokenRevocationService.isRevoked("remote-jti"));
+    }
+
+    @Test
+    void rebuild_ShouldDropExpiredTokens() {
+        when(revokedTokenRepository.existsByJti(anyString())).thenReturn(false);
+        tokenRevocationService.revoke("expired-jti", 1L, new Date());
+        when(revokedTokenRepository.findActiveJtis(any())).thenReturn(List.of("active-jti"));
+
+        tokenRevocationService.rebuild();
+
+        assertFalse(tokenRevocationService.isRevoked("expired-jti"));
+        assertTrue(tokenRevocationService.isRevoked("active-jti"));
+        verify(revokedTokenRepository).deleteExpired(any());
+    }
+
+    @Test
+    void isRevoked_ShouldNotReportUnrevokedTokens() {
+        when(revokedTokenRepository.existsByJti(anyString())).thenReturn(false);
+        for (int i = 0; i < 1000; i++) {
+            tokenRevocationService.revoke(UUID.randomUUID().toString(), 1L, new Date());
+        }
+
+        for (int i = 0; i < 10_000; i++) {
+            assertFalse(tokenRevocationService.isRevoked(UUID.randomUUID().toString()));
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.enums.TransactionStatus;
+import com.example.bankcards.exception.TooManyRequestsException;
+import com.example.bankcards.entity.enums.TransactionType;
+import com.example.bankcards.mapper.TransactionMapper;
+import com.example.bankcards.repository.TransactionRepository;
+import com.example.bankcards.repository.TransactionRepository.TransactionView;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.projection.ProjectionFactory;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionTimedOutException;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TransactionExportServiceTest {
+
+    private static final LocalDateTime DATE = LocalDateTime.of(2025, 3, 1, 12, 30);
+
+    @Mock
+    private TransactionRepository transactionRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final ProjectionFactory projectionFactory = new SpelAwareProxyProjectionFactory();
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    private TransactionExportService exportService;
+
+    @BeforeEach
+    void setUp() {
+        exportService = exportService(300);
+    }
+
+    @Test
+    void exportUserTransactions_AsNdjson_ShouldWriteOneResponseObjectPerLine() throws Exception {
+        AtomicBoolean closed = new AtomicBoolean();
+        when(transactionRepository.streamByUserId(1L)).thenReturn(Stream.of(
+                row("TXN-1", "Coffee", "**** **** **** 1111"),
+                row("TXN-2", null, null),
+                row("TXN-3", "Rent", "**** **** **** 3333")).onClose(() -> closed.set(true)));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long rows = exportService.exportUserTransactions(1L, TransactionExportFormat.NDJSON, () -> out);
+
+        List<String> lines = out.toString(StandardCharsets.UTF_8).lines().toList();
+        assertEquals(3, rows);
+        assertEquals(3, lines.size());
+        JsonNode first = objectMapper.readTree(lines.get(0));
+        assertEquals("TXN-1", first.get("transactionId").asText());
+        assertEquals("TRANSFER", first.get("type").asText());
+        assertEquals("2025-03-01T12:30:00", first.get("transactionDate").asText());
+        assertTrue(objectMapper.readTree(lines.get(1)).get("fromCardMasked").isNull());
+        assertTrue(closed.get());
+    }
+
+    @Test
+    void exportUserTransactions_AsCsv_ShouldWriteHeaderWithResponseFieldsAndEscapeValues() throws Exception {
+        when(transactionRepository.streamByUserId(1L)).thenReturn(Stream.of(
+                row("TXN-1", "Lunch, \"office\"", "**** **** **** 1111"),
+                row("TXN-2", "=SUM(A1:A9)", null)));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.exportUserTransactions(1L, TransactionExportFormat.CSV, () -> out);
+
+        List<String> lines = out.toString(StandardCharsets.UTF_8).lines().toList();
+        assertEquals("transactionId,amount,currency,type,status,description,fromCardMasked,toCardMasked,"
+                + "transactionDate,createdAt", lines.get(0));
+        assertEquals("TXN-1,100.50,USD,TRANSFER,COMPLETED,\"Lunch, \"\"office\"\"\",**** **** **** 1111,"
+                + "**** **** **** 9999,2025-03-01T12:30:00,2025-03-01T12:30:00", lines.get(1));
+        assertEquals("TXN-2,100.50,USD,TRANSFER,COMPLETED,'=SUM(A1:A9),,"
+                + "**** **** **** 9999,2025-03-01T12:30:00,2025-03-01T12:30:00", lines.get(2));
+    }
+
+    @Test
+    void exportUserTransactions_WithEmptyHistory_ShouldWriteOnlyCsvHeader() throws Exception {
+        when(transactionRepository.streamByUserId(1L)).thenReturn(Stream.empty());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long rows = exportService.exportUserTransactions(1L, TransactionExportFormat.CSV, () -> out);
+
+        assertEquals(0, rows);
+        assertEquals(1, out.toString(StandardCharsets.UTF_8).lines().count());
+    }
+
+    @Test
+    void exportUserTransactions_ShouldFlushEveryFlushRows() throws Exception {
+        when(transactionRepository.streamByUserId(1L)).thenReturn(IntStream.range(0, 5)
+                .mapToObj(i -> row("TXN-" + i, null, null)));
+        CountingFlushStream out = new CountingFlushStream();
+
+        exportService.exportUserTransactions(1L, TransactionExportFormat.NDJSON, () -> out);
+
+        // после 2-й и 4-й строки и в конце выгрузки
+        assertEquals(3, out.flushes);
+        assertEquals(5, out.toString(StandardCharsets.UTF_8).lines().count());
+    }
+
+    @Test
+    void exportUserTransactions_WhenLimitReached_ShouldRejectWithoutOpeningResponse() throws Exception {
+        AtomicBoolean opened = new AtomicBoolean();
+        when(transactionRepository.streamByUserId(1L)).thenReturn(Stream.of(row("TXN-1", null, null))
+                .peek(row -> {
+                    TooManyRequestsException exception = assertThrows(TooManyRequestsException.class,
+                            () -> exportService.exportUserTransactions(2L, TransactionExportFormat.CSV, () -> {
+                                opened.set(true);
+                                return new ByteArrayOutputStream();
+                            }));
+                    assertEquals(30, exception.getRetryAfterSeconds());
+                }));
+        when(transactionRepository.streamByUserId(2L)).thenReturn(Stream.empty());
+
+        exportService.exportUserTransactions(1L, TransactionExportFormat.NDJSON, ByteArrayOutputStream::new);
+
+        assertFalse(opened.get());
+        // разрешение вернулось после завершения первой выгрузки
+        assertEquals(0, exportService.exportUserTransactions(2L, TransactionExportFormat.NDJSON,
+                ByteArrayOutputStream::new));
+    }
+
+    @Test
+    void exportUserTransactions_WhenTimeoutExceeded_ShouldAbortAndReleasePermit() throws Exception {
+        exportService = exportService(0);
+        AtomicBoolean closed = new AtomicBoolean();
+        when(transactionRepository.streamByUserId(1L)).thenReturn(IntStream.range(0, 5)
+                .mapToObj(i -> row("TXN-" + i, null, null)).onClose(() -> closed.set(true)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertThrows(TransactionTimedOutException.class,
+                () -> exportService.exportUserTransactions(1L, TransactionExportFormat.NDJSON, () -> out));
+
+        assertTrue(closed.get());
+        assertEquals(2, out.toString(StandardCharsets.UTF_8).lines().count());
+        when(transactionRepository.streamByUserId(2L)).thenReturn(Stream.empty());
+        assertEquals(0, exportService.exportUserTransactions(2L, TransactionExportFormat.NDJSON,
+                ByteArrayOutputStream::new));
+    }
+
+    private TransactionExportService exportService(int timeoutSeconds) {
+        return new TransactionExportService(transactionRepository, new TransactionMapper(), objectMapper,
+                transactionManager, 2, 1, timeoutSeconds, 30);
+    }
+
+    private TransactionView row(String transactionId, String description, String fromCardMasked) {
+        Map<String, Object> values = new HashMap<>();
+        values.put("id", 1L);
+        values.put("transactionId", transactionId);
+        values.put("amount", new BigDecimal("100.50"));
+        values.put("currency", "USD");
+        values.put("type", TransactionType.TRANSFER);
+        values.put("status", TransactionStatus.COMPLETED);
+        values.put("description", description);
+        values.put("fromCardMasked", fromCardMasked);
+        values.put("toCardMasked", "**** **** **** 9999");
+        values.put("transactionDate", DATE);
+        values.put("createdAt", DATE);
+        return projectionFactory.createProjection(TransactionView.class, values);
+    }
+
+    private static class CountingFlushStream extends ByteArrayOutputStream {
+        private int flushes;
+
+        @Override
+        public void flush() {
+            flushes++;
+        }
+    }
+}
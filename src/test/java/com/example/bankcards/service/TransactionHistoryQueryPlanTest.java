@@ -0,0 +1,231 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.entity.enums.Role;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.TransactionRepository;
+import com.example.bankcards.repository.TransactionRepository.TransactionView;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.util.KeysetCursor;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Планы запросов истории пользователя на H2 при объеме истории активного клиента.
+ * Проверяет, что чтение по owner_id и UNION ALL по картам идут диапазонами составных индексов,
+ * и что оба способа возвращают те же строки, что и исходный запрос с OR через соединения с cards.
+ */
+@DataJpaTest(showSql = false)
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class TransactionHistoryQueryPlanTest {
+
+    private static final int HEAVY_USER_ROWS = 10_000;
+    private static final int OTHER_USERS = 20;
+    private static final int OTHER_USER_ROWS = 200;
+    private static final int PAGE_SIZE = 20;
+    private static final long FIRST_ID = 50_000_000L;
+
+    private static final String OWNER_QUERY = "SELECT t.id FROM transactions t WHERE t.owner_id = :userId"
+            + " AND t.transaction_date <= :date AND (t.transaction_date < :date OR t.id < :id)"
+            + " ORDER BY t.transaction_date DESC, t.id DESC LIMIT :limit";
+
+    // Исходное условие с OR через cards; для from_card_id - внешнее соединение, чтобы не терять пополнения
+    private static final String OR_JOIN_QUERY = "SELECT t.id FROM transactions t"
+            + " LEFT JOIN cards fc ON fc.id = t.from_card_id JOIN cards tc ON tc.id = t.to_card_id"
+            + " WHERE (fc.user_id = :userId OR tc.user_id = :userId)"
+            + " AND t.transaction_date <= :date AND (t.transaction_date < :date OR t.id < :id)"
+            + " ORDER BY t.transaction_date DESC, t.id DESC LIMIT :limit";
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    private final List<User> users = new ArrayList<>();
+    private final List<Long> cardIds = new ArrayList<>();
+    private User heavyUser;
+    private List<Long> heavyCardIds;
+    private LocalDateTime middle;
+
+    @BeforeAll
+    void setUp() {
+        Random random = new Random(42);
+        LocalDateTime start = LocalDateTime.now().minusYears(2);
+        List<Object[]> rows = new ArrayList<>();
+
+        heavyUser = user("heavy");
+        heavyCardIds = cards(heavyUser, 4);
+        for (int i = 0; i < HEAVY_USER_ROWS; i++) {
+            Long from = heavyCardIds.get(random.nextInt(heavyCardIds.size()));
+            Long to = heavyCardIds.get(random.nextInt(heavyCardIds.size()));
+            if (from.equals(to)) {
+                from = null;
+            }
+            rows.add(row(rows.size(), from, to, heavyUser.getId(), start.plusMinutes(i * 10L)));
+        }
+        middle = start.plusMinutes(HEAVY_USER_ROWS * 5L);
+
+        for (int u = 0; u < OTHER_USERS; u++) {
+            User other = user("other" + u);
+            List<Long> otherCards = cards(other, 2);
+            for (int i = 0; i < OTHER_USER_ROWS; i++) {
+                rows.add(row(rows.size(), otherCards.get(0), otherCards.get(1), other.getId(),
+                        start.plusMinutes(random.nextInt(HEAVY_USER_ROWS * 10))));
+            }
+        }
+
+        jdbcTemplate.batchUpdate("INSERT INTO transactions (id, transaction_id, amount, currency, transaction_date, "
+                + "type, status, from_card_id, to_card_id, owner_id, created_at) "
+                + "VALUES (?, ?, ?, 'USD', ?, 'TRANSFER', 'COMPLETED', ?, ?, ?, ?)", rows);
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    @AfterAll
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM transactions WHERE id >= ?", FIRST_ID);
+        cardRepository.deleteAllById(cardIds);
+        userRepository.deleteAll(users);
+    }
+
+    @Test
+    void ownerColumnQuery_ShouldSeekOwnerIndex() {
+        String plan = explain(OWNER_QUERY, params(middle));
+
+        assertTrue(plan.contains("IDX_TRANSACTIONS_OWNER_DATE_ID"), plan);
+        assertFalse(plan.contains("TABLESCAN"), plan);
+    }
+
+    @Test
+    void cardUnionQuery_ShouldSeekFromAndToCardIndexes() {
+        String plan = explain(TransactionRepository.CARD_UNION_HISTORY, params(middle));
+
+        assertTrue(plan.contains("IDX_TRANSACTIONS_FROM_CARD_DATE_ID"), plan);
+        assertTrue(plan.contains("IDX_TRANSACTIONS_TO_CARD_DATE_ID"), plan);
+        assertFalse(plan.contains("TABLESCAN"), plan);
+    }
+
+    @Test
+    void allStrategies_ShouldReturnSameRowsAsOrJoinQuery() {
+        KeysetCursor position = new KeysetCursor(middle, Long.MAX_VALUE);
+        for (int page = 0; page < 3; page++) {
+            List<Long> expected = namedJdbcTemplate.queryForList(OR_JOIN_QUERY,
+                    params(position.transactionDate()).addValue("id", position.id()), Long.class);
+            List<Long> byOwner = ids(transactionRepository.findByUserIdBefore(heavyUser.getId(),
+                    position.transactionDate(), position.id(), PageRequest.of(0, PAGE_SIZE)));
+            List<Long> byCardIds = transactionRepository.findIdsByCardIdsBefore(heavyCardIds,
+                    position.transactionDate(), position.id(), PAGE_SIZE);
+            List<TransactionView> byCards = transactionRepository.findViewsByIdIn(byCardIds);
+
+            assertEquals(PAGE_SIZE, expected.size());
+            assertEquals(expected, byOwner);
+            assertEquals(expected, byCardIds);
+            assertEquals(expected, ids(byCards));
+
+            TransactionView last = byCards.get(byCards.size() - 1);
+            position = new KeysetCursor(last.getTransactionDate(), last.getId());
+        }
+    }
+
+    @Test
+    void deepPage_ShouldUseSamePlanAsFirstPage() {
+        LocalDateTime oldest = LocalDateTime.now().minusYears(2).plusHours(1);
+
+        assertEquals(explain(OWNER_QUERY, params(KeysetCursor.FIRST.transactionDate())),
+                explain(OWNER_QUERY, params(oldest)));
+    }
+
+    private String explain(String sql, MapSqlParameterSource params) {
+        return String.join("\n", namedJdbcTemplate.queryForList("EXPLAIN " + sql, params, String.class))
+                .toUpperCase();
+    }
+
+    private MapSqlParameterSource params(LocalDateTime date) {
+        return new MapSqlParameterSource()
+                .addValue("userId", heavyUser.getId())
+                .addValue("cardIds", heavyCardIds)
+                .addValue("date", Timestamp.valueOf(date))
+                .addValue("id", Long.MAX_VALUE)
+                .addValue("limit", PAGE_SIZE);
+    }
+
+    private List<Long> ids(List<TransactionView> transactions) {
+        return transactions.stream().map(TransactionView::getId).toList();
+    }
+
+    private Object[] row(int index, Long fromCardId, Long toCardId, Long ownerId, LocalDateTime date) {
+        Timestamp timestamp = Timestamp.valueOf(date);
+        return new Object[]{FIRST_ID + index, UUID.randomUUID().toString(), BigDecimal.ONE, timestamp,
+                fromCardId, toCardId, ownerId, timestamp};
+    }
+
+    private User user(String name) {
+        User user = userRepository.save(User.builder()
+                .username("plan-" + name)
+                .password("secret")
+                .firstName("Plan")
+                .lastName("User")
+                .email("plan-" + name + "@bank.com")
+                .role(Role.USER)
+                .enabled(true)
+                .build());
+        users.add(user);
+        return user;
+    }
+
+    private List<Long> cards(User owner, int count) {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String number = owner.getUsername() + "-" + i;
+            Card card = cardRepository.save(Card.builder()
+                    .cardNumber(number)
+                    .cardNumberHash(number)
+                    .maskedNumber("**** **** **** 0000")
+                    .ownerName("PLAN USER")
+                    .expiryDate(LocalDate.now().plusYears(2))
+                    .cvv("cvv")
+                    .balance(BigDecimal.ZERO)
+                    .status(CardStatus.ACTIVE)
+                    .owner(owner)
+                    .build());
+            ids.add(card.getId());
+        }
+        cardIds.addAll(ids);
+        return ids;
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.aspect.ConcurrencyRetryAspect;
+import com.example.bankcards.config.TransferConfig;
+import com.example.bankcards.dto.TransactionDTO;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.entity.enums.Role;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.TransactionRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.util.EncryptionUtil;
+import com.example.bankcards.util.ValidationUtil;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.aop.AopAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Переводы с одной "горячей" карты: транзакция на перевод (ATOMIC) против group commit полос
+ * ShardedTransferEngine (SHARDED). Проверяет, что движок действительно собирает пачки; скорость обоих
+ * режимов пишется в лог для сравнения, а не проверяется: на общей машине сборки она слишком шумная.
+ * Запуск: mvn test -Dgroups=benchmark -Dsurefire.excludedGroups=
+ */
+@Slf4j
+@Tag("benchmark")
+@DataJpaTest(showSql = false)
+@ActiveProfiles("test")
+@ImportAutoConfiguration(AopAutoConfiguration.class)
+@Import({TransactionService.class, ShardedTransferEngine.class, DailySpendService.class, VelocityLimiter.class,
+        TransferConfig.class, EncryptionUtil.class, ValidationUtil.class, ConcurrencyRetryAspect.class, SimpleMeterRegistry.class})
+@TestPropertySource(properties = "app.limits.daily-amount=1000000")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class TransactionInsertBenchmarkTest {
+
+    private static final int THREADS = 16;
+    private static final int TRANSFERS = 4000;
+    private static final String CVV = "123";
+    private static final List<String> CARD_NUMBERS = List.of("4149470000000001", "4149470000000019");
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EncryptionUtil encryptionUtil;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private User owner;
+    private final List<Long> cardIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        owner = userRepository.save(User.builder()
+                .username("bench-user")
+                .password("secret")
+                .firstName("Bench")
+                .lastName("User")
+                .email("bench@bank.com")
+                .role(Role.USER)
+                .enabled(true)
+                .build());
+        for (String cardNumber : CARD_NUMBERS) {
+            cardIds.add(cardRepository.save(card(cardNumber)).getId());
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        transactionRepository.deleteAllInBatch();
+        cardRepository.deleteAllById(cardIds);
+        userRepository.delete(owner);
+    }
+
+    @Test
+    void hotCardThroughput_GroupCommitShouldBatch() throws Exception {
+        double single = measure(TransferLockingMode.ATOMIC);
+        transactionRepository.deleteAllInBatch();
+        double grouped = measure(TransferLockingMode.SHARDED);
+
+        DistributionSummary batchSizes = meterRegistry.get("bank.transfer.engine.batch.size").summary();
+        assertEquals(TRANSFERS, (long) batchSizes.totalAmount());
+        log.info("Hot card transfers: row-per-commit {}/s, group commit {}/s, mean batch {}",
+                Math.round(single), Math.round(grouped), String.format("%.1f", batchSizes.mean()));
+        assertTrue(batchSizes.mean() > 1, () -> "Expected grouped commits, mean batch was " + batchSizes.mean());
+    }
+
+    private double measure(TransferLockingMode mode) throws Exception {
+        ReflectionTestUtils.setField(transactionService, "lockingMode", mode);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>(TRANSFERS);
+        for (int i = 0; i < TRANSFERS; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                return transactionService.transferBetweenOwnCards(transferRequest(), owner.getId());
+            }));
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<?> result : results) {
+            result.get(60, TimeUnit.SECONDS);
+        }
+        double perSecond = TRANSFERS / ((System.nanoTime() - begin) / 1e9);
+        executor.shutdown();
+
+        assertEquals(TRANSFERS, transactionRepository.count());
+        return perSecond;
+    }
+
+    private TransactionDTO.TransferRequest transferRequest() {
+        TransactionDTO.TransferRequest request = new TransactionDTO.TransferRequest();
+        request.setFromCardNumber(CARD_NUMBERS.get(0));
+        request.setToCardNumber(CARD_NUMBERS.get(1));
+        request.setAmount(BigDecimal.ONE);
+        request.setCvv(CVV);
+        return request;
+    }
+
+    private Card card(String cardNumber) {
+        return Card.builder()
+                .cardNumber(encryptionUtil.encrypt(cardNumber))
+                .cardNumberHash(encryptionUtil.hash(cardNumber))
+                .maskedNumber("**** **** **** " + cardNumber.substring(12))
+                .ownerName("BENCH USER")
+                .expiryDate(LocalDate.now().plusYears(2))
+                .cvv(encryptionUtil.encrypt(CVV))
+                .balance(new BigDecimal("100000.00"))
+                .status(CardStatus.ACTIVE)
+                .owner(owner)
+                .build();
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.config.LimitProperties;
+import com.example.bankcards.dto.CursorPage;
 import com.example.bankcards.dto.TransactionDTO;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.Transaction;
@@ -11,22 +13,31 @@ import com.example.bankcards.exception.CardOperationException;
 import com.example.bankcards.exception.TransactionException;
 import com.example.bankcards.repository.CardRepository;
 import com.example.bankcards.repository.TransactionRepository;
+import com.example.bankcards.repository.TransactionRepository.TransactionView;
 import com.example.bankcards.util.EncryptionUtil;
+import com.example.bankcards.util.KeysetCursor;
 import com.example.bankcards.util.ValidationUtil;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
 import org.springframework.data.domain.*;
+import org.springframework.data.projection.ProjectionFactory;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionOperations;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -43,18 +54,29 @@ class TransactionServiceTest {
     @Mock
     private CardRepository cardRepository;
 
-    @Mock
-    private CardService cardService;
-
     @Mock
     private EncryptionUtil encryptionUtil;
 
     @Mock
     private ValidationUtil validationUtil;
 
+    @Mock
+    private DailySpendService dailySpendService;
+
+    @Mock
+    private VelocityLimiter velocityLimiter;
+
+    @Spy
+    private LimitProperties limitProperties = new LimitProperties();
+
+    @Spy
+    private TransactionOperations transferTransactionTemplate = TransactionOperations.withoutTransaction();
+
     @InjectMocks
     private TransactionService transactionService;
 
+    private final ProjectionFactory projectionFactory = new SpelAwareProxyProjectionFactory();
+
     private User testUser;
     private Card fromCard;
     private Card toCard;
@@ -63,6 +85,8 @@ class TransactionServiceTest {
 
     @BeforeEach
     void setUp() {
+        when(velocityLimiter.acquire(any(), any(), any())).thenReturn(VelocityLimiter.Reservation.NONE);
+        when(cardRepository.findOwnershipByCardNumberHash(any())).thenReturn(Optional.of(ownership(1L, 1L)));
         testUser = User.builder()
                 .id(1L)
                 .username("testuser")
@@ -122,8 +146,9 @@ class TransactionServiceTest {
         when(cardRepository.findByCardNumberHash("hash-1111")).thenReturn(Optional.of(fromCard));
         when(cardRepository.findByCardNumberHash("hash-2222")).thenReturn(Optional.of(toCard));
         when(encryptionUtil.decrypt("encrypted-cvv1")).thenReturn("123");
-        when(transactionRepository.findTotalWithdrawnAmount(eq(1L), any(LocalDateTime.class)))
-                .thenReturn(0.0);
+        when(dailySpendService.getTodaySpend(1L)).thenReturn(new BigDecimal("0.00"));
+        when(cardRepository.debitBalance(eq(1L), eq(new BigDecimal("100.00")), any(LocalDateTime.class))).thenReturn(1);
+        when(cardRepository.creditBalance(eq(2L), eq(new BigDecimal("100.00")), any(LocalDateTime.class))).thenReturn(1);
         when(transactionRepository.save(any(Transaction.class))).thenReturn(testTransaction);
 
         Transaction result = transactionService.transferBetweenOwnCards(transferRequest, 1L);
@@ -132,9 +157,30 @@ class TransactionServiceTest {
         assertEquals("TXN123", result.getTransactionId());
         assertEquals(new BigDecimal("100.00"), result.getAmount());
 
-        verify(cardService).updateBalance(1L, new BigDecimal("4900.00"));
-        verify(cardService).updateBalance(2L, new BigDecimal("1100.00"));
+        verify(cardRepository).debitBalance(eq(1L), eq(new BigDecimal("100.00")), any(LocalDateTime.class));
+        verify(cardRepository).creditBalance(eq(2L), eq(new BigDecimal("100.00")), any(LocalDateTime.class));
+        verify(cardRepository, never()).save(any(Card.class));
         verify(transactionRepository).save(any(Transaction.class));
+        verify(dailySpendService).recordSpend(1L, new BigDecimal("100.00"), limitProperties.getDailyAmount());
+    }
+
+    @Test
+    void transferBetweenOwnCards_ShouldThrowException_WhenConcurrentDebitFails() {
+        when(validationUtil.isValidAmount(any(BigDecimal.class))).thenReturn(true);
+        when(encryptionUtil.hash("1111111111111111")).thenReturn("hash-1111");
+        when(encryptionUtil.hash("2222222222222222")).thenReturn("hash-2222");
+        when(cardRepository.findByCardNumberHash("hash-1111")).thenReturn(Optional.of(fromCard));
+        when(cardRepository.findByCardNumberHash("hash-2222")).thenReturn(Optional.of(toCard));
+        when(encryptionUtil.decrypt("encrypted-cvv1")).thenReturn("123");
+        when(dailySpendService.getTodaySpend(1L)).thenReturn(new BigDecimal("0.00"));
+        when(cardRepository.debitBalance(eq(1L), any(BigDecimal.class), any(LocalDateTime.class))).thenReturn(0);
+
+        TransactionException exception = assertThrows(TransactionException.class, () ->
+                transactionService.transferBetweenOwnCards(transferRequest, 1L));
+
+        assertEquals("Insufficient funds", exception.getMessage());
+        verify(cardRepository, never()).creditBalance(anyLong(), any(BigDecimal.class), any(LocalDateTime.class));
+        verify(transactionRepository, never()).save(any(Transaction.class));
     }
 
     @Test
@@ -149,10 +195,13 @@ class TransactionServiceTest {
     void transferBetweenOwnCards_ShouldThrowException_WhenFromCardNotFound() {
         when(validationUtil.isValidAmount(any(BigDecimal.class))).thenReturn(true);
         when(encryptionUtil.hash("1111111111111111")).thenReturn("hash-1111");
-        when(cardRepository.findByCardNumberHash("hash-1111")).thenReturn(Optional.empty());
+        when(cardRepository.findOwnershipByCardNumberHash("hash-1111")).thenReturn(Optional.empty());
 
-        assertThrows(CardOperationException.class, () ->
+        CardOperationException exception = assertThrows(CardOperationException.class, () ->
                 transactionService.transferBetweenOwnCards(transferRequest, 1L));
+
+        assertEquals("Card not found", exception.getMessage());
+        verifyNoInteractions(velocityLimiter);
     }
 
     @Test
@@ -163,9 +212,13 @@ class TransactionServiceTest {
         when(validationUtil.isValidAmount(any(BigDecimal.class))).thenReturn(true);
         when(encryptionUtil.hash("1111111111111111")).thenReturn("hash-1111");
         when(cardRepository.findByCardNumberHash("hash-1111")).thenReturn(Optional.of(otherUserCard));
+        when(cardRepository.findOwnershipByCardNumberHash("hash-1111")).thenReturn(Optional.of(ownership(1L, 2L)));
 
-        assertThrows(CardOperationException.class, () ->
+        CardOperationException exception = assertThrows(CardOperationException.class, () ->
                 transactionService.transferBetweenOwnCards(transferRequest, 1L));
+
+        assertEquals("Card does not belong to user", exception.getMessage());
+        verifyNoInteractions(velocityLimiter);
     }
 
     @Test
@@ -233,13 +286,42 @@ class TransactionServiceTest {
         when(cardRepository.findByCardNumberHash("hash-1111")).thenReturn(Optional.of(fromCard));
         when(cardRepository.findByCardNumberHash("hash-2222")).thenReturn(Optional.of(toCard));
         when(encryptionUtil.decrypt("encrypted-cvv1")).thenReturn("123");
-        when(transactionRepository.findTotalWithdrawnAmount(eq(1L), any(LocalDateTime.class)))
-                .thenReturn(4950.0);
+        when(dailySpendService.getTodaySpend(1L)).thenReturn(new BigDecimal("4950.00"));
 
         assertThrows(TransactionException.class, () ->
                 transactionService.transferBetweenOwnCards(transferRequest, 1L));
     }
 
+    @Test
+    void transferBetweenOwnCards_ShouldLockCardsInAscendingOrder_WhenPessimisticMode() {
+        ReflectionTestUtils.setField(transactionService, "lockingMode", TransferLockingMode.PESSIMISTIC);
+        transferRequest.setFromCardNumber("2222222222222222");
+        transferRequest.setToCardNumber("1111111111111111");
+        toCard.setCvv("encrypted-cvv1");
+
+        when(validationUtil.isValidAmount(any(BigDecimal.class))).thenReturn(true);
+        when(encryptionUtil.hash("1111111111111111")).thenReturn("hash-1111");
+        when(encryptionUtil.hash("2222222222222222")).thenReturn("hash-2222");
+        when(cardRepository.findIdByCardNumberHash("hash-1111")).thenReturn(Optional.of(1L));
+        when(cardRepository.findIdByCardNumberHash("hash-2222")).thenReturn(Optional.of(2L));
+        when(cardRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(fromCard));
+        when(cardRepository.findByIdForUpdate(2L)).thenReturn(Optional.of(toCard));
+        when(encryptionUtil.decrypt("encrypted-cvv1")).thenReturn("123");
+        when(dailySpendService.getTodaySpend(2L)).thenReturn(new BigDecimal("0.00"));
+        when(cardRepository.debitBalance(eq(2L), any(BigDecimal.class), any(LocalDateTime.class))).thenReturn(1);
+        when(cardRepository.creditBalance(eq(1L), any(BigDecimal.class), any(LocalDateTime.class))).thenReturn(1);
+        when(transactionRepository.save(any(Transaction.class))).thenReturn(testTransaction);
+
+        transactionService.transferBetweenOwnCards(transferRequest, 1L);
+
+        InOrder inOrder = inOrder(cardRepository);
+        inOrder.verify(cardRepository).findByIdForUpdate(1L);
+        inOrder.verify(cardRepository).findByIdForUpdate(2L);
+        inOrder.verify(cardRepository).creditBalance(eq(1L), any(BigDecimal.class), any(LocalDateTime.class));
+        inOrder.verify(cardRepository).debitBalance(eq(2L), any(BigDecimal.class), any(LocalDateTime.class));
+        verify(cardRepository, never()).findByCardNumberHash(anyString());
+    }
+
     @Test
     void getTransactionById_ShouldReturnTransaction() {
         when(transactionRepository.findByTransactionId("TXN123")).thenReturn(Optional.of(testTransaction));
@@ -261,10 +343,10 @@ class TransactionServiceTest {
 
     @Test
     void getUserTransactions_ShouldReturnTransactions() {
-        Page<Transaction> transactionPage = new PageImpl<>(List.of(testTransaction));
+        Page<TransactionView> transactionPage = new PageImpl<>(List.of(mock(TransactionView.class)));
         when(transactionRepository.findByUserId(eq(1L), any(Pageable.class))).thenReturn(transactionPage);
 
-        Page<Transaction> result = transactionService.getUserTransactions(1L, 0, 20);
+        Page<TransactionView> result = transactionService.getUserTransactions(1L, 0, 20);
 
         assertEquals(1, result.getTotalElements());
         verify(transactionRepository).findByUserId(eq(1L), any(Pageable.class));
@@ -272,23 +354,121 @@ class TransactionServiceTest {
 
     @Test
     void getCardTransactions_ShouldReturnTransactions() {
-        Page<Transaction> transactionPage = new PageImpl<>(List.of(testTransaction));
+        Page<TransactionView> transactionPage = new PageImpl<>(List.of(mock(TransactionView.class)));
         when(transactionRepository.findByCardId(eq(1L), any(Pageable.class))).thenReturn(transactionPage);
 
-        Page<Transaction> result = transactionService.getCardTransactions(1L, 0, 20);
+        Page<TransactionView> result = transactionService.getCardTransactions(1L, 0, 20);
 
         assertEquals(1, result.getTotalElements());
         verify(transactionRepository).findByCardId(eq(1L), any(Pageable.class));
     }
 
+    @Test
+    void getCardTransactions_WithCursor_ShouldMergeDirectionsNewestFirst() {
+        LocalDateTime base = LocalDateTime.of(2026, 1, 10, 12, 0);
+        when(transactionRepository.findOutgoingBefore(eq(1L), any(), any(), any(Pageable.class)))
+                .thenReturn(List.of(historyRow(5L, base.plusMinutes(5)), historyRow(2L, base.plusMinutes(2)),
+                        historyRow(1L, base.plusMinutes(1))));
+        when(transactionRepository.findIncomingBefore(eq(1L), any(), any(), any(Pageable.class)))
+                .thenReturn(List.of(historyRow(4L, base.plusMinutes(4)), historyRow(3L, base.plusMinutes(2))));
+
+        CursorPage<TransactionView> result = transactionService.getCardTransactions(1L, "", 2, false);
+
+        assertEquals(List.of(5L, 4L), result.content().stream().map(TransactionView::getId).toList());
+        assertEquals(new KeysetCursor(base.plusMinutes(4), 4L), KeysetCursor.decode(result.nextCursor()));
+        assertNull(result.totalElements());
+        verify(transactionRepository).findOutgoingBefore(1L, KeysetCursor.FIRST.transactionDate(),
+                KeysetCursor.FIRST.id(), PageRequest.of(0, 3));
+        verify(transactionRepository, never()).countByCardId(any());
+    }
+
+    @Test
+    void getCardTransactions_WithSameTimestamp_ShouldOrderById() {
+        LocalDateTime at = LocalDateTime.of(2026, 1, 10, 12, 0);
+        when(transactionRepository.findOutgoingBefore(eq(1L), any(), any(), any(Pageable.class)))
+                .thenReturn(List.of(historyRow(7L, at), historyRow(3L, at)));
+        when(transactionRepository.findIncomingBefore(eq(1L), any(), any(), any(Pageable.class)))
+                .thenReturn(List.of(historyRow(5L, at)));
+
+        CursorPage<TransactionView> result = transactionService.getCardTransactions(1L, "", 5, false);
+
+        assertEquals(List.of(7L, 5L, 3L), result.content().stream().map(TransactionView::getId).toList());
+        assertNull(result.nextCursor());
+    }
+
+    @Test
+    void getUserTransactions_WithCursor_ShouldSeekFromPositionAndCountOnRequest() {
+        LocalDateTime at = LocalDateTime.of(2026, 1, 10, 12, 0);
+        String cursor = new KeysetCursor(at, 42L).encode();
+        when(transactionRepository.findByUserIdBefore(eq(1L), eq(at), eq(42L), any(Pageable.class)))
+                .thenReturn(List.of(historyRow(41L, at), historyRow(40L, at.minusMinutes(1))));
+        when(transactionRepository.countByUserId(1L)).thenReturn(100L);
+
+        CursorPage<TransactionView> result = transactionService.getUserTransactions(1L, cursor, 20, true);
+
+        assertEquals(2, result.content().size());
+        assertNull(result.nextCursor());
+        assertEquals(100L, result.totalElements());
+        verify(transactionRepository).findByUserIdBefore(1L, at, 42L, PageRequest.of(0, 21));
+        verify(transactionRepository, never()).findByUserId(any(), any());
+    }
+
+    @Test
+    void getUserTransactions_WithCardUnionStrategy_ShouldQueryOwnerCards() {
+        ReflectionTestUtils.setField(transactionService, "historyStrategy", TransactionHistoryStrategy.CARD_UNION);
+        LocalDateTime at = LocalDateTime.of(2026, 1, 10, 12, 0);
+        when(cardRepository.findIdsByOwnerId(1L)).thenReturn(List.of(10L, 11L));
+        when(transactionRepository.findIdsByCardIdsBefore(List.of(10L, 11L), KeysetCursor.FIRST.transactionDate(),
+                KeysetCursor.FIRST.id(), 3))
+                .thenReturn(List.of(9L, 8L, 7L));
+        when(transactionRepository.findViewsByIdIn(List.of(9L, 8L, 7L)))
+                .thenReturn(List.of(historyRow(9L, at), historyRow(8L, at), historyRow(7L, at)));
+
+        CursorPage<TransactionView> result = transactionService.getUserTransactions(1L, null, 2, false);
+
+        assertEquals(List.of(9L, 8L), result.content().stream().map(TransactionView::getId).toList());
+        assertEquals(new KeysetCursor(at, 8L), KeysetCursor.decode(result.nextCursor()));
+        verify(transactionRepository, never()).findByUserIdBefore(any(), any(), any(), any());
+    }
+
+    @Test
+    void getUserTransactions_WithCardUnionStrategyAndNoCards_ShouldReturnEmptyPage() {
+        ReflectionTestUtils.setField(transactionService, "historyStrategy", TransactionHistoryStrategy.CARD_UNION);
+        when(cardRepository.findIdsByOwnerId(1L)).thenReturn(List.of());
+
+        CursorPage<TransactionView> result = transactionService.getUserTransactions(1L, null, 20, false);
+
+        assertTrue(result.content().isEmpty());
+        assertNull(result.nextCursor());
+        verify(transactionRepository, never()).findIdsByCardIdsBefore(any(), any(), any(), anyInt());
+        verify(transactionRepository, never()).findViewsByIdIn(any());
+    }
+
+    @Test
+    void getUserTransactions_WithInvalidCursor_ShouldThrowException() {
+        assertThrows(IllegalArgumentException.class,
+                () -> transactionService.getUserTransactions(1L, "not-a-cursor", 20, false));
+        verifyNoInteractions(transactionRepository);
+    }
+
+    @Test
+    void getTodayTransferredAmount_ShouldReadDailyAggregate() {
+        when(dailySpendService.getTodaySpend(1L)).thenReturn(new BigDecimal("700.00"));
+
+        BigDecimal result = transactionService.getTodayTransferredAmount(1L);
+
+        assertEquals(new BigDecimal("700.00"), result);
+        verify(transactionRepository, never()).findTotalWithdrawnAmount(anyLong(), any(LocalDateTime.class));
+    }
+
     @Test
     void getTotalTransferredAmount_ShouldReturnTotal() {
         when(transactionRepository.findTotalWithdrawnAmount(eq(1L), any(LocalDateTime.class)))
-                .thenReturn(1500.0);
+                .thenReturn(new BigDecimal("1500.00"));
 
         BigDecimal result = transactionService.getTotalTransferredAmount(1L, 1);
 
-        assertEquals(new BigDecimal("1500.0"), result);
+        assertEquals(new BigDecimal("1500.00"), result);
         verify(transactionRepository).findTotalWithdrawnAmount(eq(1L), any(LocalDateTime.class));
     }
 
@@ -312,10 +492,19 @@ class TransactionServiceTest {
         when(cardRepository.findByCardNumberHash("hash-1111")).thenReturn(Optional.of(fromCard));
         when(cardRepository.findByCardNumberHash("hash-2222")).thenReturn(Optional.of(toCard));
         when(encryptionUtil.decrypt("encrypted-cvv1")).thenReturn("123");
-        when(transactionRepository.findTotalWithdrawnAmount(eq(1L), any(LocalDateTime.class)))
-                .thenReturn(0.0);
+        when(dailySpendService.getTodaySpend(1L)).thenReturn(new BigDecimal("0.00"));
 
         assertThrows(TransactionException.class, () ->
                 transactionService.transferBetweenOwnCards(transferRequest, 1L));
     }
-}
\ No newline at end of file
+
+    private TransactionView historyRow(Long id, LocalDateTime transactionDate) {
+        return projectionFactory.createProjection(TransactionView.class,
+                Map.of("id", id, "transactionDate", transactionDate));
+    }
+
+    private CardRepository.CardOwnership ownership(Long cardId, Long ownerId) {
+        return projectionFactory.createProjection(CardRepository.CardOwnership.class,
+                Map.of("id", cardId, "ownerId", ownerId));
+    }
+}
@@ -0,0 +1,311 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.aspect.ConcurrencyRetryAspect;
+import com.example.bankcards.config.TransferConfig;
+import com.example.bankcards.dto.TransactionDTO;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.entity.enums.Role;
+import com.example.bankcards.exception.TransactionException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.TransactionRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.util.EncryptionUtil;
+import com.example.bankcards.util.ValidationUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.aop.AopAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(showSql = false)
+@ActiveProfiles("test")
+@ImportAutoConfiguration(AopAutoConfiguration.class)
+@Import({TransactionService.class, ShardedTransferEngine.class, DailySpendService.class, VelocityLimiter.class,
+        TransferConfig.class, EncryptionUtil.class, ValidationUtil.class, ConcurrencyRetryAspect.class, SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class TransferConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int TRANSFERS = 1500;
+    private static final int SENDERS = 16;
+    private static final int TRANSFERS_TO_RECEIVER = 400;
+    private static final BigDecimal AMOUNT = new BigDecimal("1.00");
+    private static final String CVV = "123";
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EncryptionUtil encryptionUtil;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private BalanceUpdateRecorder balanceUpdateRecorder;
+
+    private User owner;
+    private final List<String> cardNumbers = List.of("4149470000000001", "4149470000000019", "4149470000000027");
+    private final List<Long> cardIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        owner = userRepository.save(User.builder()
+                .username("stress-user")
+                .password("secret")
+                .firstName("Stress")
+                .lastName("User")
+                .email("stress@bank.com")
+                .role(Role.USER)
+                .enabled(true)
+                .build());
+
+        for (String cardNumber : cardNumbers) {
+            saveCard(cardNumber);
+        }
+        balanceUpdateRecorder.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        transactionRepository.deleteAll();
+        cardRepository.deleteAllById(cardIds);
+        userRepository.delete(owner);
+    }
+
+    @ParameterizedTest
+    @EnumSource(TransferLockingMode.class)
+    void concurrentCrossTransfers_ShouldConserveTotalBalance(TransferLockingMode mode) throws Exception {
+        ReflectionTestUtils.setField(transactionService, "lockingMode", mode);
+        BigDecimal totalBefore = totalBalance();
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger completed = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        Queue<Throwable> unexpected = new ConcurrentLinkedQueue<>();
+
+        for (int i = 0; i < TRANSFERS; i++) {
+            String from = cardNumbers.get(i % cardNumbers.size());
+            String to = cardNumbers.get((i + 1 + i / cardNumbers.size()) % cardNumbers.size());
+            if (from.equals(to)) {
+                to = cardNumbers.get((i + 2) % cardNumbers.size());
+            }
+            TransactionDTO.TransferRequest request = transferRequest(from, to);
+            executor.submit(() -> {
+                try {
+                    start.await();
+                    transactionService.transferBetweenOwnCards(request, owner.getId());
+                    completed.incrementAndGet();
+                } catch (TransactionException e) {
+                    rejected.incrementAndGet();
+                } catch (Throwable e) {
+                    unexpected.add(e);
+                }
+            });
+        }
+
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.MINUTES));
+
+        assertTrue(unexpected.isEmpty(), () -> "Unexpected failures: " + unexpected.peek());
+        assertEquals(TRANSFERS, completed.get() + rejected.get());
+        assertEquals(completed.get(), transactionRepository.count());
+        assertEquals(0, totalBefore.compareTo(totalBalance()));
+        for (Long cardId : cardIds) {
+            assertTrue(cardRepository.findById(cardId).orElseThrow().getBalance().signum() >= 0);
+        }
+        if (mode == TransferLockingMode.SHARDED) {
+            long batches = meterRegistry.get("bank.transfer.engine.batch.size").summary().count();
+            assertTrue(batches < TRANSFERS, () -> "Expected transfers to be batched, got " + batches + " batches");
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(TransferLockingMode.class)
+    void failingInTransactionHook_ShouldRollBackTransfer(TransferLockingMode mode) {
+        ReflectionTestUtils.setField(transactionService, "lockingMode", mode);
+
+        IllegalStateException exception = assertThrows(IllegalStateException.class, () ->
+                transactionService.transferBetweenOwnCards(transferRequest(cardNumbers.get(0), cardNumbers.get(1)),
+                        owner.getId(), transaction -> {
+                            throw new IllegalStateException("idempotency key taken");
+                        }));
+
+        assertEquals("idempotency key taken", exception.getMessage());
+        assertEquals(0, new BigDecimal("800.00").compareTo(cardRepository.findById(cardIds.get(0)).orElseThrow().getBalance()));
+        assertEquals(0, new BigDecimal("800.00").compareTo(cardRepository.findById(cardIds.get(1)).orElseThrow().getBalance()));
+        assertEquals(0, transactionRepository.count());
+    }
+
+    @Test
+    void manySendersToOneReceiver_ShouldUpdateReceiverFromSingleLane() throws Exception {
+        ReflectionTestUtils.setField(transactionService, "lockingMode", TransferLockingMode.SHARDED);
+        String receiver = cardNumbers.get(0);
+        Long receiverId = cardIds.get(0);
+        List<String> senders = new ArrayList<>();
+        for (int i = 0; i < SENDERS; i++) {
+            String sender = String.format("41494701%08d", i);
+            saveCard(sender);
+            senders.add(sender);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        for (int i = 0; i < TRANSFERS_TO_RECEIVER; i++) {
+            TransactionDTO.TransferRequest request = transferRequest(senders.get(i % SENDERS), receiver);
+            executor.submit(() -> {
+                try {
+                    start.await();
+                    transactionService.transferBetweenOwnCards(request, owner.getId());
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            });
+        }
+
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.MINUTES));
+
+        assertTrue(failures.isEmpty(), () -> "Unexpected failures: " + failures.peek());
+        BigDecimal expected = new BigDecimal("800.00").add(AMOUNT.multiply(BigDecimal.valueOf(TRANSFERS_TO_RECEIVER)));
+        assertEquals(0, expected.compareTo(cardRepository.findById(receiverId).orElseThrow().getBalance()));
+        Set<String> writers = balanceUpdateRecorder.threadsUpdating(receiverId);
+        assertEquals(1, writers.size(), () -> "Receiver row was updated from several lanes: " + writers);
+        assertTrue(writers.iterator().next().startsWith("transfer-lane-"));
+    }
+
+    @Test
+    void staleCardSave_ShouldFailAfterConcurrentBalanceUpdate() {
+        Long cardId = cardIds.get(0);
+        Card stale = cardRepository.findById(cardId).orElseThrow();
+
+        transactionService.transferBetweenOwnCards(transferRequest(cardNumbers.get(0), cardNumbers.get(1)), owner.getId());
+
+        stale.setStatus(CardStatus.BLOCKED);
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> cardRepository.save(stale));
+        Card current = cardRepository.findById(cardId).orElseThrow();
+        assertEquals(CardStatus.ACTIVE, current.getStatus());
+        assertEquals(0, new BigDecimal("799.00").compareTo(current.getBalance()));
+    }
+
+    private void saveCard(String cardNumber) {
+        Card card = cardRepository.save(Card.builder()
+                .cardNumber(encryptionUtil.encrypt(cardNumber))
+                .cardNumberHash(encryptionUtil.hash(cardNumber))
+                .maskedNumber("**** **** **** " + cardNumber.substring(12))
+                .ownerName("STRESS USER")
+                .expiryDate(LocalDate.now().plusYears(2))
+                .cvv(encryptionUtil.encrypt(CVV))
+                .balance(new BigDecimal("800.00"))
+                .status(CardStatus.ACTIVE)
+                .owner(owner)
+                .build());
+        cardIds.add(card.getId());
+    }
+
+    private BigDecimal totalBalance() {
+        return cardRepository.findAllById(cardIds).stream()
+                .map(Card::getBalance)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    private TransactionDTO.TransferRequest transferRequest(String from, String to) {
+        TransactionDTO.TransferRequest request = new TransactionDTO.TransferRequest();
+        request.setFromCardNumber(from);
+        request.setToCardNumber(to);
+        request.setAmount(AMOUNT);
+        request.setCvv(CVV);
+        return request;
+    }
+
+    @TestConfiguration
+    static class BalanceUpdateRecorderConfig {
+
+        @Bean
+        static BalanceUpdateRecorder balanceUpdateRecorder() {
+            return new BalanceUpdateRecorder();
+        }
+    }
+
+    /**
+     * Запоминает, из каких потоков менялся баланс каждой карты (debitBalance/creditBalance).
+     */
+    static class BalanceUpdateRecorder implements BeanPostProcessor {
+
+        private final Map<Long, Set<String>> threadsByCard = new ConcurrentHashMap<>();
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (!(bean instanceof CardRepository)) {
+                return bean;
+            }
+            ProxyFactory proxyFactory = new ProxyFactory(bean);
+            proxyFactory.addAdvice((MethodInterceptor) invocation -> {
+                String method = invocation.getMethod().getName();
+                if (method.equals("debitBalance") || method.equals("creditBalance")) {
+                    threadsByCard.computeIfAbsent((Long) invocation.getArguments()[0], id -> ConcurrentHashMap.newKeySet())
+                            .add(Thread.currentThread().getName());
+                }
+                return invocation.proceed();
+            });
+            return proxyFactory.getProxy();
+        }
+
+        Set<String> threadsUpdating(Long cardId) {
+            return threadsByCard.getOrDefault(cardId, Set.of());
+        }
+
+        void clear() {
+            threadsByCard.clear();
+        }
+    }
+}
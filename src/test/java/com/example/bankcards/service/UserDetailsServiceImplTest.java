@@ -3,10 +3,14 @@ package com.example.bankcards.service;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.entity.enums.Role;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.InProcessUserEventBus;
+import com.example.bankcards.security.UserChangeEvent;
+import com.example.bankcards.security.UserEventBus;
 import com.example.bankcards.security.UserPrincipal;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -24,8 +28,16 @@ class UserDetailsServiceImplTest {
     @Mock
     private UserRepository userRepository;
 
-    @InjectMocks
     private UserDetailsServiceImpl userDetailsService;
+    private UserEventBus userEventBus;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        userEventBus = new InProcessUserEventBus();
+        meterRegistry = new SimpleMeterRegistry();
+        userDetailsService = new UserDetailsServiceImpl(userRepository, userEventBus, meterRegistry, 100, 300);
+    }
 
     @Test
     void loadUserByUsername_UserExists_ReturnsUserDetails() {
@@ -138,4 +150,40 @@ class UserDetailsServiceImplTest {
         assertTrue(userDetails.getAuthorities().stream()
                 .anyMatch(auth -> auth.getAuthority().equals("ROLE_USER")));
     }
+
+    @Test
+    void loadUserByUsername_ShouldServeRepeatedLookupsFromCache() {
+        when(userRepository.findByUsername("john")).thenReturn(Optional.of(user("john", true)));
+
+        UserDetails first = userDetailsService.loadUserByUsername("john");
+        UserDetails second = userDetailsService.loadUserByUsername("john");
+
+        assertSame(first, second);
+        verify(userRepository, times(1)).findByUsername("john");
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "userPrincipals").tag("result", "hit")
+                .functionCounter().count());
+    }
+
+    @Test
+    void loadUserByUsername_ShouldReloadAfterUserChangeEvent() {
+        when(userRepository.findByUsername("john"))
+                .thenReturn(Optional.of(user("john", true)))
+                .thenReturn(Optional.of(user("john", false)));
+
+        assertTrue(userDetailsService.loadUserByUsername("john").isEnabled());
+        userEventBus.publish(new UserChangeEvent(1L, "john", UserChangeEvent.Type.DISABLED));
+
+        assertFalse(userDetailsService.loadUserByUsername("john").isEnabled());
+        verify(userRepository, times(2)).findByUsername("john");
+    }
+
+    private User user(String username, boolean enabled) {
+        return User.builder()
+                .id(1L)
+                .username(username)
+                .password("encodedPass")
+                .role(Role.USER)
+                .enabled(enabled)
+                .build();
+    }
 }
@@ -5,6 +5,8 @@ import com.example.bankcards.entity.User;
 import com.example.bankcards.entity.enums.Role;
 import com.example.bankcards.exception.UserOperationException;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.UserChangeEvent;
+import com.example.bankcards.security.UserEventBus;
 import com.example.bankcards.util.ValidationUtil;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -34,6 +36,12 @@ class UserServiceTest {
     @Mock
     private ValidationUtil validationUtil;
 
+    @Mock
+    private UserEventBus userEventBus;
+
+    @Mock
+    private RefreshTokenService refreshTokenService;
+
     @InjectMocks
     private UserService userService;
 
@@ -171,7 +179,8 @@ class UserServiceTest {
 
         assertNotNull(result);
         verify(userRepository).findActiveById(1L);
-        verify(userRepository).save(any(User.class));
+        verify(userRepository).save(argThat(user -> user.getTokensRevokedBefore() != null));
+        verify(userEventBus).publish(new UserChangeEvent(1L, "testuser", UserChangeEvent.Type.ROLE_CHANGED));
     }
 
     @Test
@@ -182,6 +191,8 @@ class UserServiceTest {
 
         verify(userRepository).findActiveById(1L);
         verify(userRepository).save(argThat(user -> !user.isEnabled()));
+        verify(userEventBus).publish(new UserChangeEvent(1L, "testuser", UserChangeEvent.Type.DISABLED));
+        verify(refreshTokenService).revokeAllForUser(1L);
     }
 
     @Test
@@ -196,7 +207,8 @@ class UserServiceTest {
         userService.enableUser(1L);
 
         verify(userRepository).findById(1L);
-        verify(userRepository).save(argThat(user -> user.isEnabled()));
+        verify(userRepository).save(argThat(user -> user.isEnabled() && user.getTokensRevokedBefore() != null));
+        verify(userEventBus).publish(argThat(event -> event.type() == UserChangeEvent.Type.ENABLED));
     }
 
     @Test
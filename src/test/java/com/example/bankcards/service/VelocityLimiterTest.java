@@ -0,0 +1,122 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.LimitProperties;
+import com.example.bankcards.exception.TransactionException;
+import com.example.bankcards.repository.TransactionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.http.HttpStatus;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class VelocityLimiterTest {
+
+    @Mock
+    private TransactionRepository transactionRepository;
+
+    private VelocityLimiter velocityLimiter;
+
+    @BeforeEach
+    void setUp() {
+        LimitProperties properties = new LimitProperties();
+        properties.setVelocity(List.of(
+                rule(LimitProperties.Scope.CARD, Duration.ofMinutes(1), 2L, null),
+                rule(LimitProperties.Scope.USER, Duration.ofDays(1), null, new BigDecimal("1000"))));
+        velocityLimiter = new VelocityLimiter(transactionRepository, properties);
+
+        when(transactionRepository.findSpendByCardSince(anyLong(), any())).thenReturn(List.of());
+        when(transactionRepository.findSpendByUserSince(anyLong(), any())).thenReturn(List.of());
+    }
+
+    @Test
+    void acquire_ShouldRejectWhenCardCountExceeded() {
+        velocityLimiter.acquire(1L, 11L, new BigDecimal("10"));
+        velocityLimiter.acquire(1L, 11L, new BigDecimal("10"));
+
+        TransactionException exception = assertThrows(TransactionException.class,
+                () -> velocityLimiter.acquire(1L, 11L, new BigDecimal("10")));
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, exception.getStatus());
+
+        // Другая карта того же пользователя не затронута
+        assertDoesNotThrow(() -> velocityLimiter.acquire(1L, 12L, new BigDecimal("10")));
+    }
+
+    @Test
+    void acquire_ShouldRejectWhenUserAmountExceeded_AndNotConsumeCardWindow() {
+        velocityLimiter.acquire(1L, 11L, new BigDecimal("900"));
+
+        assertThrows(TransactionException.class,
+                () -> velocityLimiter.acquire(1L, 11L, new BigDecimal("200")));
+
+        // Отклоненный перевод освободил окно карты
+        assertDoesNotThrow(() -> velocityLimiter.acquire(1L, 11L, new BigDecimal("100")));
+    }
+
+    @Test
+    void release_ShouldFreeWindows() {
+        velocityLimiter.acquire(1L, 11L, new BigDecimal("10")).release();
+        velocityLimiter.acquire(1L, 11L, new BigDecimal("10")).release();
+
+        assertDoesNotThrow(() -> velocityLimiter.acquire(1L, 11L, new BigDecimal("10")));
+        assertDoesNotThrow(() -> velocityLimiter.acquire(1L, 11L, new BigDecimal("10")));
+    }
+
+    @Test
+    void acquire_ShouldRebuildWindowsFromHistoryOnce() {
+        TransactionRepository.SpendEntry recent = spend(LocalDateTime.now().minusSeconds(10), "10");
+        TransactionRepository.SpendEntry old = spend(LocalDateTime.now().minusMinutes(30), "10");
+        when(transactionRepository.findSpendByCardSince(eq(11L), any())).thenReturn(List.of(recent, old));
+
+        velocityLimiter.acquire(1L, 11L, new BigDecimal("10"));
+
+        assertThrows(TransactionException.class,
+                () -> velocityLimiter.acquire(1L, 11L, new BigDecimal("10")));
+        verify(transactionRepository, times(1)).findSpendByCardSince(eq(11L), any());
+    }
+
+    @Test
+    void acquire_WithoutRules_ShouldNotTouchRepository() {
+        velocityLimiter = new VelocityLimiter(transactionRepository, new LimitProperties());
+
+        assertSame(VelocityLimiter.Reservation.NONE, velocityLimiter.acquire(1L, 11L, BigDecimal.TEN));
+        verifyNoInteractions(transactionRepository);
+    }
+
+    private LimitProperties.VelocityRule rule(LimitProperties.Scope scope, Duration window,
+                                              Long maxCount, BigDecimal maxAmount) {
+        LimitProperties.VelocityRule rule = new LimitProperties.VelocityRule();
+        rule.setScope(scope);
+        rule.setWindow(window);
+        rule.setMaxCount(maxCount);
+        rule.setMaxAmount(maxAmount);
+        return rule;
+    }
+
+    private TransactionRepository.SpendEntry spend(LocalDateTime date, String amount) {
+        return new TransactionRepository.SpendEntry() {
+            @Override
+            public LocalDateTime getTransactionDate() {
+                return date;
+            }
+
+            @Override
+            public BigDecimal getAmount() {
+                return new BigDecimal(amount);
+            }
+        };
+    }
+}
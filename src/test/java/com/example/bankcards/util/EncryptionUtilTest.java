@@ -0,0 +1,65 @@
+package com.example.bankcards.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EncryptionUtilTest {
+
+    private final EncryptionUtil encryptionUtil =
+            new EncryptionUtil("Kk7T4vX9Y2z6B8Q1w3e5r7t9y1u3i5o7p", "AES/CBC/PKCS5Padding");
+
+    @Test
+    void encryptDecrypt_ShouldRoundTripWithRandomIv() {
+        String first = encryptionUtil.encrypt("4111111111111111");
+        String second = encryptionUtil.encrypt("4111111111111111");
+
+        assertNotEquals(first, second);
+        assertEquals("4111111111111111", encryptionUtil.decrypt(first));
+        assertEquals("4111111111111111", encryptionUtil.decrypt(second));
+    }
+
+    @Test
+    void hash_ShouldBeHexSha256() {
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", encryptionUtil.hash("abc"));
+    }
+
+    @Test
+    void decrypt_ShouldFailOnForeignKey() {
+        String encrypted = new EncryptionUtil("other-secret", "AES/CBC/PKCS5Padding").encrypt("123");
+
+        assertThrows(RuntimeException.class, () -> encryptionUtil.decrypt(encrypted));
+        // Ошибка не портит Cipher потока
+        assertEquals("123", encryptionUtil.decrypt(encryptionUtil.encrypt("123")));
+    }
+
+    @Test
+    void encryptDecrypt_ShouldBeSafeAcrossThreads() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                String value = "card-" + i;
+                results.add(executor.submit(() -> {
+                    for (int j = 0; j < 200; j++) {
+                        if (!value.equals(encryptionUtil.decrypt(encryptionUtil.encrypt(value)))) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}